@@ -0,0 +1,235 @@
+package org.laas.osm2graph.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.laas.osm2graph.store.NodeStore;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.xml.common.CompressionMethodDeriver;
+import org.openstreetmap.osmosis.xml.v0_6.XmlReader;
+
+import crosby.binary.osmosis.OsmosisReader;
+
+/**
+ * Input of the benchmarks: the nodes and the highway ways of either a synthetic
+ * extract or a recorded one (.osm.pbf, .osm, .osm.gz or .osm.bz2 file).
+ */
+public class Extract {
+
+    // Name of the synthetic extract.
+    public static final String SYNTHETIC = "synthetic";
+
+    // Seed of the synthetic extracts, so that all runs use the same input.
+    private static final long SEED = 42;
+
+    // Values used for the tags of synthetic ways.
+    private static final String[] HIGHWAYS = { "motorway", "trunk", "primary", "secondary",
+            "tertiary", "residential", "unclassified", "service", "living_street", "footway",
+            "cycleway", "track", "motorway_link", "primary_link" };
+    private static final String[] SPEEDS = { null, null, "50", "30", "90", "30 mph", "FR:urban",
+            "FR:rural", "walk", "none", "20 knots" };
+    private static final String[] ACCESS = { null, null, null, "yes", "no", "private",
+            "destination", "permissive", "delivery" };
+    private static final String[] ACCESS_KEYS = { "access", "motor_vehicle", "bicycle", "foot" };
+
+    // Nodes and ways of the extract.
+    private final List<Node> nodes;
+    private final List<Way> ways;
+
+    /**
+     * @param nodes
+     * @param ways
+     */
+    protected Extract(List<Node> nodes, List<Way> ways) {
+        this.nodes = nodes;
+        this.ways = ways;
+    }
+
+    /**
+     * @return Nodes of this extract.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return Highway ways of this extract.
+     */
+    public List<Way> getWays() {
+        return ways;
+    }
+
+    /**
+     * Fill the given node store with the nodes of this extract.
+     * 
+     * @param store
+     */
+    public void fill(NodeStore store) {
+        for (Node node: nodes) {
+            store.put(node.getId(), node.getLongitude(), node.getLatitude());
+        }
+        store.complete();
+    }
+
+    /**
+     * Load an extract.
+     * 
+     * @param source Either {@link #SYNTHETIC}, or the path of a recorded extract.
+     * @param size Size of the side of the grid for synthetic extracts (size * size
+     *        nodes and 3 * size ways), ignored for recorded extracts.
+     * 
+     * @return The loaded extract.
+     * 
+     * @throws IOException
+     */
+    public static Extract load(String source, int size) throws IOException {
+        if (SYNTHETIC.equals(source)) {
+            return synthetic(size, SEED);
+        }
+        return read(new File(source));
+    }
+
+    /**
+     * Create a synthetic extract made of a grid of nodes and of straight ways along
+     * the grid, with various tags.
+     * 
+     * @param size Size of the side of the grid.
+     * @param seed
+     * 
+     * @return The synthetic extract.
+     */
+    public static Extract synthetic(int size, long seed) {
+        Random random = new Random(seed);
+        List<Node> nodes = new ArrayList<>(size * size);
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                double lon = (14300000 + j * 1000 + random.nextInt(200)) / 1e7;
+                double lat = (436000000 + i * 1000 + random.nextInt(200)) / 1e7;
+                nodes.add(new Node(data(1000 + i * size + j, new ArrayList<>()), lat, lon));
+            }
+        }
+        List<Way> ways = new ArrayList<>(3 * size);
+        for (int k = 0; k < 3 * size; ++k) {
+            boolean horizontal = random.nextBoolean();
+            int fixed = random.nextInt(size), first = random.nextInt(size),
+                    length = 2 + random.nextInt(Math.max(1, size / 2));
+            int direction = random.nextBoolean() ? 1 : -1;
+            List<WayNode> wayNodes = new ArrayList<>();
+            for (int t = 0; t < length; ++t) {
+                int v = first + direction * t;
+                if (v < 0 || v >= size) {
+                    break;
+                }
+                int i = horizontal ? fixed : v, j = horizontal ? v : fixed;
+                wayNodes.add(new WayNode(1000 + i * size + j));
+            }
+            if (wayNodes.size() < 2) {
+                continue;
+            }
+            List<Tag> tags = new ArrayList<>();
+            tags.add(new Tag("highway", HIGHWAYS[random.nextInt(HIGHWAYS.length)]));
+            if (random.nextInt(3) == 0) {
+                tags.add(new Tag("name", "Road " + random.nextInt(100)));
+            }
+            String speed = SPEEDS[random.nextInt(SPEEDS.length)];
+            if (speed != null) {
+                tags.add(new Tag("maxspeed", speed));
+            }
+            String access = ACCESS[random.nextInt(ACCESS.length)];
+            if (access != null) {
+                tags.add(new Tag(ACCESS_KEYS[random.nextInt(ACCESS_KEYS.length)], access));
+            }
+            if (random.nextInt(5) == 0) {
+                tags.add(new Tag("oneway", random.nextBoolean() ? "yes" : "no"));
+            }
+            if (random.nextInt(20) == 0) {
+                tags.add(new Tag("junction", "roundabout"));
+            }
+            tags.add(new Tag("surface", "asphalt"));
+            ways.add(new Way(data(k + 1, tags), wayNodes));
+        }
+        return new Extract(nodes, ways);
+    }
+
+    /**
+     * Read a recorded extract, keeping only the ways with a highway tag.
+     * 
+     * @param file
+     * 
+     * @return The recorded extract.
+     * 
+     * @throws IOException
+     */
+    public static Extract read(File file) throws IOException {
+        List<Node> nodes = new ArrayList<>();
+        List<Way> ways = new ArrayList<>();
+        Sink sink = new Sink() {
+
+            @Override
+            public void initialize(Map<String, Object> metaData) {
+            }
+
+            @Override
+            public void process(EntityContainer entityContainer) {
+                Entity entity = entityContainer.getEntity();
+                if (entity instanceof Node) {
+                    nodes.add((Node) entity);
+                }
+                else if (entity instanceof Way) {
+                    for (Tag tag: entity.getTags()) {
+                        if (tag.getKey().equals("highway")) {
+                            ways.add((Way) entity);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        if (file.getName().endsWith(".pbf")) {
+            try (InputStream stream = new FileInputStream(file)) {
+                run(new OsmosisReader(stream), sink);
+            }
+        }
+        else {
+            run(new XmlReader(file, false,
+                    new CompressionMethodDeriver().deriveCompressionMethod(file.getName())), sink);
+        }
+        return new Extract(nodes, ways);
+    }
+
+    private static void run(RunnableSource source, Sink sink) {
+        source.setSink(sink);
+        source.run();
+    }
+
+    private static CommonEntityData data(long id, Collection<Tag> tags) {
+        return new CommonEntityData(id, 1, new Date(0), OsmUser.NONE, 1, tags);
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.laas.osm2graph.benchmarks;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Silence the progress logs of the plugin during benchmarks.
+ */
+public class Logging {
+
+    // Kept so that the level is not lost when the logger is garbage collected.
+    private static final Logger ROOT = Logger.getLogger("org.laas.osm2graph");
+
+    public static void quiet() {
+        ROOT.setLevel(Level.WARNING);
+    }
+
+}
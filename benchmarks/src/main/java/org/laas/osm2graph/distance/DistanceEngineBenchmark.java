@@ -0,0 +1,71 @@
+package org.laas.osm2graph.distance;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of each distance engine on a random polyline with segments of a few
+ * meters, as found in OSM ways.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DistanceEngineBenchmark {
+
+    // Number of points.
+    @Param({ "65536" })
+    public int size;
+
+    @Param({ "spherical", "haversine", "equirectangular", "cosine-table" })
+    public String engine;
+
+    private double[] longitudes, latitudes;
+    private DistanceEngine distanceEngine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        this.longitudes = new double[size];
+        this.latitudes = new double[size];
+        double lon = 1.43, lat = 43.6;
+        for (int i = 0; i < size; ++i) {
+            lon += (random.nextDouble() - 0.5) * 1e-3;
+            lat += (random.nextDouble() - 0.5) * 1e-3;
+            this.longitudes[i] = lon;
+            this.latitudes[i] = lat;
+        }
+        this.distanceEngine = DistanceEngineFactory.distanceEngineFromName(engine);
+    }
+
+    @Benchmark
+    public double distance() {
+        double length = 0;
+        for (int i = 1; i < size; ++i) {
+            length += distanceEngine.distance(longitudes[i - 1], latitudes[i - 1], longitudes[i],
+                    latitudes[i]);
+        }
+        return length;
+    }
+
+    @Benchmark
+    public double length() {
+        return distanceEngine.length(longitudes, latitudes, 0, size - 1);
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.laas.osm2graph.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.benchmarks.Logging;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.WayToArc;
+import org.laas.osm2graph.store.NodeStore;
+import org.laas.osm2graph.writers.BinaryGraphWriterMapped;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the mapped graph format: time from opening the file to the
+ * first query, and queries of the successors of random vertices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MappedGraphBenchmark {
+
+    // Extract to use ("synthetic" or path to a recorded extract).
+    @Param({ Extract.SYNTHETIC })
+    public String extract;
+
+    // Size of the synthetic extract.
+    @Param({ "1000" })
+    public int size;
+
+    private File file;
+    private MappedGraph graph;
+    private int[] queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Logging.quiet();
+        Extract data = Extract.load(extract, size);
+        OSM2GraphConfiguration configuration = new OSM2GraphConfiguration();
+        configuration.setThreads(1);
+        configuration.addNodeStore("dense");
+        this.file = File.createTempFile("osm2graph-benchmark", ".mapgm");
+        this.file.deleteOnExit();
+        try (NodeStore store = configuration.getNodeStore()) {
+            data.fill(store);
+            WayToArc wayToArc = new WayToArc(store, configuration);
+            BinaryGraphWriterMapped writer = new BinaryGraphWriterMapped();
+            writer.setOutputChannel(FileChannel.open(this.file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE));
+            writer.writeGraph(wayToArc.convertCompact(wayToArc.compact(data.getWays()), "42",
+                    "benchmark").asGraph());
+        }
+        configuration.getExecutor().close();
+
+        this.graph = MappedGraph.open(this.file.toPath());
+        Random random = new Random(42);
+        this.queries = new int[1 << 16];
+        for (int i = 0; i < this.queries.length; ++i) {
+            this.queries[i] = random.nextInt(this.graph.getNumberOfVertices());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    /**
+     * @param graph
+     * @param vertex
+     *
+     * @return Sum of the lengths of the arcs leaving the given vertex.
+     */
+    private static double successorLength(MappedGraph graph, int vertex) {
+        double length = 0;
+        for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); ++arc) {
+            length += graph.getLength(arc) + graph.getLatitude(graph.getTarget(arc));
+        }
+        return length;
+    }
+
+    @Benchmark
+    public double openAndQuery() throws IOException {
+        MappedGraph opened = MappedGraph.open(this.file.toPath());
+        return successorLength(opened, this.queries[next++ & (this.queries.length - 1)]);
+    }
+
+    @Benchmark
+    public double query() {
+        return successorLength(this.graph, this.queries[next++ & (this.queries.length - 1)]);
+    }
+
+}
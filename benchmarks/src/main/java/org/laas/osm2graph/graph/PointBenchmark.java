@@ -0,0 +1,73 @@
+package org.laas.osm2graph.graph;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the distance between consecutive points of a random polyline
+ * with segments of a few meters, as found in OSM ways.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PointBenchmark {
+
+    // Number of points.
+    @Param({ "65536" })
+    public int size;
+
+    private double[] longitudes, latitudes;
+    private Point[] points;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        this.longitudes = new double[size];
+        this.latitudes = new double[size];
+        this.points = new Point[size];
+        double lon = 1.43, lat = 43.6;
+        for (int i = 0; i < size; ++i) {
+            lon += (random.nextDouble() - 0.5) * 1e-3;
+            lat += (random.nextDouble() - 0.5) * 1e-3;
+            this.longitudes[i] = lon;
+            this.latitudes[i] = lat;
+            this.points[i] = new Point(lon, lat);
+        }
+    }
+
+    @Benchmark
+    public double distance() {
+        double length = 0;
+        for (int i = 1; i < size; ++i) {
+            length += Point.distance(longitudes[i - 1], latitudes[i - 1], longitudes[i],
+                    latitudes[i]);
+        }
+        return length;
+    }
+
+    @Benchmark
+    public double distanceTo() {
+        double length = 0;
+        for (int i = 1; i < size; ++i) {
+            length += points[i - 1].distanceTo(points[i]);
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.laas.osm2graph.graph;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.benchmarks.Logging;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.WayToArc;
+import org.laas.osm2graph.store.NodeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the queries of the spatial index of the graph of the extract,
+ * for random points within the bounds of the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+    // Extract to use ("synthetic" or path to a recorded extract).
+    @Param({ Extract.SYNTHETIC })
+    public String extract;
+
+    // Size of the synthetic extract.
+    @Param({ "1000" })
+    public int size;
+
+    private Graph graph;
+    private SpatialIndex index;
+    private Point[] queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Logging.quiet();
+        Extract data = Extract.load(extract, size);
+        OSM2GraphConfiguration configuration = new OSM2GraphConfiguration();
+        configuration.setThreads(1);
+        configuration.addNodeStore("dense");
+        try (NodeStore store = configuration.getNodeStore()) {
+            data.fill(store);
+            WayToArc wayToArc = new WayToArc(store, configuration);
+            this.graph = new Graph("42", "benchmark",
+                    wayToArc.convert(wayToArc.compact(data.getWays())));
+        }
+        configuration.getExecutor().close();
+
+        // Random queries within the bounding box of the vertices.
+        List<Vertex> vertices = this.graph.getNodes();
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY,
+                minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (Vertex vertex: vertices) {
+            minLon = Math.min(minLon, vertex.getPoint().getLongitude());
+            maxLon = Math.max(maxLon, vertex.getPoint().getLongitude());
+            minLat = Math.min(minLat, vertex.getPoint().getLatitude());
+            maxLat = Math.max(maxLat, vertex.getPoint().getLatitude());
+        }
+        Random random = new Random(42);
+        this.queries = new Point[1 << 16];
+        for (int i = 0; i < this.queries.length; ++i) {
+            this.queries[i] = new Point(minLon + random.nextDouble() * (maxLon - minLon),
+                    minLat + random.nextDouble() * (maxLat - minLat));
+        }
+
+        this.index = this.graph.getSpatialIndex();
+        this.index.findClosestSegment(this.queries[0]);
+    }
+
+    private Point nextQuery() {
+        this.next = (this.next + 1) & (this.queries.length - 1);
+        return this.queries[this.next];
+    }
+
+    @Benchmark
+    public Vertex findClosestVertex() {
+        return this.index.findClosestVertex(nextQuery());
+    }
+
+    @Benchmark
+    public List<Vertex> findClosestVertices() {
+        return this.index.findClosestVertices(nextQuery(), 10);
+    }
+
+    @Benchmark
+    public List<Vertex> findVerticesWithin() {
+        return this.index.findVerticesWithin(nextQuery(), 100);
+    }
+
+    @Benchmark
+    public SpatialIndex.SegmentMatch findClosestSegment() {
+        return this.index.findClosestSegment(nextQuery());
+    }
+
+    @Benchmark
+    public SpatialIndex buildIndex() {
+        return new SpatialIndex(this.graph.getNodes());
+    }
+
+}
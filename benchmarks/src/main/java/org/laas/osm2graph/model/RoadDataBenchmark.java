@@ -0,0 +1,96 @@
+package org.laas.osm2graph.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.graph.RoadInformation.RoadType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+
+/**
+ * Benchmarks of the tag interpretation of ways: access and maximum speed, on the
+ * useful tags of each way of the extract.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoadDataBenchmark {
+
+    // Extract to use ("synthetic" or path to a recorded extract).
+    @Param({ Extract.SYNTHETIC })
+    public String extract;
+
+    // Size of the synthetic extract.
+    @Param({ "1000" })
+    public int size;
+
+    // Useful tags and road type of each way.
+    private List<Map<String, String>> tags;
+    private List<RoadType> roadTypes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        WayToArc wayToArc = new WayToArc(null, new OSM2GraphConfiguration());
+        this.tags = new ArrayList<>();
+        this.roadTypes = new ArrayList<>();
+        for (Way way: Extract.load(extract, size).getWays()) {
+            Map<String, String> wayTags = new HashMap<>();
+            for (Tag tag: way.getTags()) {
+                if (wayToArc.isUsefulTag(tag)) {
+                    wayTags.put(tag.getKey(), tag.getValue());
+                }
+            }
+            this.tags.add(wayTags);
+            this.roadTypes.add(RoadTypeData.getRoadType(wayTags));
+        }
+    }
+
+    @Benchmark
+    public long getAccessType() {
+        long result = 0;
+        for (int i = 0; i < tags.size(); ++i) {
+            result ^= AccessData.getAccessType(tags.get(i), roadTypes.get(i));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long getMaximumSpeed() {
+        long result = 0;
+        for (int i = 0; i < tags.size(); ++i) {
+            result += SpeedData.getMaximumSpeed(tags.get(i), roadTypes.get(i));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long getRoadType() {
+        long result = 0;
+        for (int i = 0; i < tags.size(); ++i) {
+            RoadType roadType = RoadTypeData.getRoadType(tags.get(i));
+            result += roadType == null ? -1 : roadType.ordinal();
+        }
+        return result;
+    }
+
+}
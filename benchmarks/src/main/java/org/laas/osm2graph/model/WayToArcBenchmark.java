@@ -0,0 +1,124 @@
+package org.laas.osm2graph.model;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.benchmarks.Logging;
+import org.laas.osm2graph.graph.CompactGraph;
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.graph.Vertex;
+import org.laas.osm2graph.store.NodeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+
+/**
+ * Benchmarks of the conversion of ways into arcs: road information lookup,
+ * vertex detection and arc creation, for each threading and node store option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WayToArcBenchmark {
+
+    // Extract to use ("synthetic" or path to a recorded extract).
+    @Param({ Extract.SYNTHETIC })
+    public String extract;
+
+    // Size of the synthetic extract.
+    @Param({ "1000" })
+    public int size;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "dense" })
+    public String nodeStore;
+
+    private List<Way> ways;
+    private OSM2GraphConfiguration configuration;
+    private NodeStore store;
+
+    // Compact ways and the converter holding their road informations.
+    private WayToArc compacter;
+    private List<CompactWay> compactWays;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Logging.quiet();
+        Extract data = Extract.load(extract, size);
+        this.ways = data.getWays();
+        this.configuration = new OSM2GraphConfiguration();
+        this.configuration.setThreads(threads);
+        this.configuration.addNodeStore(nodeStore);
+        this.store = this.configuration.getNodeStore();
+        data.fill(this.store);
+        this.compacter = new WayToArc(this.store, this.configuration);
+        this.compactWays = this.compacter.compact(this.ways);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.configuration.getExecutor().close();
+        this.store.close();
+    }
+
+    /**
+     * @return A new converter knowing the road informations of the compact ways.
+     */
+    private WayToArc newWayToArc() {
+        WayToArc wayToArc = new WayToArc(this.store, this.configuration);
+        for (RoadInformation info: this.compacter.getRoadInformations()) {
+            wayToArc.roadinfos.intern(info);
+        }
+        return wayToArc;
+    }
+
+    @Benchmark
+    public void getOrCreateRoadInformation(Blackhole blackhole) {
+        WayToArc wayToArc = new WayToArc(this.store, this.configuration);
+        for (Way way: this.ways) {
+            blackhole.consume(wayToArc.getOrCreateRoadInformation(way));
+        }
+    }
+
+    @Benchmark
+    public List<CompactWay> compact() {
+        return new WayToArc(this.store, this.configuration).compact(this.ways);
+    }
+
+    @Benchmark
+    public int findVertex() {
+        WayToArc wayToArc = newWayToArc();
+        wayToArc.findVertex(this.compactWays);
+        return wayToArc.numberOfVertices;
+    }
+
+    @Benchmark
+    public List<Vertex> convert() {
+        return newWayToArc().convert(this.compactWays);
+    }
+
+    @Benchmark
+    public CompactGraph convertCompact() {
+        return newWayToArc().convertCompact(this.compactWays, "benchmark", "benchmark");
+    }
+
+}
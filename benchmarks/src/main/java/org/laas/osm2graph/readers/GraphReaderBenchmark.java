@@ -0,0 +1,97 @@
+package org.laas.osm2graph.readers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.benchmarks.Logging;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.WayToArc;
+import org.laas.osm2graph.store.NodeStore;
+import org.laas.osm2graph.writers.GraphWriter;
+import org.laas.osm2graph.writers.GraphWriterFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the binary readers, reading the graph of the extract from a
+ * temporary file written by the corresponding writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphReaderBenchmark {
+
+    // Extract to use ("synthetic" or path to a recorded extract).
+    @Param({ Extract.SYNTHETIC })
+    public String extract;
+
+    // Size of the synthetic extract.
+    @Param({ "1000" })
+    public int size;
+
+    @Param({ "insa2016", "insa2018" })
+    public String reader;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private OSM2GraphConfiguration configuration;
+    private File input;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Logging.quiet();
+        Extract data = Extract.load(extract, size);
+        this.configuration = new OSM2GraphConfiguration();
+        this.configuration.setThreads(threads);
+        this.configuration.addNodeStore("dense");
+        Graph graph;
+        try (NodeStore store = this.configuration.getNodeStore()) {
+            data.fill(store);
+            WayToArc wayToArc = new WayToArc(store, this.configuration);
+            graph = new Graph("42", "benchmark",
+                    wayToArc.convert(wayToArc.compact(data.getWays())));
+        }
+        this.input = File.createTempFile("osm2graph-benchmark", ".mapgr");
+        this.input.deleteOnExit();
+        GraphWriter graphWriter = GraphWriterFactory.graphWriterFromName(reader);
+        graphWriter.setOutputChannel(FileChannel.open(this.input.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        graphWriter.writeGraph(graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.configuration.getExecutor().close();
+        this.input.delete();
+    }
+
+    @Benchmark
+    public int readCompactGraph() throws IOException {
+        GraphReader graphReader = GraphReaderFactory.graphReaderFromName(reader);
+        graphReader.setExecutor(this.configuration.getExecutor());
+        graphReader.setInputChannel(FileChannel.open(this.input.toPath(), StandardOpenOption.READ));
+        return graphReader.readCompactGraph().getNumberOfArcs();
+    }
+
+}
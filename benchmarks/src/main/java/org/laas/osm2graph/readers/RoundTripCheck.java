@@ -0,0 +1,197 @@
+package org.laas.osm2graph.readers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.benchmarks.Logging;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.WayToArc;
+import org.laas.osm2graph.store.NodeStore;
+import org.laas.osm2graph.transcoder.GraphTranscoder;
+import org.laas.osm2graph.writers.GraphWriter;
+import org.laas.osm2graph.writers.GraphWriterFactory;
+
+/**
+ * Check that the binary readers read back what the corresponding writers wrote,
+ * by writing the graph of the synthetic extract, reading it and writing it again,
+ * for each INSA format and with one and several threads. The graph read is
+ * written both from {@link GraphReader#readGraph()} and through the
+ * {@link GraphTranscoder} (which reads a view and streams it to streaming
+ * writers).
+ *
+ * Writing a graph read must give the same file. The first insa2016 file is the
+ * only exception, since the format does not store the access of the roads: road
+ * informations that only differ by their access are merged when the file is
+ * read, so only the files written from a graph read are compared. Run with:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.laas.osm2graph.readers.RoundTripCheck [size]
+ * </pre>
+ */
+public class RoundTripCheck {
+
+    // Formats checked, with a flag telling if the first file written must also be
+    // the same as the files written from the graphs read.
+    private static final String[] FORMATS = { "insa2016", "insa2018" };
+    private static final boolean[] EXACT = { false, true };
+
+    // Numbers of threads used to read and write.
+    private static final int[] THREADS = { 1, 4 };
+
+    /**
+     * Write the given graph to the given file.
+     *
+     * @param graph
+     * @param format Name of the writer.
+     * @param configuration Configuration whose executor is used.
+     * @param file
+     *
+     * @throws IOException
+     */
+    private static void write(Graph graph, String format, OSM2GraphConfiguration configuration,
+            File file) throws IOException {
+        GraphWriter writer = GraphWriterFactory.graphWriterFromName(format);
+        writer.setOutputChannel(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        writer.setExecutor(configuration.getExecutor());
+        writer.writeGraph(graph);
+    }
+
+    /**
+     * Read the given file with {@link GraphReader#readGraph()} and write the graph
+     * read to another file.
+     *
+     * @param input
+     * @param format Name of the reader and of the writer.
+     * @param configuration Configuration whose executor is used.
+     * @param output
+     *
+     * @throws IOException
+     */
+    private static void rewrite(File input, String format, OSM2GraphConfiguration configuration,
+            File output) throws IOException {
+        GraphReader reader = GraphReaderFactory.graphReaderFromName(format);
+        reader.setExecutor(configuration.getExecutor());
+        Graph graph;
+        try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            reader.setInputChannel(channel);
+            graph = reader.readGraph();
+        }
+        write(graph, format, configuration, output);
+    }
+
+    /**
+     * Read the given file as a view and write it to another file, using the
+     * transcoder.
+     *
+     * @param input
+     * @param format Name of the reader and of the writer.
+     * @param threads Number of threads of the transcoder.
+     * @param output
+     *
+     * @throws IOException
+     */
+    private static void transcode(File input, String format, int threads, File output)
+            throws IOException {
+        GraphTranscoder transcoder = new GraphTranscoder(new String[] {
+                "input=" + input.getPath(), "reader=" + format, "file=" + output.getPath(),
+                "writer=" + format, "threads=" + threads });
+        try {
+            transcoder.run();
+        }
+        finally {
+            transcoder.close();
+        }
+    }
+
+    /**
+     * Compare the content of two files.
+     *
+     * @param expected
+     * @param actual
+     * @param description Description of the check, printed with its result.
+     *
+     * @return true if the files have the same content.
+     *
+     * @throws IOException
+     */
+    private static boolean compare(File expected, File actual, String description)
+            throws IOException {
+        boolean same = Arrays.equals(Files.readAllBytes(expected.toPath()),
+                Files.readAllBytes(actual.toPath()));
+        System.out.println((same ? "ok      " : "FAILED  ") + description);
+        return same;
+    }
+
+    /**
+     * @param args Size of the side of the grid of the synthetic extract (optional,
+     *        1000 by default).
+     *
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        Logging.quiet();
+        Extract data = Extract.load(Extract.SYNTHETIC,
+                args.length > 0 ? Integer.parseInt(args[0]) : 1000);
+        File directory = Files.createTempDirectory("osm2graph-roundtrip").toFile();
+        boolean success = true;
+        try {
+            for (int threads: THREADS) {
+                OSM2GraphConfiguration configuration = new OSM2GraphConfiguration();
+                configuration.setThreads(threads);
+                configuration.addNodeStore("dense");
+                try {
+                    Graph graph;
+                    try (NodeStore store = configuration.getNodeStore()) {
+                        data.fill(store);
+                        WayToArc wayToArc = new WayToArc(store, configuration);
+                        graph = new Graph("42", "roundtrip",
+                                wayToArc.convert(wayToArc.compact(data.getWays())));
+                    }
+                    for (int f = 0; f < FORMATS.length; ++f) {
+                        String format = FORMATS[f];
+                        String name = format + ", " + threads + " thread(s): ";
+                        File written = new File(directory, format + ".written");
+                        File read = new File(directory, format + ".read");
+                        File reread = new File(directory, format + ".reread");
+                        File transcoded = new File(directory, format + ".transcoded");
+                        File retranscoded = new File(directory, format + ".retranscoded");
+
+                        write(graph, format, configuration, written);
+                        rewrite(written, format, configuration, read);
+                        rewrite(read, format, configuration, reread);
+                        transcode(written, format, threads, transcoded);
+                        transcode(transcoded, format, threads, retranscoded);
+
+                        if (EXACT[f]) {
+                            success &= compare(written, read, name + "write, read, write");
+                        }
+                        success &= compare(read, reread, name + "read, write, read, write");
+                        success &= compare(read, transcoded, name + "transcode");
+                        success &= compare(transcoded, retranscoded, name + "transcode twice");
+                    }
+                }
+                finally {
+                    configuration.getExecutor().close();
+                }
+            }
+        }
+        finally {
+            for (File file: directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+        if (!success) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.laas.osm2graph.writers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.benchmarks.Extract;
+import org.laas.osm2graph.benchmarks.Logging;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.WayToArc;
+import org.laas.osm2graph.store.NodeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the binary writers, writing the graph of the extract to a
+ * temporary file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphWriterBenchmark {
+
+    // Extract to use ("synthetic" or path to a recorded extract).
+    @Param({ Extract.SYNTHETIC })
+    public String extract;
+
+    // Size of the synthetic extract.
+    @Param({ "1000" })
+    public int size;
+
+    @Param({ "insa2016", "insa2018", "mapped" })
+    public String writer;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    // Build the graph in its compact form.
+    @Param({ "false" })
+    public boolean compactGraph;
+
+    private OSM2GraphConfiguration configuration;
+    private Graph graph;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Logging.quiet();
+        Extract data = Extract.load(extract, size);
+        this.configuration = new OSM2GraphConfiguration();
+        this.configuration.setThreads(threads);
+        this.configuration.addNodeStore("dense");
+        try (NodeStore store = this.configuration.getNodeStore()) {
+            data.fill(store);
+            WayToArc wayToArc = new WayToArc(store, this.configuration);
+            if (compactGraph) {
+                this.graph = wayToArc.convertCompact(wayToArc.compact(data.getWays()), "42",
+                        "benchmark").asGraph();
+            }
+            else {
+                this.graph = new Graph("42", "benchmark",
+                        wayToArc.convert(wayToArc.compact(data.getWays())));
+            }
+        }
+        this.output = File.createTempFile("osm2graph-benchmark", ".mapgr");
+        this.output.deleteOnExit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.configuration.getExecutor().close();
+        this.output.delete();
+    }
+
+    @Benchmark
+    public long writeGraph() throws IOException {
+        GraphWriter graphWriter = GraphWriterFactory.graphWriterFromName(writer);
+        graphWriter.setExecutor(this.configuration.getExecutor());
+        graphWriter.setOutputChannel(FileChannel.open(this.output.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        graphWriter.writeGraph(this.graph);
+        return this.output.length();
+    }
+
+}
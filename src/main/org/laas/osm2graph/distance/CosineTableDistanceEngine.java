@@ -0,0 +1,47 @@
+package org.laas.osm2graph.distance;
+
+/**
+ * Equirectangular distance (see {@link EquirectangularDistanceEngine}) where the
+ * cosine of the latitude is interpolated from a precomputed table instead of
+ * being computed for each segment.
+ * 
+ * The table is shared by all the nodes and holds one value every 1/100 degree
+ * (about 140kB), the interpolation error (below 1e-8) being negligible compared
+ * to the error of the approximation itself. The computation of a segment is then
+ * made of additions, multiplications and a square root only.
+ */
+public class CosineTableDistanceEngine implements DistanceEngine {
+
+    // Number of table entries per degree.
+    private static final int STEPS_PER_DEGREE = 100;
+
+    // Cosine of latitudes from -90 to 90 degrees (with an extra entry so that 90
+    // can be interpolated).
+    private static final double[] COSINES = new double[180 * STEPS_PER_DEGREE + 2];
+
+    static {
+        for (int i = 0; i < COSINES.length; ++i) {
+            COSINES[i] = Math.cos(Math.toRadians((double) i / STEPS_PER_DEGREE - 90));
+        }
+    }
+
+    /**
+     * @param latitude Latitude in degrees, between -90 and 90.
+     * 
+     * @return Interpolated cosine of the given latitude.
+     */
+    public static double cosLatitude(double latitude) {
+        double position = (latitude + 90) * STEPS_PER_DEGREE;
+        int index = Math.max(0, Math.min((int) position, COSINES.length - 2));
+        double fraction = position - index;
+        return COSINES[index] + fraction * (COSINES[index + 1] - COSINES[index]);
+    }
+
+    @Override
+    public double distance(double longitude1, double latitude1, double longitude2,
+            double latitude2) {
+        return EquirectangularDistanceEngine.distance(longitude1, latitude1, longitude2,
+                latitude2, cosLatitude((latitude1 + latitude2) / 2));
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.laas.osm2graph.distance;
+
+import org.laas.osm2graph.graph.Point;
+
+/**
+ * Method used to compute the length of arcs, i.e., the distance between
+ * consecutive points of ways.
+ * 
+ * Implementations are stateless and can be used concurrently.
+ */
+public interface DistanceEngine {
+
+    /**
+     * Earth radius, in meters.
+     */
+    public static final double EARTH_RADIUS = Point.EARTH_RADIUS;
+
+    /**
+     * Compute the distance in meters between the two given points.
+     * 
+     * @param longitude1, latitude1 Coordinates of the first point, in degrees.
+     * @param longitude2, latitude2 Coordinates of the second point, in degrees.
+     * 
+     * @return Distance between the two given points, in meters.
+     */
+    public double distance(double longitude1, double latitude1, double longitude2,
+            double latitude2);
+
+    /**
+     * Compute the length in meters of the polyline going through the given points,
+     * i.e., the sum of the distances between consecutive points, in order.
+     * Implementations may override this method to reuse the values computed for a
+     * point in both segments it belongs to.
+     * 
+     * @param longitudes, latitudes Coordinates of the points, in degrees.
+     * @param first Index of the first point.
+     * @param last Index of the last point (included).
+     * 
+     * @return Length of the polyline, in meters.
+     */
+    public default double length(double[] longitudes, double[] latitudes, int first, int last) {
+        double length = 0;
+        for (int i = first + 1; i <= last; ++i) {
+            length += distance(longitudes[i - 1], latitudes[i - 1], longitudes[i], latitudes[i]);
+        }
+        return length;
+    }
+
+}
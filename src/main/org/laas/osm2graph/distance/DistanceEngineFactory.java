@@ -0,0 +1,39 @@
+package org.laas.osm2graph.distance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class DistanceEngineFactory {
+
+    // Default distance engine.
+    public final static String DEFAULT_ENGINE = "spherical";
+
+    // Allowed distance engines
+    public final static Map<String, Class<? extends DistanceEngine>> ALLOWED_ENGINES = new HashMap<String, Class<? extends DistanceEngine>>();
+
+    /**
+     * @param name
+     * @return
+     */
+    public static final DistanceEngine distanceEngineFromName(String name) {
+        Class<? extends DistanceEngine> cls = ALLOWED_ENGINES.getOrDefault(name.toLowerCase(),
+                null);
+        if (cls == null) {
+            return null;
+        }
+        try {
+            return cls.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static {
+        ALLOWED_ENGINES.put("spherical", SphericalDistanceEngine.class);
+        ALLOWED_ENGINES.put("haversine", HaversineDistanceEngine.class);
+        ALLOWED_ENGINES.put("equirectangular", EquirectangularDistanceEngine.class);
+        ALLOWED_ENGINES.put("cosine-table", CosineTableDistanceEngine.class);
+    }
+
+}
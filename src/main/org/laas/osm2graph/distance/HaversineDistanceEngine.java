@@ -0,0 +1,46 @@
+package org.laas.osm2graph.distance;
+
+/**
+ * Distance computed with the haversine formula, which is exact on a sphere and
+ * well-conditioned for short segments.
+ */
+public class HaversineDistanceEngine implements DistanceEngine {
+
+    @Override
+    public double distance(double longitude1, double latitude1, double longitude2,
+            double latitude2) {
+        return distance(longitude1, latitude1, Math.cos(Math.toRadians(latitude1)), longitude2,
+                latitude2, Math.cos(Math.toRadians(latitude2)));
+    }
+
+    @Override
+    public double length(double[] longitudes, double[] latitudes, int first, int last) {
+        double length = 0, cosLatitude = Math.cos(Math.toRadians(latitudes[first]));
+        for (int i = first + 1; i <= last; ++i) {
+            double nextCosLatitude = Math.cos(Math.toRadians(latitudes[i]));
+            length += distance(longitudes[i - 1], latitudes[i - 1], cosLatitude, longitudes[i],
+                    latitudes[i], nextCosLatitude);
+            cosLatitude = nextCosLatitude;
+        }
+        return length;
+    }
+
+    /**
+     * Compute the haversine distance between the two given points, with the cosine
+     * of their latitudes already computed.
+     * 
+     * @param longitude1, latitude1, cosLatitude1 First point.
+     * @param longitude2, latitude2, cosLatitude2 Second point.
+     * 
+     * @return Distance between the two given points, in meters.
+     */
+    private static double distance(double longitude1, double latitude1, double cosLatitude1,
+            double longitude2, double latitude2, double cosLatitude2) {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude
+                + cosLatitude1 * cosLatitude2 * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(a, 1)));
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.laas.osm2graph.distance;
+
+import org.laas.osm2graph.graph.Point;
+
+/**
+ * Distance computed with the spherical law of cosines (see
+ * {@link Point#distance(double, double, double, double)}).
+ * 
+ * This is the historical distance of the plugin, kept as the default so that
+ * generated files do not change, but it relies on acos which is slow and loses
+ * precision for segments of a few meters.
+ */
+public class SphericalDistanceEngine implements DistanceEngine {
+
+    @Override
+    public double distance(double longitude1, double latitude1, double longitude2,
+            double latitude2) {
+        return Point.distance(longitude1, latitude1, longitude2, latitude2);
+    }
+
+}
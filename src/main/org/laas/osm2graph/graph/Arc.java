@@ -31,13 +31,33 @@ public class Arc {
      */
     public Arc(int id, Vertex origin, Vertex dest, double length, RoadInformation roadInformation,
             List<Point> list) {
+        this(id, origin, dest, length, roadInformation, list, true);
+    }
+
+    /**
+     * Create a new arc, linked with the given origin only if requested. Arcs
+     * created concurrently can be linked afterwards in a fixed order (see
+     * {@link Vertex#addSuccessor(Arc)}), so that the order of the successors does
+     * not depend on the scheduling of the threads.
+     * 
+     * @param origin Origin of this arc.
+     * @param dest Destination of this arc.
+     * @param length Length of this arc (in meters).
+     * @param roadInformation Road information for this arc.
+     * @param list Points representing this arc.
+     * @param link true to link this arc with its origin.
+     */
+    public Arc(int id, Vertex origin, Vertex dest, double length, RoadInformation roadInformation,
+            List<Point> list, boolean link) {
         this.id = id;
         this.origin = origin;
         this.destination = dest;
         this.length = length;
         this.info = roadInformation;
         this.points = list;
-        origin.addSuccessor(this);
+        if (link) {
+            origin.addSuccessor(this);
+        }
     }
 
     /**
@@ -0,0 +1,435 @@
+package org.laas.osm2graph.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Compact, struct-of-arrays representation of a graph.
+ * 
+ * Vertex coordinates are stored in primitive arrays, arcs are stored in CSR
+ * form (arcs leaving vertex v are at indices [offsets[v], offsets[v + 1])), and
+ * the intermediate points of all the arcs are stored in a single packed buffer
+ * of coordinates. Road informations are referenced by index.
+ * 
+ * This uses a few tens of bytes per vertex and per arc, instead of several
+ * objects for each. {@link #asGraph()} gives a {@link Graph} view of this graph
+ * so that it can be used with existing writers.
+ */
+public class CompactGraph {
+
+    /**
+     * Builder for compact graphs, used when the number of arcs leaving each vertex
+     * is known before arcs are created. Arcs can be added concurrently, in any
+     * order: each arc comes with its index in a sequential order, and the arcs
+     * leaving each vertex are then sorted by this index, so the graph does not
+     * depend on the order in which arcs are added.
+     */
+    public static class Builder {
+
+        private final CompactGraph graph;
+
+        // Next free arc index for each vertex.
+        private final AtomicIntegerArray cursors;
+
+        // Sequential index of the arc stored at each arc index.
+        private int[] ranks;
+
+        /**
+         * @param mapId ID of the graph.
+         * @param mapName Name of the graph.
+         * @param longitudes Longitudes of the vertices.
+         * @param latitudes Latitudes of the vertices.
+         * @param degrees Number of arcs leaving each vertex.
+         * @param numberOfPoints Total number of intermediate points.
+         * @param roadInformations Road informations referenced by the arcs.
+         */
+        public Builder(String mapId, String mapName, double[] longitudes, double[] latitudes,
+                int[] degrees, long numberOfPoints, List<RoadInformation> roadInformations) {
+            if (2 * numberOfPoints > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "too many points for a compact graph: " + numberOfPoints);
+            }
+            int nVertices = longitudes.length;
+            int[] offsets = new int[nVertices + 1];
+            long total = 0;
+            for (int i = 0; i < nVertices; ++i) {
+                offsets[i] = (int) total;
+                total += degrees[i];
+            }
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("too many arcs for a compact graph: " + total);
+            }
+            offsets[nVertices] = (int) total;
+            int nArcs = (int) total;
+            this.graph = new CompactGraph(mapId, mapName, longitudes, latitudes, offsets,
+                    new int[nArcs], new int[nArcs], new double[nArcs], new int[nArcs],
+                    new int[nArcs], new double[(int) (2 * numberOfPoints)], roadInformations);
+            this.cursors = new AtomicIntegerArray(offsets);
+            this.ranks = new int[nArcs];
+        }
+
+        /**
+         * Add an arc to the graph. This method can be called concurrently.
+         * 
+         * @param rank Sequential index of the arc, from 0 to the number of arcs
+         *        (arcs leaving a vertex are ordered by this index).
+         * @param point Index of the first intermediate point of the arc in the
+         *        polyline buffer, the points of the arcs must not overlap.
+         * @param origin Index of the origin vertex.
+         * @param destination Index of the destination vertex.
+         * @param length Length of the arc, in meters.
+         * @param info Index of the road information of the arc.
+         * @param longitudes Longitudes of the intermediate points.
+         * @param latitudes Latitudes of the intermediate points.
+         * @param from Index of the first intermediate point in longitudes and
+         *        latitudes.
+         * @param to Index after the last intermediate point.
+         */
+        public void addArc(long rank, long point, int origin, int destination, double length,
+                int info, double[] longitudes, double[] latitudes, int from, int to) {
+            int arc = cursors.getAndIncrement(origin);
+            if (arc >= graph.offsets[origin + 1]) {
+                throw new IllegalStateException("too many arcs for vertex " + origin);
+            }
+            int size = to - from;
+            if (point < 0 || 2 * (point + size) > graph.polylines.length) {
+                throw new IllegalStateException("too many points for arc " + rank);
+            }
+            int start = (int) point;
+            ranks[arc] = (int) rank;
+            graph.targets[arc] = destination;
+            graph.infos[arc] = info;
+            graph.lengths[arc] = length;
+            graph.polylineStarts[arc] = start;
+            graph.polylineSizes[arc] = size;
+            for (int i = 0; i < size; ++i) {
+                graph.polylines[2 * (start + i)] = longitudes[from + i];
+                graph.polylines[2 * (start + i) + 1] = latitudes[from + i];
+            }
+        }
+
+        /**
+         * Sort the arcs leaving the given vertices by their sequential index. This
+         * method must be called for all the vertices once all the arcs have been
+         * added, and can be called concurrently for disjoint ranges of vertices.
+         * 
+         * @param first First vertex of the range.
+         * @param last Vertex after the last one of the range.
+         */
+        public void sortArcs(int first, int last) {
+            for (int vertex = first; vertex < last; ++vertex) {
+                sortArcsOf(graph.offsets[vertex], graph.offsets[vertex + 1]);
+            }
+        }
+
+        /**
+         * @return The graph built, once the arcs have been sorted (see
+         *         {@link #sortArcs(int, int)}).
+         */
+        public CompactGraph build() {
+            this.ranks = null;
+            return graph;
+        }
+
+        /**
+         * Sort the arcs in [first, last) by their sequential index (insertion sort,
+         * the number of arcs leaving a vertex being small).
+         * 
+         * @param first
+         * @param last
+         */
+        private void sortArcsOf(int first, int last) {
+            for (int i = first + 1; i < last; ++i) {
+                int rank = ranks[i], target = graph.targets[i], info = graph.infos[i],
+                        start = graph.polylineStarts[i], size = graph.polylineSizes[i];
+                double length = graph.lengths[i];
+                int j = i;
+                for (; j > first && ranks[j - 1] > rank; --j) {
+                    ranks[j] = ranks[j - 1];
+                    graph.targets[j] = graph.targets[j - 1];
+                    graph.infos[j] = graph.infos[j - 1];
+                    graph.lengths[j] = graph.lengths[j - 1];
+                    graph.polylineStarts[j] = graph.polylineStarts[j - 1];
+                    graph.polylineSizes[j] = graph.polylineSizes[j - 1];
+                }
+                if (j != i) {
+                    ranks[j] = rank;
+                    graph.targets[j] = target;
+                    graph.infos[j] = info;
+                    graph.lengths[j] = length;
+                    graph.polylineStarts[j] = start;
+                    graph.polylineSizes[j] = size;
+                }
+            }
+        }
+    }
+
+    // Map identifier and name.
+    private final String mapId, mapName;
+
+    // Coordinates of the vertices.
+    private final double[] longitudes, latitudes;
+
+    // CSR offsets (one per vertex, plus one).
+    private final int[] offsets;
+
+    // Destination and road information index of each arc.
+    private final int[] targets, infos;
+
+    // Length of each arc, in meters.
+    private final double[] lengths;
+
+    // Start (in points) and number of intermediate points of each arc.
+    private final int[] polylineStarts, polylineSizes;
+
+    // Packed intermediate points (longitude, latitude).
+    private final double[] polylines;
+
+    // Road informations.
+    private final List<RoadInformation> roadInformations;
+
+    /**
+     * Create a new compact graph from the given arrays, which are not copied.
+     * 
+     * @param mapId
+     * @param mapName
+     * @param longitudes
+     * @param latitudes
+     * @param offsets
+     * @param targets
+     * @param infos
+     * @param lengths
+     * @param polylineStarts
+     * @param polylineSizes
+     * @param polylines
+     * @param roadInformations
+     */
+    public CompactGraph(String mapId, String mapName, double[] longitudes, double[] latitudes,
+            int[] offsets, int[] targets, int[] infos, double[] lengths, int[] polylineStarts,
+            int[] polylineSizes, double[] polylines, List<RoadInformation> roadInformations) {
+        this.mapId = mapId;
+        this.mapName = mapName;
+        this.longitudes = longitudes;
+        this.latitudes = latitudes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.infos = infos;
+        this.lengths = lengths;
+        this.polylineStarts = polylineStarts;
+        this.polylineSizes = polylineSizes;
+        this.polylines = polylines;
+        this.roadInformations = roadInformations;
+    }
+
+    /**
+     * @return Map ID of this graph.
+     */
+    public String getMapId() {
+        return mapId;
+    }
+
+    /**
+     * @return Map name of this graph.
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    /**
+     * @return Number of vertices in this graph.
+     */
+    public int getNumberOfVertices() {
+        return longitudes.length;
+    }
+
+    /**
+     * @return Number of arcs in this graph.
+     */
+    public int getNumberOfArcs() {
+        return targets.length;
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     * 
+     * @return Longitude of the vertex.
+     */
+    public double getLongitude(int vertex) {
+        return longitudes[vertex];
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     * 
+     * @return Latitude of the vertex.
+     */
+    public double getLatitude(int vertex) {
+        return latitudes[vertex];
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     * 
+     * @return Index of the first arc leaving the vertex.
+     */
+    public int getFirstArc(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     * 
+     * @return Index after the last arc leaving the vertex.
+     */
+    public int getLastArc(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * 
+     * @return Index of the destination of the arc.
+     */
+    public int getTarget(int arc) {
+        return targets[arc];
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * 
+     * @return Index of the road information of the arc.
+     */
+    public int getRoadInformationIndex(int arc) {
+        return infos[arc];
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * 
+     * @return Length of the arc, in meters.
+     */
+    public double getLength(int arc) {
+        return lengths[arc];
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * 
+     * @return Number of intermediate points of the arc.
+     */
+    public int getNumberOfIntermediatePoints(int arc) {
+        return polylineSizes[arc];
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * @param index Index of the intermediate point.
+     * 
+     * @return Longitude of the intermediate point.
+     */
+    public double getPointLongitude(int arc, int index) {
+        return polylines[2 * (polylineStarts[arc] + index)];
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * @param index Index of the intermediate point.
+     * 
+     * @return Latitude of the intermediate point.
+     */
+    public double getPointLatitude(int arc, int index) {
+        return polylines[2 * (polylineStarts[arc] + index) + 1];
+    }
+
+    /**
+     * @return Road informations referenced by the arcs of this graph.
+     */
+    public List<RoadInformation> getRoadInformations() {
+        return Collections.unmodifiableList(roadInformations);
+    }
+
+    /**
+     * Create a Vertex for the given vertex, with its successors. Destination of the
+     * successors are created without their own successors.
+     * 
+     * @param vertex Index of a vertex.
+     * 
+     * @return New Vertex corresponding to the given vertex.
+     */
+    protected Vertex createVertex(int vertex) {
+        Vertex origin = new Vertex(vertex, new Point(longitudes[vertex], latitudes[vertex]));
+        for (int arc = offsets[vertex]; arc < offsets[vertex + 1]; ++arc) {
+            int target = targets[arc];
+            Point destination = new Point(longitudes[target], latitudes[target]);
+            List<Point> points = new ArrayList<>(polylineSizes[arc] + 2);
+            points.add(origin.getPoint());
+            for (int i = 0; i < polylineSizes[arc]; ++i) {
+                points.add(new Point(getPointLongitude(arc, i), getPointLatitude(arc, i)));
+            }
+            points.add(destination);
+            new Arc(arc, origin, new Vertex(target, destination), lengths[arc],
+                    roadInformations.get(infos[arc]), points);
+        }
+        return origin;
+    }
+
+    /**
+     * Create a {@link Graph} containing all the vertices and arcs of this graph.
+     * Unlike {@link #asGraph()}, the destination of each arc is a vertex of the
+     * returned graph, with its own successors, but all the vertices and arcs are
+     * created immediately.
+     * 
+     * @return A new Graph equivalent to this graph.
+     */
+    public Graph toGraph() {
+        Vertex[] vertices = new Vertex[getNumberOfVertices()];
+        for (int vertex = 0; vertex < vertices.length; ++vertex) {
+            vertices[vertex] = new Vertex(vertex,
+                    new Point(longitudes[vertex], latitudes[vertex]));
+        }
+        for (int vertex = 0; vertex < vertices.length; ++vertex) {
+            Vertex origin = vertices[vertex];
+            for (int arc = offsets[vertex]; arc < offsets[vertex + 1]; ++arc) {
+                Vertex destination = vertices[targets[arc]];
+                List<Point> points = new ArrayList<>(polylineSizes[arc] + 2);
+                points.add(origin.getPoint());
+                for (int i = 0; i < polylineSizes[arc]; ++i) {
+                    points.add(new Point(getPointLongitude(arc, i), getPointLatitude(arc, i)));
+                }
+                points.add(destination.getPoint());
+                new Arc(arc, origin, destination, lengths[arc],
+                        roadInformations.get(infos[arc]), points);
+            }
+        }
+        return new Graph(mapId, mapName, Arrays.asList(vertices), roadInformations);
+    }
+
+    /**
+     * Create a view of this graph as a {@link Graph}. Vertices of the view are
+     * created on demand when accessed, so the view does not use more memory than
+     * this graph, but two calls with the same index return different (equal)
+     * vertices. The destination of an arc in the view has no successor, its
+     * successors should be retrieved from the view using its ID.
+     * 
+     * @return A Graph view of this graph.
+     */
+    public Graph asGraph() {
+        return new Graph(mapId, mapName, new AbstractList<Vertex>() {
+
+            @Override
+            public Vertex get(int index) {
+                return createVertex(index);
+            }
+
+            @Override
+            public int size() {
+                return getNumberOfVertices();
+            }
+        }, roadInformations);
+    }
+
+}
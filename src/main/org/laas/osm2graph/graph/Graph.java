@@ -14,15 +14,34 @@ public class Graph {
     // Nodes of the graph.
     private final List<Vertex> nodes;
 
+    // Road informations used by the arcs of the graph (null if unknown).
+    private final List<RoadInformation> roadInformations;
+
+    // Spatial index of the nodes (created when first needed).
+    private volatile SpatialIndex spatialIndex;
+
     /**
      * @param mapId ID of this graph.
      * @param name Name of the graph.
      * @param list List of nodes for this graph.
      */
     public Graph(String mapId, String mapName, List<Vertex> list) {
+        this(mapId, mapName, list, null);
+    }
+
+    /**
+     * @param mapId ID of this graph.
+     * @param name Name of the graph.
+     * @param list List of nodes for this graph.
+     * @param roadInformations Distinct road informations used by the arcs of this
+     *        graph, or null if unknown.
+     */
+    public Graph(String mapId, String mapName, List<Vertex> list,
+            List<RoadInformation> roadInformations) {
         this.mapId = mapId;
         this.mapName = mapName;
         this.nodes = list;
+        this.roadInformations = roadInformations;
     }
 
     /**
@@ -32,6 +51,33 @@ public class Graph {
         return Collections.unmodifiableList(nodes);
     }
 
+    /**
+     * @return Immutable list of the distinct road informations used by the arcs of
+     *         this graph, or null if they are not known (writers must then look at
+     *         all the arcs to find them).
+     */
+    public List<RoadInformation> getRoadInformations() {
+        return roadInformations == null ? null : Collections.unmodifiableList(roadInformations);
+    }
+
+    /**
+     * @return Spatial index of the nodes and arcs of this graph, built on first
+     *         call.
+     */
+    public SpatialIndex getSpatialIndex() {
+        SpatialIndex index = this.spatialIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = this.spatialIndex;
+                if (index == null) {
+                    index = new SpatialIndex(nodes);
+                    this.spatialIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
     /**
      * Find the closet node to the given point.
      * 
@@ -40,16 +86,7 @@ public class Graph {
      * @return Closest node to the given point.
      */
     public Vertex findClosestNode(Point point) {
-        Vertex node = null;
-        double minDis = Double.POSITIVE_INFINITY;
-        for (int n = 0; n < nodes.size(); ++n) {
-            double dis = point.distanceTo(nodes.get(n).getPoint());
-            if (dis < minDis) {
-                node = nodes.get(n);
-                minDis = dis;
-            }
-        }
-        return node;
+        return getSpatialIndex().findClosestVertex(point);
     }
 
     /**
@@ -0,0 +1,496 @@
+package org.laas.osm2graph.graph;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.laas.osm2graph.graph.RoadInformation.RoadType;
+
+/**
+ * Read-only view of a graph stored in a memory-mapped file, which can be queried
+ * directly without loading the graph into memory.
+ *
+ * The file is little-endian and made of a fixed-size header followed by
+ * sections aligned on 8 bytes:
+ * <ul>
+ * <li>Header: magic number, version, number of vertices and number of road
+ * informations (int), number of arcs and number of intermediate points (long),
+ * offset and length of the map ID and of the map name in the string pool (int,
+ * length -1 if null), offset of each section (long) and size of the string pool
+ * (long).</li>
+ * <li>Longitudes and latitudes of the vertices, in 1e-7 degrees (int).</li>
+ * <li>CSR offsets of the arcs: arcs leaving vertex v are at indices
+ * [offsets[v], offsets[v + 1]) (int, one per vertex plus one).</li>
+ * <li>Destination, length in millimeters and road information index of each arc
+ * (int, one array each).</li>
+ * <li>Offsets of the intermediate points of the arcs in the point pool (int, one
+ * per arc plus one).</li>
+ * <li>Point pool: longitude and latitude of each intermediate point, in 1e-7
+ * degrees (int).</li>
+ * <li>Road informations, {@value #DESCRIPTOR_SIZE} bytes each: access mask
+ * (long), offset and length of the name, offset and length of the road type
+ * name in the string pool, maximum speed (int), one-way flag (byte) and
+ * padding.</li>
+ * <li>String pool: distinct UTF-8 strings.</li>
+ * </ul>
+ *
+ * Each section must be smaller than 2GB so that it can be mapped as a single
+ * buffer. Vertices of {@link #asGraph()} are created on demand, as for
+ * {@link CompactGraph#asGraph()}.
+ */
+public class MappedGraph {
+
+    // Map version and magic number targeted for this reader.
+    public static final int VERSION = 1;
+    public static final int MAGIC_NUMBER = 0x208BC3B6;
+
+    // Size of the header, in bytes.
+    public static final int HEADER_SIZE = 136;
+
+    // Size of a road information record, in bytes.
+    public static final int DESCRIPTOR_SIZE = 32;
+
+    // Index of each section in the header.
+    public static final int SECTION_LONGITUDES = 0, SECTION_LATITUDES = 1,
+            SECTION_ARC_OFFSETS = 2, SECTION_TARGETS = 3, SECTION_LENGTHS = 4,
+            SECTION_INFOS = 5, SECTION_POLYLINE_OFFSETS = 6, SECTION_POINTS = 7,
+            SECTION_DESCRIPTORS = 8, SECTION_STRINGS = 9, NUMBER_OF_SECTIONS = 10;
+
+    // Maximum size of a section, in bytes.
+    public static final long MAX_SECTION_SIZE = Integer.MAX_VALUE;
+
+    // Map identifier and name.
+    private final String mapId, mapName;
+
+    // Coordinates of the vertices, in 1e-7 degrees.
+    private final IntBuffer longitudes, latitudes;
+
+    // CSR offsets, destinations, lengths (in millimeters) and road information
+    // indices of the arcs.
+    private final IntBuffer offsets, targets, lengths, infos;
+
+    // Offsets of the intermediate points of the arcs, and packed points.
+    private final IntBuffer polylineOffsets, points;
+
+    // Road information records and string pool.
+    private final ByteBuffer descriptors, strings;
+
+    // Number of road informations.
+    private final int numberOfInfos;
+
+    // Decoded road informations (created when first needed).
+    private volatile List<RoadInformation> roadInformations;
+
+    /**
+     * Compute the offset of each section of a file, following the header.
+     *
+     * @param nVertices Number of vertices.
+     * @param nArcs Number of arcs.
+     * @param nPoints Number of intermediate points.
+     * @param nInfos Number of road informations.
+     * @param stringsSize Size of the string pool, in bytes.
+     *
+     * @return Offset of each section, plus the size of the file.
+     *
+     * @throws IllegalArgumentException if a section is too large to be mapped.
+     */
+    public static long[] getSectionOffsets(int nVertices, long nArcs, long nPoints, int nInfos,
+            long stringsSize) {
+        long[] sizes = new long[NUMBER_OF_SECTIONS];
+        sizes[SECTION_LONGITUDES] = 4L * nVertices;
+        sizes[SECTION_LATITUDES] = 4L * nVertices;
+        sizes[SECTION_ARC_OFFSETS] = 4L * (nVertices + 1);
+        sizes[SECTION_TARGETS] = 4L * nArcs;
+        sizes[SECTION_LENGTHS] = 4L * nArcs;
+        sizes[SECTION_INFOS] = 4L * nArcs;
+        sizes[SECTION_POLYLINE_OFFSETS] = 4L * (nArcs + 1);
+        sizes[SECTION_POINTS] = 8L * nPoints;
+        sizes[SECTION_DESCRIPTORS] = (long) DESCRIPTOR_SIZE * nInfos;
+        sizes[SECTION_STRINGS] = stringsSize;
+        long[] sections = new long[NUMBER_OF_SECTIONS + 1];
+        sections[0] = HEADER_SIZE;
+        for (int i = 0; i < NUMBER_OF_SECTIONS; ++i) {
+            if (sizes[i] > MAX_SECTION_SIZE) {
+                throw new IllegalArgumentException("section " + i
+                        + " too large for a mapped graph: " + sizes[i] + " bytes");
+            }
+            sections[i + 1] = align(sections[i] + sizes[i]);
+        }
+        return sections;
+    }
+
+    /**
+     * @param position
+     *
+     * @return Smallest multiple of 8 greater or equal to position.
+     */
+    public static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Open the given file and map its sections. The file must not be modified
+     * while the graph is used.
+     *
+     * @param path Path of the file.
+     *
+     * @return The graph stored in the file.
+     *
+     * @throws IOException if the file cannot be read or is not a valid file.
+     */
+    public static MappedGraph open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedGraph(channel);
+        }
+    }
+
+    /**
+     * Map the sections of the file of the given channel. The channel can be
+     * closed once the graph is opened, but the file must not be modified while the
+     * graph is used.
+     *
+     * @param channel Readable channel of the file.
+     *
+     * @return The graph stored in the file.
+     *
+     * @throws IOException if the file cannot be read or is not a valid file.
+     */
+    public static MappedGraph open(FileChannel channel) throws IOException {
+        return new MappedGraph(channel);
+    }
+
+    /**
+     * @param channel Channel of the file to map.
+     *
+     * @throws IOException
+     */
+    private MappedGraph(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new EOFException("truncated header");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC_NUMBER) {
+            throw new IOException("not a mapped graph file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported version of mapped graph: " + version);
+        }
+        int nVertices = header.getInt();
+        this.numberOfInfos = header.getInt();
+        long nArcs = header.getLong(), nPoints = header.getLong();
+        int mapIdOffset = header.getInt(), mapIdLength = header.getInt(),
+                mapNameOffset = header.getInt(), mapNameLength = header.getInt();
+        long[] sections = new long[NUMBER_OF_SECTIONS];
+        for (int i = 0; i < NUMBER_OF_SECTIONS; ++i) {
+            sections[i] = header.getLong();
+        }
+        long stringsSize = header.getLong();
+        long[] expected = getSectionOffsets(nVertices, nArcs, nPoints, numberOfInfos,
+                stringsSize);
+        if (channel.size() < expected[NUMBER_OF_SECTIONS]) {
+            throw new EOFException("truncated mapped graph file");
+        }
+
+        // Map the whole file at once when possible, each section otherwise.
+        ByteBuffer file = channel.size() <= MAX_SECTION_SIZE
+                ? channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                : null;
+        this.longitudes = map(channel, file, sections[SECTION_LONGITUDES], 4L * nVertices)
+                .asIntBuffer();
+        this.latitudes = map(channel, file, sections[SECTION_LATITUDES], 4L * nVertices)
+                .asIntBuffer();
+        this.offsets = map(channel, file, sections[SECTION_ARC_OFFSETS], 4L * (nVertices + 1))
+                .asIntBuffer();
+        this.targets = map(channel, file, sections[SECTION_TARGETS], 4L * nArcs).asIntBuffer();
+        this.lengths = map(channel, file, sections[SECTION_LENGTHS], 4L * nArcs).asIntBuffer();
+        this.infos = map(channel, file, sections[SECTION_INFOS], 4L * nArcs).asIntBuffer();
+        this.polylineOffsets = map(channel, file, sections[SECTION_POLYLINE_OFFSETS],
+                4L * (nArcs + 1)).asIntBuffer();
+        this.points = map(channel, file, sections[SECTION_POINTS], 8L * nPoints).asIntBuffer();
+        this.descriptors = map(channel, file, sections[SECTION_DESCRIPTORS],
+                (long) DESCRIPTOR_SIZE * numberOfInfos);
+        this.strings = map(channel, file, sections[SECTION_STRINGS], stringsSize);
+
+        this.mapId = getString(mapIdOffset, mapIdLength);
+        this.mapName = getString(mapNameOffset, mapNameLength);
+    }
+
+    /**
+     * Map a read-only section of a file.
+     *
+     * @param channel
+     * @param file Buffer mapping the whole file, or null if the file is too large.
+     * @param position Offset of the section in the file.
+     * @param size Size of the section, in bytes.
+     *
+     * @return Little-endian buffer mapping the section.
+     *
+     * @throws IOException
+     */
+    private static ByteBuffer map(FileChannel channel, ByteBuffer file, long position,
+            long size) throws IOException {
+        if (position < HEADER_SIZE || position + size > channel.size()) {
+            throw new IOException("invalid section in mapped graph file: [" + position + ", "
+                    + (position + size) + ")");
+        }
+        if (file != null) {
+            ByteBuffer section = file.duplicate();
+            section.position((int) position).limit((int) (position + size));
+            return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param offset Offset of a string in the string pool.
+     * @param length Length of the string in bytes, or -1 for null.
+     *
+     * @return The string.
+     */
+    private String getString(int offset, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = strings.duplicate();
+        slice.position(offset);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Map ID of this graph.
+     */
+    public String getMapId() {
+        return mapId;
+    }
+
+    /**
+     * @return Map name of this graph.
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    /**
+     * @return Number of vertices in this graph.
+     */
+    public int getNumberOfVertices() {
+        return longitudes.limit();
+    }
+
+    /**
+     * @return Number of arcs in this graph.
+     */
+    public int getNumberOfArcs() {
+        return targets.limit();
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Longitude of the vertex.
+     */
+    public double getLongitude(int vertex) {
+        return longitudes.get(vertex) / 1e7;
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Latitude of the vertex.
+     */
+    public double getLatitude(int vertex) {
+        return latitudes.get(vertex) / 1e7;
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Index of the first arc leaving the vertex.
+     */
+    public int getFirstArc(int vertex) {
+        return offsets.get(vertex);
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Index after the last arc leaving the vertex.
+     */
+    public int getLastArc(int vertex) {
+        return offsets.get(vertex + 1);
+    }
+
+    /**
+     * @param arc Index of an arc.
+     *
+     * @return Index of the destination of the arc.
+     */
+    public int getTarget(int arc) {
+        return targets.get(arc);
+    }
+
+    /**
+     * @param arc Index of an arc.
+     *
+     * @return Index of the road information of the arc.
+     */
+    public int getRoadInformationIndex(int arc) {
+        return infos.get(arc);
+    }
+
+    /**
+     * @param arc Index of an arc.
+     *
+     * @return Length of the arc, in meters (rounded to the millimeter).
+     */
+    public double getLength(int arc) {
+        return lengths.get(arc) / 1000.0;
+    }
+
+    /**
+     * @param arc Index of an arc.
+     *
+     * @return Number of intermediate points of the arc.
+     */
+    public int getNumberOfIntermediatePoints(int arc) {
+        return polylineOffsets.get(arc + 1) - polylineOffsets.get(arc);
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * @param index Index of the intermediate point.
+     *
+     * @return Longitude of the intermediate point.
+     */
+    public double getPointLongitude(int arc, int index) {
+        return points.get(2 * (polylineOffsets.get(arc) + index)) / 1e7;
+    }
+
+    /**
+     * @param arc Index of an arc.
+     * @param index Index of the intermediate point.
+     *
+     * @return Latitude of the intermediate point.
+     */
+    public double getPointLatitude(int arc, int index) {
+        return points.get(2 * (polylineOffsets.get(arc) + index) + 1) / 1e7;
+    }
+
+    /**
+     * Decode a road information from its record.
+     *
+     * @param index Index of the road information.
+     *
+     * @return New road information.
+     */
+    private RoadInformation decodeRoadInformation(int index) {
+        int position = index * DESCRIPTOR_SIZE;
+        long access = descriptors.getLong(position);
+        String name = getString(descriptors.getInt(position + 8),
+                descriptors.getInt(position + 12));
+        String type = getString(descriptors.getInt(position + 16),
+                descriptors.getInt(position + 20));
+        int maxSpeed = descriptors.getInt(position + 24);
+        boolean oneway = descriptors.get(position + 28) != 0;
+        return new RoadInformation(RoadType.valueOf(type), access, oneway, maxSpeed, name);
+    }
+
+    /**
+     * @return Road informations referenced by the arcs of this graph, decoded on
+     *         first call.
+     */
+    public List<RoadInformation> getRoadInformations() {
+        List<RoadInformation> list = this.roadInformations;
+        if (list == null) {
+            synchronized (this) {
+                list = this.roadInformations;
+                if (list == null) {
+                    List<RoadInformation> decoded = new ArrayList<>(numberOfInfos);
+                    for (int i = 0; i < numberOfInfos; ++i) {
+                        decoded.add(decodeRoadInformation(i));
+                    }
+                    list = Collections.unmodifiableList(decoded);
+                    this.roadInformations = list;
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @param arc Index of an arc.
+     *
+     * @return Road information of the arc.
+     */
+    public RoadInformation getRoadInformation(int arc) {
+        return getRoadInformations().get(getRoadInformationIndex(arc));
+    }
+
+    /**
+     * Create a Vertex for the given vertex, with its successors. Destination of the
+     * successors are created without their own successors.
+     *
+     * @param vertex Index of a vertex.
+     * @param roadInformations Decoded road informations.
+     *
+     * @return New Vertex corresponding to the given vertex.
+     */
+    protected Vertex createVertex(int vertex, List<RoadInformation> roadInformations) {
+        Vertex origin = new Vertex(vertex,
+                new Point(getLongitude(vertex), getLatitude(vertex)));
+        for (int arc = getFirstArc(vertex); arc < getLastArc(vertex); ++arc) {
+            int target = getTarget(arc);
+            Point destination = new Point(getLongitude(target), getLatitude(target));
+            int size = getNumberOfIntermediatePoints(arc);
+            List<Point> polyline = new ArrayList<>(size + 2);
+            polyline.add(origin.getPoint());
+            for (int i = 0; i < size; ++i) {
+                polyline.add(new Point(getPointLongitude(arc, i), getPointLatitude(arc, i)));
+            }
+            polyline.add(destination);
+            new Arc(arc, origin, new Vertex(target, destination), getLength(arc),
+                    roadInformations.get(getRoadInformationIndex(arc)), polyline);
+        }
+        return origin;
+    }
+
+    /**
+     * Create a view of this graph as a {@link Graph}. Vertices of the view are
+     * created on demand when accessed (see {@link CompactGraph#asGraph()}).
+     *
+     * @return A Graph view of this graph.
+     */
+    public Graph asGraph() {
+        List<RoadInformation> roadInformations = getRoadInformations();
+        return new Graph(mapId, mapName, new AbstractList<Vertex>() {
+
+            @Override
+            public Vertex get(int index) {
+                return createVertex(index, roadInformations);
+            }
+
+            @Override
+            public int size() {
+                return getNumberOfVertices();
+            }
+        }, roadInformations);
+    }
+
+}
@@ -7,7 +7,7 @@ package org.laas.osm2graph.graph;
 public class Point {
 
     // Earth radius, in meters;
-    private static final double EARTH_RADIUS = 6378137.0;
+    public static final double EARTH_RADIUS = 6378137.0;
 
     /**
      * Compute the distance in meters between the two given points.
@@ -17,9 +17,22 @@ public class Point {
      * @return Distance between the two given points, in meters.
      */
     public static double distance(Point p1, Point p2) {
-        double sinLat = Math.sin(Math.toRadians(p1.getLatitude())) * Math.sin(Math.toRadians(p2.getLatitude()));
-        double cosLat = Math.cos(Math.toRadians(p1.getLatitude())) * Math.cos(Math.toRadians(p2.getLatitude()));
-        double cosLong = Math.cos(Math.toRadians(p2.getLongitude() - p1.getLongitude()));
+        return distance(p1.getLongitude(), p1.getLatitude(), p2.getLongitude(), p2.getLatitude());
+    }
+
+    /**
+     * Compute the distance in meters between the two given points.
+     * 
+     * @param longitude1, latitude1 Coordinates of the first point, in degrees.
+     * @param longitude2, latitude2 Coordinates of the second point, in degrees.
+     * 
+     * @return Distance between the two given points, in meters.
+     */
+    public static double distance(double longitude1, double latitude1, double longitude2,
+            double latitude2) {
+        double sinLat = Math.sin(Math.toRadians(latitude1)) * Math.sin(Math.toRadians(latitude2));
+        double cosLat = Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2));
+        double cosLong = Math.cos(Math.toRadians(longitude2 - longitude1));
         return EARTH_RADIUS * Math.acos(sinLat + cosLat * cosLong);
     }
 
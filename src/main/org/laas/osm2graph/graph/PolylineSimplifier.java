@@ -0,0 +1,142 @@
+package org.laas.osm2graph.graph;
+
+/**
+ * Douglas-Peucker simplification of polylines, with a tolerance in meters.
+ * 
+ * Distances are computed in a local equirectangular projection around each
+ * segment, which is precise enough for the tolerances and segment lengths of
+ * arcs. An instance keeps reusable buffers and must not be shared between
+ * threads.
+ * 
+ * A maximum difference of longitude and latitude between consecutive kept points
+ * can also be given, for formats that store these differences on a few bits: a
+ * point is kept anyway when removing it would make this difference too large.
+ */
+public class PolylineSimplifier {
+
+    // Meters per degree of latitude.
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * Point.EARTH_RADIUS;
+
+    // Maximum distance between the original and the simplified polylines.
+    private final double tolerance;
+
+    // Maximum difference of longitude or latitude between consecutive kept points.
+    private final double maximumDelta;
+
+    // Points to keep, and stack of ranges to simplify (ranges on the stack are
+    // disjoint, so there are less ranges than points).
+    private boolean[] keep = new boolean[64];
+    private int[] stack = new int[2 * keep.length];
+
+    /**
+     * @param tolerance Maximum distance between a removed point and the
+     *        simplified polyline, in meters.
+     */
+    public PolylineSimplifier(double tolerance) {
+        this(tolerance, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param tolerance Maximum distance between a removed point and the
+     *        simplified polyline, in meters.
+     * @param maximumDelta Maximum difference of longitude or latitude between two
+     *        consecutive points of the simplified polyline, in degrees (only points
+     *        that were consecutive in the original polyline can be farther apart).
+     */
+    public PolylineSimplifier(double tolerance, double maximumDelta) {
+        this.tolerance = tolerance;
+        this.maximumDelta = maximumDelta;
+    }
+
+    /**
+     * @return The tolerance of this simplifier, in meters.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Simplify the polyline made of the points from first to last (included) of
+     * the given arrays, in place. The first and the last points are always kept,
+     * kept points are moved to the beginning of the range, in order.
+     * 
+     * @param longitudes, latitudes Coordinates of the points, in degrees.
+     * @param first Index of the first point.
+     * @param last Index of the last point.
+     * 
+     * @return Index of the last point after simplification.
+     */
+    public int simplify(double[] longitudes, double[] latitudes, int first, int last) {
+        if (last - first < 2) {
+            return last;
+        }
+        if (keep.length <= last) {
+            keep = new boolean[Math.max(last + 1, 2 * keep.length)];
+            stack = new int[2 * keep.length];
+        }
+        for (int i = first; i <= last; ++i) {
+            keep[i] = false;
+        }
+        keep[first] = keep[last] = true;
+
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top], start = stack[--top];
+            double maxDistance = 0;
+            int farthest = -1;
+            for (int i = start + 1; i < end; ++i) {
+                double distance = distanceToSegment(longitudes[i], latitudes[i],
+                        longitudes[start], latitudes[start], longitudes[end], latitudes[end]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (maxDistance <= tolerance) {
+                // Keep a point anyway if the kept points would be too far apart.
+                farthest = -1;
+                if (end - start > 1
+                        && (Math.abs(longitudes[end] - longitudes[start]) > maximumDelta
+                                || Math.abs(latitudes[end] - latitudes[start]) > maximumDelta)) {
+                    farthest = (start + end) >>> 1;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+
+        int size = first;
+        for (int i = first + 1; i <= last; ++i) {
+            if (keep[i]) {
+                size += 1;
+                longitudes[size] = longitudes[i];
+                latitudes[size] = latitudes[i];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Distance in meters between the given point and the segment from
+     *         (longitude1, latitude1) to (longitude2, latitude2).
+     */
+    private static double distanceToSegment(double longitude, double latitude,
+            double longitude1, double latitude1, double longitude2, double latitude2) {
+        double scale = Math.cos(Math.toRadians(latitude1)) * METERS_PER_DEGREE;
+        double x = (longitude - longitude1) * scale, y = (latitude - latitude1) * METERS_PER_DEGREE;
+        double dx = (longitude2 - longitude1) * scale,
+                dy = (latitude2 - latitude1) * METERS_PER_DEGREE;
+        double norm = dx * dx + dy * dy;
+        double t = norm == 0 ? 0 : Math.max(0, Math.min(1, (x * dx + y * dy) / norm));
+        double ex = x - t * dx, ey = y - t * dy;
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+}
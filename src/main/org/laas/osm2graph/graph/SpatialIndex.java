@@ -0,0 +1,678 @@
+package org.laas.osm2graph.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Static spatial index of the vertices and arcs of a graph, to find the vertices
+ * or arc segments close to a point.
+ *
+ * Points are converted to 3D cartesian coordinates on a sphere (in meters) and
+ * are indexed in KD-trees, the chord distance in 3D being monotonic with the
+ * distance on the sphere. The tree of arc segments is only built the first time
+ * a segment query is made. Once built, the index is read-only and queries can be
+ * made concurrently.
+ *
+ * The index is built from the vertices of the graph at the time of its
+ * creation, it must be recreated if the graph is modified.
+ */
+public class SpatialIndex {
+
+    /**
+     * Segment of an arc closest to a point, see
+     * {@link SpatialIndex#findClosestSegment(Point)}.
+     */
+    public static class SegmentMatch {
+
+        // Arc containing the segment.
+        private final Arc arc;
+
+        // Index of the segment in the points of the arc.
+        private final int segmentIndex;
+
+        // Closest point of the segment.
+        private final Point projection;
+
+        // Distance to the segment, in meters.
+        private final double distance;
+
+        public SegmentMatch(Arc arc, int segmentIndex, Point projection, double distance) {
+            this.arc = arc;
+            this.segmentIndex = segmentIndex;
+            this.projection = projection;
+            this.distance = distance;
+        }
+
+        /**
+         * @return Arc containing the segment.
+         */
+        public Arc getArc() {
+            return arc;
+        }
+
+        /**
+         * @return Index of the segment, the segment going from point segmentIndex to
+         *         point segmentIndex + 1 of {@link Arc#getPoints()}.
+         */
+        public int getSegmentIndex() {
+            return segmentIndex;
+        }
+
+        /**
+         * @return Point of the segment closest to the query point.
+         */
+        public Point getProjection() {
+            return projection;
+        }
+
+        /**
+         * @return Distance between the query point and the segment, in meters.
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+    }
+
+    /**
+     * Callback of a KD-tree search.
+     */
+    private interface Visitor {
+
+        /**
+         * @return Current maximum distance of interesting items, in meters.
+         */
+        public double getBound();
+
+        /**
+         * Visit a candidate item.
+         *
+         * @param item Item of the tree.
+         * @param x, y, z Coordinates of the item in the tree.
+         */
+        public void visit(int item, double x, double y, double z);
+
+    }
+
+    /**
+     * Static KD-tree of 3D points. Points are sorted in place so that each range
+     * of the array is a node of the tree: the median element of the range splits
+     * it along the axis given by the depth of the node.
+     *
+     * Each point may represent an item within a given distance (its slack) of the
+     * point, the maximum slack of each subtree being used to prune the search.
+     */
+    private static class KDTree {
+
+        // Maximum number of points in a leaf.
+        private static final int LEAF_SIZE = 8;
+
+        // Coordinates of the points (x, y, z for each point).
+        private final double[] coordinates;
+
+        // Item of each point.
+        private final int[] items;
+
+        // Maximum distance between each point and the points of its item (null if
+        // items are the points themselves).
+        private final double[] slacks;
+
+        // Maximum slack of the subtree of each internal node (indexed by the median
+        // of the node).
+        private final double[] subtreeSlacks;
+
+        /**
+         * Build a tree, the given arrays are reordered.
+         *
+         * @param coordinates Coordinates of the points.
+         * @param items Item of each point.
+         * @param slacks Maximum distance between each point and the points of its
+         *        item, or null if all the slacks are 0.
+         */
+        public KDTree(double[] coordinates, int[] items, double[] slacks) {
+            this.coordinates = coordinates;
+            this.items = items;
+            this.slacks = slacks;
+            build(0, items.length, 0);
+            if (slacks != null) {
+                this.subtreeSlacks = new double[items.length];
+                computeSlack(0, items.length);
+            }
+            else {
+                this.subtreeSlacks = null;
+            }
+        }
+
+        private void build(int lo, int hi, int axis) {
+            if (hi - lo <= LEAF_SIZE) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, axis);
+            build(lo, mid, (axis + 1) % 3);
+            build(mid + 1, hi, (axis + 1) % 3);
+        }
+
+        /**
+         * Reorder points from left to right (included) so that the k-th point is at
+         * its sorted position along the given axis.
+         */
+        private void select(int left, int right, int k, int axis) {
+            while (right > left) {
+                int mid = (left + right) >>> 1;
+                if (get(mid, axis) < get(left, axis)) {
+                    swap(mid, left);
+                }
+                if (get(right, axis) < get(left, axis)) {
+                    swap(right, left);
+                }
+                if (get(right, axis) < get(mid, axis)) {
+                    swap(right, mid);
+                }
+                double pivot = get(mid, axis);
+                int i = left, j = right;
+                while (i <= j) {
+                    while (get(i, axis) < pivot) {
+                        i += 1;
+                    }
+                    while (get(j, axis) > pivot) {
+                        j -= 1;
+                    }
+                    if (i <= j) {
+                        swap(i, j);
+                        i += 1;
+                        j -= 1;
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                }
+                else if (k >= i) {
+                    left = i;
+                }
+                else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Compute the maximum slack of the subtree of the given range.
+         */
+        private double computeSlack(int lo, int hi) {
+            double slack = 0;
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; ++i) {
+                    slack = Math.max(slack, slacks[i]);
+                }
+                return slack;
+            }
+            int mid = (lo + hi) >>> 1;
+            slack = Math.max(slacks[mid],
+                    Math.max(computeSlack(lo, mid), computeSlack(mid + 1, hi)));
+            subtreeSlacks[mid] = slack;
+            return slack;
+        }
+
+        /**
+         * @return Maximum slack of the points of the subtree of the given range.
+         */
+        private double getSlack(int lo, int hi) {
+            if (slacks == null || lo >= hi) {
+                return 0;
+            }
+            if (hi - lo <= LEAF_SIZE) {
+                double slack = 0;
+                for (int i = lo; i < hi; ++i) {
+                    slack = Math.max(slack, slacks[i]);
+                }
+                return slack;
+            }
+            return subtreeSlacks[(lo + hi) >>> 1];
+        }
+
+        private double get(int point, int axis) {
+            return coordinates[3 * point + axis];
+        }
+
+        private void swap(int a, int b) {
+            int item = items[a];
+            items[a] = items[b];
+            items[b] = item;
+            for (int axis = 0; axis < 3; ++axis) {
+                double value = coordinates[3 * a + axis];
+                coordinates[3 * a + axis] = coordinates[3 * b + axis];
+                coordinates[3 * b + axis] = value;
+            }
+            if (slacks != null) {
+                double slack = slacks[a];
+                slacks[a] = slacks[b];
+                slacks[b] = slack;
+            }
+        }
+
+        /**
+         * Visit all the points whose item may be within the bound of the given
+         * visitor from the given point, closest subtrees first.
+         *
+         * @param query Coordinates of the query point.
+         * @param visitor
+         */
+        public void search(double[] query, Visitor visitor) {
+            search(query, visitor, 0, items.length, 0);
+        }
+
+        private void search(double[] query, Visitor visitor, int lo, int hi, int axis) {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; ++i) {
+                    visit(visitor, i);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double delta = query[axis] - get(mid, axis);
+            int next = (axis + 1) % 3;
+            if (delta < 0) {
+                search(query, visitor, lo, mid, next);
+            }
+            else {
+                search(query, visitor, mid + 1, hi, next);
+            }
+            // Points on the other side of the median are at least |delta| away.
+            double distance = Math.abs(delta);
+            if (distance - (slacks == null ? 0 : slacks[mid]) <= visitor.getBound()) {
+                visit(visitor, mid);
+            }
+            if (delta < 0) {
+                if (distance - getSlack(mid + 1, hi) <= visitor.getBound()) {
+                    search(query, visitor, mid + 1, hi, next);
+                }
+            }
+            else if (distance - getSlack(lo, mid) <= visitor.getBound()) {
+                search(query, visitor, lo, mid, next);
+            }
+        }
+
+        private void visit(Visitor visitor, int point) {
+            visitor.visit(items[point], coordinates[3 * point], coordinates[3 * point + 1],
+                    coordinates[3 * point + 2]);
+        }
+
+    }
+
+    /**
+     * Vertices closest to a query point, kept in a max-heap on their distance.
+     */
+    private static class NearestVisitor implements Visitor {
+
+        private final double[] query;
+        private final int capacity;
+        private final int[] items;
+        private final double[] distances;
+        private int size = 0;
+
+        public NearestVisitor(double[] query, int capacity) {
+            this.query = query;
+            this.capacity = capacity;
+            this.items = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        @Override
+        public double getBound() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        @Override
+        public void visit(int item, double x, double y, double z) {
+            double distance = chord(query, x, y, z);
+            if (size < capacity) {
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    items[i] = items[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                items[i] = item;
+                distances[i] = distance;
+            }
+            else if (distance < distances[0]) {
+                int i = 0;
+                while (2 * i + 1 < size) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < size && distances[child + 1] > distances[child]) {
+                        child += 1;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    items[i] = items[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                items[i] = item;
+                distances[i] = distance;
+            }
+        }
+
+        /**
+         * @return Items found, sorted by increasing distance.
+         */
+        public int[] getItems() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; ++i) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+            int[] result = new int[size];
+            for (int i = 0; i < size; ++i) {
+                result[i] = items[order[i]];
+            }
+            return result;
+        }
+
+    }
+
+    // Length of the pieces of segments indexed in the segment tree.
+    private static final double PIECE_LENGTH = 50;
+
+    // Maximum number of pieces of a segment.
+    private static final int MAXIMUM_PIECES = 16;
+
+    // Vertices of the graph.
+    private final List<Vertex> vertices;
+
+    // Tree of the vertices (items are indices in vertices).
+    private final KDTree vertexTree;
+
+    // Tree of the pieces of segments (items are segment IDs), built on first use.
+    private volatile KDTree segmentTree;
+
+    // Vertex, index of the arc in the successors of the vertex and index in the
+    // points of the arc of each segment.
+    private int[] segmentVertices, segmentSuccessors, segmentIndices;
+
+    // Coordinates of the two ends of each segment.
+    private double[] segmentCoordinates;
+
+    /**
+     * Build an index of the given vertices.
+     *
+     * @param vertices
+     */
+    public SpatialIndex(List<Vertex> vertices) {
+        this.vertices = vertices;
+        int size = vertices.size();
+        double[] coordinates = new double[3 * size];
+        int[] items = new int[size];
+        for (int i = 0; i < size; ++i) {
+            toCartesian(vertices.get(i).getPoint(), coordinates, 3 * i);
+            items[i] = i;
+        }
+        this.vertexTree = new KDTree(coordinates, items, null);
+    }
+
+    /**
+     * Find the vertex closest to the given point.
+     *
+     * @param point
+     *
+     * @return Closest vertex, or null if there is no vertex.
+     */
+    public Vertex findClosestVertex(Point point) {
+        List<Vertex> closest = findClosestVertices(point, 1);
+        return closest.isEmpty() ? null : closest.get(0);
+    }
+
+    /**
+     * Find the k vertices closest to the given point.
+     *
+     * @param point
+     * @param k Number of vertices to find.
+     *
+     * @return Closest vertices (at most k), sorted by increasing distance to the
+     *         given point.
+     */
+    public List<Vertex> findClosestVertices(Point point, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        NearestVisitor visitor = new NearestVisitor(toCartesian(point),
+                Math.min(k, vertices.size()));
+        if (visitor.capacity > 0) {
+            vertexTree.search(visitor.query, visitor);
+        }
+        List<Vertex> result = new ArrayList<>(visitor.size);
+        for (int item: visitor.getItems()) {
+            result.add(vertices.get(item));
+        }
+        return result;
+    }
+
+    /**
+     * Find the vertices within the given distance of the given point.
+     *
+     * @param point
+     * @param radius Maximum distance, in meters.
+     *
+     * @return Vertices within radius meters of the given point, in no particular
+     *         order.
+     */
+    public List<Vertex> findVerticesWithin(Point point, double radius) {
+        double[] query = toCartesian(point);
+        // Chord corresponding to the radius (distances are compared as chords).
+        double bound = 2 * Point.EARTH_RADIUS
+                * Math.sin(Math.min(radius / Point.EARTH_RADIUS, Math.PI) / 2);
+        List<Vertex> result = new ArrayList<>();
+        vertexTree.search(query, new Visitor() {
+
+            @Override
+            public double getBound() {
+                return bound;
+            }
+
+            @Override
+            public void visit(int item, double x, double y, double z) {
+                if (chord(query, x, y, z) <= bound) {
+                    result.add(vertices.get(item));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Find the segment of an arc closest to the given point, segments being the
+     * parts of arcs between two consecutive points of {@link Arc#getPoints()}.
+     *
+     * @param point
+     *
+     * @return Closest segment, or null if the graph has no arc.
+     */
+    public SegmentMatch findClosestSegment(Point point) {
+        KDTree tree = getSegmentTree();
+        double[] query = toCartesian(point);
+        double[] best = { Double.POSITIVE_INFINITY, -1, 0 };
+        tree.search(query, new Visitor() {
+
+            @Override
+            public double getBound() {
+                return best[0];
+            }
+
+            @Override
+            public void visit(int segment, double x, double y, double z) {
+                double t = project(query, segment);
+                double distance = chord(query, segmentPoint(segment, t, 0),
+                        segmentPoint(segment, t, 1), segmentPoint(segment, t, 2));
+                if (distance < best[0]) {
+                    best[0] = distance;
+                    best[1] = segment;
+                    best[2] = t;
+                }
+            }
+        });
+        if (best[1] < 0) {
+            return null;
+        }
+        int segment = (int) best[1];
+        double t = best[2];
+        Arc arc = vertices.get(segmentVertices[segment]).getSuccessors()
+                .get(segmentSuccessors[segment]);
+        Point projection = toPoint(segmentPoint(segment, t, 0), segmentPoint(segment, t, 1),
+                segmentPoint(segment, t, 2));
+        return new SegmentMatch(arc, segmentIndices[segment], projection,
+                Point.distance(point, projection));
+    }
+
+    /**
+     * @return The tree of the segments of the arcs, built on first call.
+     */
+    private KDTree getSegmentTree() {
+        KDTree tree = this.segmentTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = this.segmentTree;
+                if (tree == null) {
+                    tree = buildSegmentTree();
+                    this.segmentTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Build the tree of segments. Segments are split into pieces of at most
+     * {@link #PIECE_LENGTH} meters (or into {@link #MAXIMUM_PIECES} pieces for very
+     * long segments), each piece being indexed by its middle with half its length
+     * as slack, which is the maximum difference between the distance from a point
+     * to the middle of the piece and the distance to the piece.
+     *
+     * @return The tree of segments.
+     */
+    private KDTree buildSegmentTree() {
+        int nSegments = 0;
+        for (Vertex vertex: vertices) {
+            for (Arc arc: vertex.getSuccessors()) {
+                nSegments += Math.max(arc.getPoints().size() - 1, 0);
+            }
+        }
+        segmentVertices = new int[nSegments];
+        segmentSuccessors = new int[nSegments];
+        segmentIndices = new int[nSegments];
+        segmentCoordinates = new double[6 * nSegments];
+        int[] segmentPieces = new int[nSegments];
+        double[] segmentLengths = new double[nSegments];
+
+        int segment = 0, nPieces = 0;
+        for (int v = 0; v < vertices.size(); ++v) {
+            List<Arc> successors = vertices.get(v).getSuccessors();
+            for (int s = 0; s < successors.size(); ++s) {
+                List<Point> points = successors.get(s).getPoints();
+                for (int i = 0; i + 1 < points.size(); ++i, ++segment) {
+                    segmentVertices[segment] = v;
+                    segmentSuccessors[segment] = s;
+                    segmentIndices[segment] = i;
+                    toCartesian(points.get(i), segmentCoordinates, 6 * segment);
+                    toCartesian(points.get(i + 1), segmentCoordinates, 6 * segment + 3);
+                    double length = chord(segmentCoordinates, 6 * segment,
+                            segmentCoordinates[6 * segment + 3],
+                            segmentCoordinates[6 * segment + 4],
+                            segmentCoordinates[6 * segment + 5]);
+                    segmentPieces[segment] = Math.max(1,
+                            Math.min((int) Math.ceil(length / PIECE_LENGTH), MAXIMUM_PIECES));
+                    segmentLengths[segment] = length;
+                    nPieces += segmentPieces[segment];
+                }
+            }
+        }
+
+        double[] coordinates = new double[3 * nPieces];
+        int[] items = new int[nPieces];
+        double[] slacks = new double[nPieces];
+        int piece = 0;
+        for (segment = 0; segment < nSegments; ++segment) {
+            for (int p = 0; p < segmentPieces[segment]; ++p, ++piece) {
+                double t = (p + 0.5) / segmentPieces[segment];
+                for (int axis = 0; axis < 3; ++axis) {
+                    coordinates[3 * piece + axis] = segmentPoint(segment, t, axis);
+                }
+                items[piece] = segment;
+                slacks[piece] = segmentLengths[segment] / segmentPieces[segment] / 2;
+            }
+        }
+        return new KDTree(coordinates, items, slacks);
+    }
+
+    /**
+     * @param query Coordinates of a point.
+     * @param segment ID of a segment.
+     *
+     * @return Position (between 0 and 1) on the segment of the closest point to the
+     *         given point.
+     */
+    private double project(double[] query, int segment) {
+        double dot = 0, norm = 0;
+        for (int axis = 0; axis < 3; ++axis) {
+            double start = segmentCoordinates[6 * segment + axis];
+            double direction = segmentCoordinates[6 * segment + 3 + axis] - start;
+            dot += (query[axis] - start) * direction;
+            norm += direction * direction;
+        }
+        return norm == 0 ? 0 : Math.max(0, Math.min(1, dot / norm));
+    }
+
+    /**
+     * @return Coordinate along the given axis of the point at position t of the
+     *         given segment.
+     */
+    private double segmentPoint(int segment, double t, int axis) {
+        double start = segmentCoordinates[6 * segment + axis];
+        return start + t * (segmentCoordinates[6 * segment + 3 + axis] - start);
+    }
+
+    /**
+     * @return Distance in 3D between the point at the given offset of the given
+     *         coordinates and the given point.
+     */
+    private static double chord(double[] coordinates, int offset, double x, double y,
+            double z) {
+        double dx = coordinates[offset] - x, dy = coordinates[offset + 1] - y,
+                dz = coordinates[offset + 2] - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static double chord(double[] query, double x, double y, double z) {
+        return chord(query, 0, x, y, z);
+    }
+
+    private static double[] toCartesian(Point point) {
+        double[] coordinates = new double[3];
+        toCartesian(point, coordinates, 0);
+        return coordinates;
+    }
+
+    /**
+     * Store the 3D coordinates (in meters) of the given point in the given array.
+     */
+    private static void toCartesian(Point point, double[] coordinates, int offset) {
+        double longitude = Math.toRadians(point.getLongitude()),
+                latitude = Math.toRadians(point.getLatitude());
+        double cosLatitude = Math.cos(latitude);
+        coordinates[offset] = Point.EARTH_RADIUS * cosLatitude * Math.cos(longitude);
+        coordinates[offset + 1] = Point.EARTH_RADIUS * cosLatitude * Math.sin(longitude);
+        coordinates[offset + 2] = Point.EARTH_RADIUS * Math.sin(latitude);
+    }
+
+    /**
+     * @return Point on the sphere below the given 3D coordinates.
+     */
+    private static Point toPoint(double x, double y, double z) {
+        return new Point(Math.toDegrees(Math.atan2(y, x)),
+                Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y))));
+    }
+
+}
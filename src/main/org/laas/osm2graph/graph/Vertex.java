@@ -15,6 +15,9 @@ public class Vertex implements Comparable<Vertex> {
     // Successors.
     private final ArrayList<Arc> successors;
 
+    // Predecessors (created when the first one is added).
+    private ArrayList<Arc> predecessors;
+
     /**
      * Create a new Node corresponding to the given Point with an empty list of
      * successors.
@@ -28,14 +31,29 @@ public class Vertex implements Comparable<Vertex> {
     }
 
     /**
-     * Add a successor to this node.
+     * Add a successor to this node. This method is synchronized, but arcs should
+     * be added in a fixed order so that the order of the successors is
+     * reproducible.
      * 
      * @param arc Arc to the successor.
      */
-    protected void addSuccessor(Arc arc) {
+    public synchronized void addSuccessor(Arc arc) {
         successors.add(arc);
     }
 
+    /**
+     * Add a predecessor to this node. Arcs may be created concurrently, so this
+     * method is synchronized.
+     * 
+     * @param arc Arc from the predecessor.
+     */
+    public synchronized void addPredecessor(Arc arc) {
+        if (predecessors == null) {
+            predecessors = new ArrayList<Arc>();
+        }
+        predecessors.add(arc);
+    }
+
     /**
      * @return ID of this node.
      */
@@ -50,6 +68,19 @@ public class Vertex implements Comparable<Vertex> {
         return Collections.unmodifiableList(successors);
     }
 
+    /**
+     * @return List of predecessors of this node, i.e. arcs whose destination is
+     *         this node. Predecessors are only filled when the graph is created
+     *         with reverse arcs (see the reverse-arcs option), otherwise this list
+     *         is empty.
+     */
+    public List<Arc> getPredecessors() {
+        if (predecessors == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(predecessors);
+    }
+
     /**
      * @return Point of this node.
      */
@@ -0,0 +1,84 @@
+package org.laas.osm2graph.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP endpoint serving progress metrics in the Prometheus text format at
+ * /metrics. The server only listens on the loopback interface and answers
+ * requests from a single daemon thread.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    // Content type of the Prometheus text format.
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Underlying server, and thread answering the requests.
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Create and start a new server.
+     * 
+     * @param metrics Metrics to serve.
+     * @param port Port to listen on (0 to pick a free port).
+     * 
+     * @throws IOException if the server cannot be started.
+     */
+    public MetricsServer(ProgressMetrics metrics, int port) throws IOException {
+        this.server = HttpServer
+                .create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/metrics", exchange -> serve(exchange, metrics));
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "osm2graph-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * @return Port this server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answer a request with the current metrics.
+     * 
+     * @param exchange
+     * @param metrics
+     * 
+     * @throws IOException
+     */
+    private static void serve(HttpExchange exchange, ProgressMetrics metrics) throws IOException {
+        try {
+            byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,218 @@
+package org.laas.osm2graph.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
+
+/**
+ * Live counters of a conversion, updated without locks by the threads of the
+ * conversion and read by monitoring tools (JMX, see {@link ProgressMetricsMBean},
+ * or the Prometheus endpoint of {@link MetricsServer}).
+ *
+ * Counters are {@link LongAdder}s, so updating them from many threads is cheap
+ * and reading them gives a consistent but possibly slightly outdated value. The
+ * number of bytes written is counted by the outputs of the writer itself (see
+ * {@link #getOutputBytesCounter()}), since memory-mapped or preallocated output
+ * files have their final size from the start. The current stage and the state
+ * of the executor are only computed when they are read.
+ */
+public class ProgressMetrics implements ProgressMetricsMBean {
+
+    // Name of the MBean.
+    public static final String OBJECT_NAME = "org.laas.osm2graph:type=ProgressMetrics";
+
+    // Report giving the current stage.
+    private final RunReport report;
+
+    // Executor whose queues are monitored.
+    private final ParallelExecutor executor;
+
+    // Counters.
+    private final LongAdder nodesIngested = new LongAdder(), waysIngested = new LongAdder(),
+            waysConverted = new LongAdder(), arcsCreated = new LongAdder(),
+            outputBytes = new LongAdder();
+
+    // Number of ways to convert.
+    private volatile long waysToConvert;
+
+    /**
+     * @param report Report giving the current stage.
+     * @param executor Executor whose queues are monitored.
+     */
+    public ProgressMetrics(RunReport report, ParallelExecutor executor) {
+        this.report = report;
+        this.executor = executor;
+    }
+
+    /**
+     * Register these metrics in the platform MBean server under
+     * {@link #OBJECT_NAME}, replacing metrics registered by a previous conversion.
+     *
+     * @throws JMException if the metrics cannot be registered.
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Unregister these metrics from the platform MBean server, if they are
+     * registered.
+     *
+     * @throws JMException
+     */
+    public void unregisterMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Record the ingest of the given number of nodes.
+     *
+     * @param nodes
+     */
+    public void addNodesIngested(long nodes) {
+        nodesIngested.add(nodes);
+    }
+
+    /**
+     * Record the ingest of the given number of ways.
+     *
+     * @param ways
+     */
+    public void addWaysIngested(long ways) {
+        waysIngested.add(ways);
+    }
+
+    /**
+     * Record the conversion of ways to the given number of arcs.
+     *
+     * @param ways Number of ways converted.
+     * @param arcs Number of arcs created from these ways.
+     */
+    public void addWaysConverted(long ways, long arcs) {
+        waysConverted.add(ways);
+        arcsCreated.add(arcs);
+    }
+
+    /**
+     * @param waysToConvert Number of ways to convert, set when the conversion
+     *        starts.
+     */
+    public void setWaysToConvert(long waysToConvert) {
+        this.waysToConvert = waysToConvert;
+    }
+
+    /**
+     * @return Counter of the bytes written by the graph writer, to give to
+     *         {@link org.laas.osm2graph.writers.GraphWriter#setOutputCounter}.
+     */
+    public LongAdder getOutputBytesCounter() {
+        return outputBytes;
+    }
+
+    @Override
+    public String getStage() {
+        return report.getCurrentStage();
+    }
+
+    @Override
+    public long getNodesIngested() {
+        return nodesIngested.sum();
+    }
+
+    @Override
+    public long getWaysIngested() {
+        return waysIngested.sum();
+    }
+
+    @Override
+    public long getWaysToConvert() {
+        return waysToConvert;
+    }
+
+    @Override
+    public long getWaysConverted() {
+        return waysConverted.sum();
+    }
+
+    @Override
+    public long getArcsCreated() {
+        return arcsCreated.sum();
+    }
+
+    @Override
+    public long getOutputBytes() {
+        return outputBytes.sum();
+    }
+
+    @Override
+    public long getQueuedChunks() {
+        return executor.getQueuedChunks();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveThreads();
+    }
+
+    /**
+     * @return The metrics in the Prometheus text exposition format.
+     */
+    public String toPrometheusText() {
+        StringBuilder builder = new StringBuilder();
+        String stage = getStage();
+        appendMetric(builder, "osm2graph_stage", "gauge", "Current stage of the conversion.",
+                stage == null ? "" : "{stage=\"" + stage + "\"}", stage == null ? 0 : 1);
+        appendMetric(builder, "osm2graph_nodes_ingested_total", "counter",
+                "Number of nodes ingested.", "", getNodesIngested());
+        appendMetric(builder, "osm2graph_ways_ingested_total", "counter",
+                "Number of ways ingested.", "", getWaysIngested());
+        appendMetric(builder, "osm2graph_ways_to_convert", "gauge",
+                "Number of ways to convert (0 before the conversion).", "", getWaysToConvert());
+        appendMetric(builder, "osm2graph_ways_converted_total", "counter",
+                "Number of ways converted to arcs.", "", getWaysConverted());
+        appendMetric(builder, "osm2graph_arcs_created_total", "counter",
+                "Number of arcs created.", "", getArcsCreated());
+        appendMetric(builder, "osm2graph_output_bytes", "gauge",
+                "Number of bytes written by the writer, including temporary files.", "", getOutputBytes());
+        appendMetric(builder, "osm2graph_executor_queued_chunks", "gauge",
+                "Estimated number of chunks waiting in the executor queues.", "",
+                getQueuedChunks());
+        appendMetric(builder, "osm2graph_executor_active_threads", "gauge",
+                "Estimated number of executor threads currently working.", "",
+                getActiveThreads());
+        return builder.toString();
+    }
+
+    /**
+     * Append a metric with its help and type lines to the given builder.
+     *
+     * @param builder
+     * @param name Name of the metric.
+     * @param type Type of the metric (counter or gauge).
+     * @param help Description of the metric.
+     * @param labels Labels of the metric (including braces), or an empty string.
+     * @param value Value of the metric.
+     */
+    private static void appendMetric(StringBuilder builder, String name, String type,
+            String help, String labels, long value) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        builder.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.laas.osm2graph.metrics;
+
+/**
+ * Management interface of {@link ProgressMetrics}, exposed through JMX.
+ */
+public interface ProgressMetricsMBean {
+
+    /**
+     * @return Name of the current stage of the conversion, or null if none.
+     */
+    public String getStage();
+
+    /**
+     * @return Number of nodes ingested.
+     */
+    public long getNodesIngested();
+
+    /**
+     * @return Number of ways ingested.
+     */
+    public long getWaysIngested();
+
+    /**
+     * @return Number of ways to convert, or 0 if the conversion has not started.
+     */
+    public long getWaysToConvert();
+
+    /**
+     * @return Number of ways converted to arcs.
+     */
+    public long getWaysConverted();
+
+    /**
+     * @return Number of arcs created.
+     */
+    public long getArcsCreated();
+
+    /**
+     * @return Number of bytes written by the writer so far, including temporary
+     *         files.
+     */
+    public long getOutputBytes();
+
+    /**
+     * @return Estimated number of chunks waiting in the queues of the executor.
+     */
+    public long getQueuedChunks();
+
+    /**
+     * @return Estimated number of threads of the executor currently working.
+     */
+    public int getActiveThreads();
+
+}
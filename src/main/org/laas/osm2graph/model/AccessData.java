@@ -1,8 +1,8 @@
 package org.laas.osm2graph.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -62,31 +62,27 @@ public class AccessData {
     // Useful tags for access information, order is important!
     public final static List<String> USEFUL_TAGS = new ArrayList<>();
 
-    // Map Key -> Mask - Need a LinkedHashMap to keep order.
-    private static final Map<String, Long> KEY_TO_MASK = new LinkedHashMap<>();
+    // Keys and associated masks, in the order they are applied.
+    private static final String[] KEYS = { "access", "foot", "vehicle", "bicycle",
+            "motor_vehicle", "motorcycle", "moped", "mofa", "motorcar", "agricultural", "hgv",
+            "psv", "bus", "minibus", "share_taxi" };
+    private static final long[] KEY_MASKS = { MASK_ALL, MASK_FOOT, MASK_VEHICLE, MASK_BICYCLE,
+            MASK_MOTOR_VEHICLE, MASK_MOTORCYCLE, MASK_SMALL_MOTORCYCLE, MASK_SMALL_MOTORCYCLE,
+            MASK_MOTORCAR, MASK_AGRICULTURAL, MASK_HEAVY_GOODS, MASK_PUBLIC_TRANSPORT,
+            MASK_PUBLIC_TRANSPORT, MASK_PUBLIC_TRANSPORT, MASK_PUBLIC_TRANSPORT };
 
     // Map Value -> Mask
     private static final Map<String, Long> VALUE_TO_MASK = new HashMap<>();
 
+    // Maximum number of cached access values.
+    private static final int CACHE_CAPACITY = 4096;
+
+    // Cache of raw access values -> Mask.
+    private static final MemoCache<String, Long> CACHE = new MemoCache<>("access",
+            CACHE_CAPACITY);
+
     static {
-        // Puts keys
-        KEY_TO_MASK.put("access", MASK_ALL);
-        KEY_TO_MASK.put("foot", MASK_FOOT);
-        KEY_TO_MASK.put("vehicle", MASK_VEHICLE);
-        KEY_TO_MASK.put("bicycle", MASK_BICYCLE);
-        KEY_TO_MASK.put("motor_vehicle", MASK_MOTOR_VEHICLE);
-        KEY_TO_MASK.put("motorcycle", MASK_MOTORCYCLE);
-        KEY_TO_MASK.put("moped", MASK_SMALL_MOTORCYCLE);
-        KEY_TO_MASK.put("mofa", MASK_SMALL_MOTORCYCLE);
-        KEY_TO_MASK.put("motorcar", MASK_MOTORCAR);
-        KEY_TO_MASK.put("agricultural", MASK_AGRICULTURAL);
-        KEY_TO_MASK.put("hgv", MASK_HEAVY_GOODS);
-        KEY_TO_MASK.put("psv", MASK_PUBLIC_TRANSPORT);
-        KEY_TO_MASK.put("bus", MASK_PUBLIC_TRANSPORT);
-        KEY_TO_MASK.put("minibus", MASK_PUBLIC_TRANSPORT);
-        KEY_TO_MASK.put("share_taxi", MASK_PUBLIC_TRANSPORT);
-
-        USEFUL_TAGS.addAll(KEY_TO_MASK.keySet());
+        USEFUL_TAGS.addAll(Arrays.asList(KEYS));
 
         // Puts value
         VALUE_TO_MASK.put("yes", MASK_YES);
@@ -161,20 +157,51 @@ public class AccessData {
      * @param tags
      */
     public static long getAccessType(Map<String, String> tags, RoadType roadType) {
+        String[] values = new String[KEYS.length];
+        for (int i = 0; i < KEYS.length; ++i) {
+            values[i] = tags.get(KEYS[i]);
+        }
+        return getAccessType(values, roadType);
+    }
+
+    /**
+     * Get access type associated with the given values.
+     * 
+     * @param values Value of each access key (in the order of {@link #USEFUL_TAGS}),
+     *        or null if the key is not present.
+     * @param roadType
+     */
+    public static long getAccessType(String[] values, RoadType roadType) {
 
         long access = getDefaultAccessForRoadType(roadType);
 
-        for (Map.Entry<String, Long> entry: KEY_TO_MASK.entrySet()) {
-            String value = tags.getOrDefault(entry.getKey(), null);
+        for (int i = 0; i < KEYS.length; ++i) {
+            String value = values[i];
             if (value == null) {
                 continue;
             }
-            long maskKey = entry.getValue();
-            long maskValue = VALUE_TO_MASK.getOrDefault(value.toLowerCase(), MASK_UNKNOWN);
+            long maskKey = KEY_MASKS[i];
+            long maskValue = CACHE.get(value, AccessData::getValueMask);
             access = (maskKey & maskValue) | (access & ~maskKey);
         }
 
         return access;
     }
 
+    /**
+     * @return The cache of parsed access values.
+     */
+    public static MemoCache<String, Long> getCache() {
+        return CACHE;
+    }
+
+    /**
+     * @param value Value of an access tag.
+     * 
+     * @return Mask associated with the given value.
+     */
+    private static Long getValueMask(String value) {
+        return VALUE_TO_MASK.getOrDefault(value.toLowerCase(), MASK_UNKNOWN);
+    }
+
 }
@@ -0,0 +1,215 @@
+package org.laas.osm2graph.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.writers.BinaryGraphWriterInsa2018;
+
+/**
+ * Merge chains of ways that meet end-to-end with the same road information, so
+ * that the nodes where they meet do not become (degree 2) vertices.
+ *
+ * Two ways are merged at a node if the node is the end of exactly these two ways
+ * and is not used anywhere else. Ways are merged in their own direction, a way
+ * being reversed only if its road information is not one-way. Since merged ways
+ * have the same road information, the arcs created from merged ways are the
+ * concatenation of the arcs that would have been created from the original ways
+ * (lengths are summed and polylines concatenated).
+ *
+ * Chains are split so that merged ways have at most
+ * {@link BinaryGraphWriterInsa2018#MAXIMUM_NUMBER_OF_POINTS} nodes, since an arc
+ * created from a merged way can span all its nodes.
+ */
+public class ChainContractor {
+
+    private static final Logger LOGGER = Logger.getLogger(ChainContractor.class.getName());
+
+    // Maximum number of nodes of a merged way.
+    private static final int MAXIMUM_NUMBER_OF_NODES =
+            BinaryGraphWriterInsa2018.MAXIMUM_NUMBER_OF_POINTS;
+
+    // Executor for the parallel phases.
+    private final ParallelExecutor executor;
+
+    // Road informations of the ways.
+    private final List<RoadInformation> roadInformations;
+
+    /**
+     * @param executor Executor to use.
+     * @param roadInformations Road informations, indexed as in compact ways.
+     */
+    public ChainContractor(ParallelExecutor executor, List<RoadInformation> roadInformations) {
+        this.executor = executor;
+        this.roadInformations = roadInformations;
+    }
+
+    /**
+     * Merge the chains of the given ways.
+     *
+     * Ends of ways are identified by 2 * (index of the way) for the first node and 2
+     * * (index of the way) + 1 for the last node, and are sorted by node ID to find
+     * the nodes that are the end of exactly two ways.
+     *
+     * @param ways Ways to merge.
+     *
+     * @return List of ways where chains have been merged (ways that are not merged
+     *         are kept as is).
+     */
+    public List<CompactWay> contract(List<CompactWay> ways) {
+        int nWays = ways.size();
+        if (nWays < 2) {
+            return ways;
+        }
+        long[] prefix = new long[nWays + 1];
+        for (int i = 0; i < nWays; ++i) {
+            prefix[i + 1] = prefix[i] + ways.get(i).getNumberOfNodes();
+        }
+
+        // Range of IDs, to size the marks and pack the ends.
+        AtomicLong minIds = new AtomicLong(Long.MAX_VALUE),
+                maxIds = new AtomicLong(Long.MIN_VALUE);
+        executor.forEach("chain-detection", nWays, prefix, (first, last) -> {
+            long minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+            for (int i = first; i < last; ++i) {
+                CompactWay way = ways.get(i);
+                for (int j = 0; j < way.getNumberOfNodes(); ++j) {
+                    minId = Math.min(minId, way.getNodeId(j));
+                    maxId = Math.max(maxId, way.getNodeId(j));
+                }
+            }
+            minIds.accumulateAndGet(minId, Math::min);
+            maxIds.accumulateAndGet(maxId, Math::max);
+        });
+        long minId = minIds.get(), maxId = maxIds.get();
+
+        // Ends are packed with their node in a long (node in the high bits).
+        int endBits = 64 - Long.numberOfLeadingZeros(2L * nWays - 1);
+        if (((maxId - minId) >>> (63 - endBits)) != 0) {
+            LOGGER.warning("range of node IDs too large to merge chains, ways are kept as is.");
+            return ways;
+        }
+        long endMask = (1L << endBits) - 1;
+
+        // Nodes used inside a way, which cannot be merged.
+        NodeMarks inner = new NodeMarks(minId, maxId);
+        long[] ends = new long[2 * nWays];
+        executor.forEach("chain-detection", nWays, prefix, (first, last) -> {
+            for (int i = first; i < last; ++i) {
+                CompactWay way = ways.get(i);
+                int nNodes = way.getNumberOfNodes();
+                for (int j = 1; j < nNodes - 1; ++j) {
+                    inner.markVertex(way.getNodeId(j));
+                }
+                ends[2 * i] = ((way.getNodeId(0) - minId) << endBits) | (2 * i);
+                ends[2 * i + 1] = ((way.getNodeId(nNodes - 1) - minId) << endBits) | (2 * i + 1);
+            }
+        });
+        Arrays.parallelSort(ends);
+
+        // End of the way joined to each end, or -1.
+        int[] joins = new int[2 * nWays];
+        Arrays.fill(joins, -1);
+        int nJoins = 0;
+        for (int i = 0; i < ends.length;) {
+            int j = i + 1;
+            while (j < ends.length && (ends[j] >>> endBits) == (ends[i] >>> endBits)) {
+                j += 1;
+            }
+            if (j - i == 2) {
+                int a = (int) (ends[i] & endMask), b = (int) (ends[i + 1] & endMask);
+                if (canJoin(ways, a, b) && !inner.isVertex(minId + (ends[i] >>> endBits))) {
+                    joins[a] = b;
+                    joins[b] = a;
+                    nJoins += 1;
+                }
+            }
+            i = j;
+        }
+        if (nJoins == 0) {
+            return ways;
+        }
+
+        // Merge chains, an oriented way being identified by the end it is entered
+        // from (its first end if the way is not reversed).
+        List<CompactWay> contracted = new ArrayList<>(nWays - nJoins);
+        boolean[] visited = new boolean[nWays];
+        int[] chain = new int[nWays];
+        for (int w = 0; w < nWays; ++w) {
+            if (visited[w]) {
+                continue;
+            }
+            if (joins[2 * w] < 0 && joins[2 * w + 1] < 0) {
+                visited[w] = true;
+                contracted.add(ways.get(w));
+                continue;
+            }
+
+            // Go back to the start of the chain (or stay on w for cycles).
+            int entry = 2 * w;
+            while (joins[entry] >= 0 && (joins[entry] >>> 1) != w) {
+                entry = joins[entry] ^ 1;
+            }
+
+            // Walk the chain, starting a new merged way when the current one would
+            // have too many nodes.
+            while (entry >= 0) {
+                int length = 0, nNodes = 1, next;
+                while (true) {
+                    visited[entry >>> 1] = true;
+                    chain[length++] = entry;
+                    nNodes += ways.get(entry >>> 1).getNumberOfNodes() - 1;
+                    next = joins[entry ^ 1];
+                    if (next < 0 || visited[next >>> 1]) {
+                        next = -1;
+                        break;
+                    }
+                    if (nNodes + ways.get(next >>> 1).getNumberOfNodes() - 1
+                            > MAXIMUM_NUMBER_OF_NODES) {
+                        break;
+                    }
+                    entry = next;
+                }
+
+                long[] nodes = new long[nNodes];
+                int size = 0;
+                for (int k = 0; k < length; ++k) {
+                    CompactWay way = ways.get(chain[k] >>> 1);
+                    int n = way.getNumberOfNodes();
+                    boolean reversed = (chain[k] & 1) != 0;
+                    for (int j = k == 0 ? 0 : 1; j < n; ++j) {
+                        nodes[size++] = way.getNodeId(reversed ? n - 1 - j : j);
+                    }
+                }
+                contracted.add(new CompactWay(nodes,
+                        ways.get(chain[0] >>> 1).getRoadInformationIndex()));
+                entry = next;
+            }
+        }
+
+        LOGGER.info("merged " + nWays + " ways into " + contracted.size() + " ways.");
+        return contracted;
+    }
+
+    /**
+     * @param ways
+     * @param a, b Ends of two ways meeting at the same node.
+     *
+     * @return true if the two ways can be merged at the given ends.
+     */
+    private boolean canJoin(List<CompactWay> ways, int a, int b) {
+        if ((a >>> 1) == (b >>> 1)) {
+            return false;
+        }
+        int info = ways.get(a >>> 1).getRoadInformationIndex();
+        if (info != ways.get(b >>> 1).getRoadInformationIndex()) {
+            return false;
+        }
+        // Joining two first nodes or two last nodes requires reversing a way.
+        return (a & 1) != (b & 1) || !roadInformations.get(info).isOneWay();
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.laas.osm2graph.model;
+
+/**
+ * Compact representation of an OSM way, containing only what is needed to
+ * create arcs: the IDs of its nodes and the index of its (interned) road
+ * information.
+ */
+public class CompactWay {
+
+    // OSM IDs of the nodes of this way.
+    private final long[] nodes;
+
+    // Index of the road information for this way.
+    private final int info;
+
+    /**
+     * @param nodes OSM IDs of the nodes of the way.
+     * @param info Index of the road information of the way.
+     */
+    public CompactWay(long[] nodes, int info) {
+        this.nodes = nodes;
+        this.info = info;
+    }
+
+    /**
+     * @return Number of nodes in this way.
+     */
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @param index Index of the node in this way.
+     * 
+     * @return OSM ID of the node at the given index.
+     */
+    public long getNodeId(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @return Index of the road information for this way.
+     */
+    public int getRoadInformationIndex() {
+        return info;
+    }
+
+    /**
+     * @param info Index of a road information.
+     * 
+     * @return Compact way with the nodes of this way and the given road
+     *         information.
+     */
+    public CompactWay withRoadInformationIndex(int info) {
+        return info == this.info ? this : new CompactWay(nodes, info);
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.laas.osm2graph.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded thread-safe memoization cache, used to avoid parsing the same tag
+ * values again and again.
+ *
+ * Values are computed outside of any lock (so a value may be computed several
+ * times by concurrent threads, which is fine for pure functions). Once the cache
+ * holds its maximum number of entries, new values are still computed but are no
+ * longer stored, so a malformed input with many distinct values cannot make the
+ * cache grow without bound.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class MemoCache<K, V> {
+
+    // Name of the cache, used for reporting.
+    private final String name;
+
+    // Maximum number of entries.
+    private final int capacity;
+
+    // Cached values.
+    private final ConcurrentHashMap<K, V> values;
+
+    // Hit and miss counters.
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+    /**
+     * Create a new cache.
+     *
+     * @param name Name of the cache.
+     * @param capacity Maximum number of entries of the cache.
+     */
+    public MemoCache(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+        this.values = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Retrieve the value associated with the given key, computing it with the
+     * given function if it is not in the cache. This method can be called
+     * concurrently.
+     *
+     * @param key Key to look for, must not be null.
+     * @param function Function computing the value of a key, must not return null.
+     *
+     * @return Value associated with the given key.
+     */
+    public V get(K key, Function<? super K, ? extends V> function) {
+        V value = values.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = function.apply(key);
+        if (values.size() < capacity) {
+            values.putIfAbsent(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return Name of this cache.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Number of entries in this cache.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return Number of lookups that found their value in this cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that had to compute their value.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        long hits = getHits(), total = hits + getMisses();
+        return String.format("%s: %d hits, %d misses (%.2f%% hit rate), %d entries", name, hits,
+                total - hits, total == 0 ? 0. : 100. * hits / total, size());
+    }
+
+}
@@ -0,0 +1,312 @@
+package org.laas.osm2graph.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free set of marks on OSM nodes, used to find which nodes are vertices.
+ * 
+ * Each node within [minId, maxId] is associated to two bits indicating if the
+ * node has not been seen yet, has been seen once, or is a vertex (seen at least
+ * twice, or explicitly marked as a vertex). Bits are stored in pages that are
+ * allocated on first use, so memory usage stays low when IDs are sparse. All
+ * the methods of this class can be called concurrently.
+ * 
+ * Once all nodes have been marked, {@link #index(ParallelExecutor)} assigns a
+ * dense index to each vertex, in increasing order of OSM IDs, using a prefix sum
+ * over the number of vertices in each page. These indices can then be permuted
+ * with {@link #setPermutation(int[])}.
+ */
+public class NodeMarks {
+
+    /**
+     * Consumer of vertices.
+     */
+    public interface VertexConsumer {
+
+        /**
+         * @param id OSM ID of the vertex.
+         * @param index Dense index of the vertex.
+         */
+        public void accept(long id, int index);
+
+    }
+
+    // States of a node.
+    private static final long SEEN = 1, VERTEX = 2, STATE_MASK = 3;
+
+    // Number of nodes per page (log2), and number of nodes per long.
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int NODES_PER_WORD_BITS = 5;
+    private static final int WORDS_PER_PAGE = 1 << (PAGE_BITS - NODES_PER_WORD_BITS);
+
+    // Mask of the high bit of each state in a word, the high bit being set only
+    // for vertices.
+    private static final long VERTEX_BITS = 0xaaaaaaaaaaaaaaaaL;
+
+    // Smallest ID that can be marked.
+    private final long minId;
+
+    // Pages of marks.
+    private final AtomicReferenceArray<AtomicLongArray> pages;
+
+    // Index of the first vertex of each word, by page (set by index()).
+    private int[][] ranks;
+
+    // Number of vertices (set by index()).
+    private int numberOfVertices;
+
+    // Index of each vertex, by rank in increasing order of OSM IDs (null if the
+    // index of a vertex is its rank).
+    private int[] permutation;
+
+    /**
+     * Create a new set of marks for nodes whose IDs are between minId and maxId
+     * (included).
+     * 
+     * @param minId Smallest ID of the nodes.
+     * @param maxId Largest ID of the nodes.
+     */
+    public NodeMarks(long minId, long maxId) {
+        long nPages = ((maxId - minId) >>> PAGE_BITS) + 1;
+        if (maxId < minId || nPages > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "invalid range of node IDs: [" + minId + ", " + maxId + "]");
+        }
+        this.minId = minId;
+        this.pages = new AtomicReferenceArray<>((int) nPages);
+        this.ranks = null;
+        this.numberOfVertices = -1;
+    }
+
+    /**
+     * @param page Index of the page.
+     * 
+     * @return The page at the given index, allocating it if necessary.
+     */
+    private AtomicLongArray getOrCreatePage(int page) {
+        AtomicLongArray words = pages.get(page);
+        if (words == null) {
+            words = new AtomicLongArray(WORDS_PER_PAGE);
+            if (!pages.compareAndSet(page, null, words)) {
+                words = pages.get(page);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Update the state of the given node.
+     * 
+     * @param id ID of the node.
+     * @param vertex true to mark the node as a vertex, false to increase its
+     *        number of occurrences.
+     */
+    private void update(long id, boolean vertex) {
+        long index = id - minId;
+        AtomicLongArray words = getOrCreatePage((int) (index >>> PAGE_BITS));
+        int offset = (int) (index & PAGE_MASK);
+        int word = offset >>> NODES_PER_WORD_BITS;
+        int shift = (offset & ((1 << NODES_PER_WORD_BITS) - 1)) << 1;
+        while (true) {
+            long current = words.get(word);
+            long state = (current >>> shift) & STATE_MASK;
+            if (state == VERTEX) {
+                return;
+            }
+            long next = (vertex || state == SEEN) ? VERTEX : SEEN;
+            long updated = (current & ~(STATE_MASK << shift)) | (next << shift);
+            if (words.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Record one occurrence of the given node. A node that occurs twice becomes a
+     * vertex.
+     * 
+     * @param id ID of the node.
+     */
+    public void mark(long id) {
+        update(id, false);
+    }
+
+    /**
+     * Mark the given node as a vertex.
+     * 
+     * @param id ID of the node.
+     */
+    public void markVertex(long id) {
+        update(id, true);
+    }
+
+    /**
+     * @param id ID of the node.
+     * 
+     * @return true if the given node is a vertex.
+     */
+    public boolean isVertex(long id) {
+        long index = id - minId;
+        if (index < 0 || (index >>> PAGE_BITS) >= pages.length()) {
+            return false;
+        }
+        AtomicLongArray words = pages.get((int) (index >>> PAGE_BITS));
+        if (words == null) {
+            return false;
+        }
+        int offset = (int) (index & PAGE_MASK);
+        int shift = (offset & ((1 << NODES_PER_WORD_BITS) - 1)) << 1;
+        return ((words.get(offset >>> NODES_PER_WORD_BITS) >>> shift) & STATE_MASK) == VERTEX;
+    }
+
+    /**
+     * Assign a dense index to each vertex. Nodes must not be marked after this
+     * method has been called.
+     * 
+     * @param executor Executor to use.
+     * 
+     * @return Number of vertices.
+     */
+    public int index(ParallelExecutor executor) {
+        int nPages = pages.length();
+        int[][] ranks = new int[nPages][];
+        int[] counts = new int[nPages];
+
+        // Number of vertices before each word, relative to the page.
+        executor.forEach("vertex-counting", nPages, (first, last) -> {
+            for (int page = first; page < last; ++page) {
+                AtomicLongArray words = pages.get(page);
+                if (words == null) {
+                    continue;
+                }
+                int[] pageRanks = new int[WORDS_PER_PAGE];
+                int count = 0;
+                for (int word = 0; word < WORDS_PER_PAGE; ++word) {
+                    pageRanks[word] = count;
+                    count += Long.bitCount(words.get(word) & VERTEX_BITS);
+                }
+                ranks[page] = pageRanks;
+                counts[page] = count;
+            }
+        });
+
+        // Prefix sum over pages.
+        int[] offsets = new int[nPages];
+        long total = 0;
+        for (int page = 0; page < nPages; ++page) {
+            offsets[page] = (int) total;
+            total += counts[page];
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many vertices: " + total);
+        }
+
+        executor.forEach("vertex-numbering", nPages, (first, last) -> {
+            for (int page = first; page < last; ++page) {
+                if (ranks[page] != null) {
+                    for (int word = 0; word < WORDS_PER_PAGE; ++word) {
+                        ranks[page][word] += offsets[page];
+                    }
+                }
+            }
+        });
+
+        this.ranks = ranks;
+        this.numberOfVertices = (int) total;
+        return this.numberOfVertices;
+    }
+
+    /**
+     * @return Number of vertices, or -1 if {@link #index(ParallelExecutor)} has
+     *         not been called.
+     */
+    public int getNumberOfVertices() {
+        return this.numberOfVertices;
+    }
+
+    /**
+     * @param id OSM ID of the node.
+     * 
+     * @return Dense index of the given node, or -1 if the node is not a vertex.
+     */
+    public int getVertexIndex(long id) {
+        long index = id - minId;
+        if (index < 0 || (index >>> PAGE_BITS) >= pages.length()) {
+            return -1;
+        }
+        int page = (int) (index >>> PAGE_BITS);
+        AtomicLongArray words = pages.get(page);
+        if (words == null) {
+            return -1;
+        }
+        int offset = (int) (index & PAGE_MASK);
+        int word = offset >>> NODES_PER_WORD_BITS;
+        int shift = (offset & ((1 << NODES_PER_WORD_BITS) - 1)) << 1;
+        long bits = words.get(word);
+        if (((bits >>> shift) & STATE_MASK) != VERTEX) {
+            return -1;
+        }
+        int rank = ranks[page][word] + Long.bitCount(bits & VERTEX_BITS & ((1L << shift) - 1));
+        return permutation == null ? rank : permutation[rank];
+    }
+
+    /**
+     * Change the indices of the vertices. Must be called after
+     * {@link #index(ParallelExecutor)} and before the indices are used.
+     * 
+     * @param permutation New index of each vertex, by current index (increasing
+     *        order of OSM IDs), or null to use the current indices.
+     */
+    public void setPermutation(int[] permutation) {
+        if (permutation != null && permutation.length != this.numberOfVertices) {
+            throw new IllegalArgumentException("invalid permutation of " + permutation.length
+                    + " vertices, expected " + this.numberOfVertices + ".");
+        }
+        this.permutation = permutation;
+    }
+
+    /**
+     * Call the given consumer for each vertex, concurrently.
+     * 
+     * @param executor Executor to use.
+     * @param consumer Consumer to call for each vertex.
+     */
+    public void forEachVertex(ParallelExecutor executor, VertexConsumer consumer) {
+        forEachVertex(executor, "vertex-creation", consumer);
+    }
+
+    /**
+     * Call the given consumer for each vertex, concurrently.
+     * 
+     * @param executor Executor to use.
+     * @param phase Name of the phase, for the executor statistics.
+     * @param consumer Consumer to call for each vertex.
+     */
+    public void forEachVertex(ParallelExecutor executor, String phase,
+            VertexConsumer consumer) {
+        int[] permutation = this.permutation;
+        executor.forEach(phase, pages.length(), (first, last) -> {
+            for (int page = first; page < last; ++page) {
+                AtomicLongArray words = pages.get(page);
+                if (words == null) {
+                    continue;
+                }
+                for (int word = 0; word < WORDS_PER_PAGE; ++word) {
+                    long bits = words.get(word) & VERTEX_BITS;
+                    int index = ranks[page][word];
+                    while (bits != 0) {
+                        int shift = Long.numberOfTrailingZeros(bits) - 1;
+                        long id = minId + ((long) page << PAGE_BITS)
+                                + ((word << NODES_PER_WORD_BITS) | (shift >>> 1));
+                        consumer.accept(id, permutation == null ? index : permutation[index]);
+                        index += 1;
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        });
+    }
+
+}
@@ -17,8 +17,15 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
+import org.laas.osm2graph.distance.DistanceEngine;
+import org.laas.osm2graph.distance.DistanceEngineFactory;
+import org.laas.osm2graph.distance.SphericalDistanceEngine;
+import org.laas.osm2graph.metrics.ProgressMetrics;
+import org.laas.osm2graph.store.NodeStore;
+import org.laas.osm2graph.store.NodeStoreFactory;
 import org.laas.osm2graph.writers.GraphWriter;
 import org.laas.osm2graph.writers.GraphWriterFactory;
+import org.laas.osm2graph.writers.StreamingGraphWriter;
 
 /**
  * Configuration for the map file writer.
@@ -29,7 +36,21 @@ public class OSM2GraphConfiguration {
     private List<String> preferredLanguages;
     private String writerVersion;
     private GraphWriter writer;
+    private NodeStore nodeStore;
+    private DistanceEngine distanceEngine = new SphericalDistanceEngine();
     private int threads;
+    private boolean streamingWays;
+    private boolean compactGraph;
+    private boolean streamingOutput;
+    private boolean contractChains;
+    private double simplifyTolerance;
+    private boolean reverseArcs;
+    private boolean writeReport;
+    private int metricsPort;
+    private SpaceFillingCurve vertexOrder;
+    private ParallelExecutor executor;
+    private RunReport runReport;
+    private ProgressMetrics progressMetrics;
 
     private String mapId = null;
     private String mapName = null;
@@ -75,6 +96,42 @@ public class OSM2GraphConfiguration {
         setGraphWriter(writer);
     }
 
+    /**
+     * Convenience method.
+     * 
+     * @param storeType name of the node store to use.
+     */
+    public void addNodeStore(String storeType) {
+        NodeStore store = NodeStoreFactory.nodeStoreFromName(storeType);
+        if (store == null) {
+            throw new IllegalArgumentException("unrecognized node store: " + storeType);
+        }
+        setNodeStore(store);
+    }
+
+    /**
+     * Convenience method.
+     * 
+     * @param engineType name of the distance engine to use.
+     */
+    public void addDistanceEngine(String engineType) {
+        DistanceEngine engine = DistanceEngineFactory.distanceEngineFromName(engineType);
+        if (engine == null) {
+            throw new IllegalArgumentException("unrecognized distance engine: " + engineType);
+        }
+        setDistanceEngine(engine);
+    }
+
+    /**
+     * Convenience method.
+     * 
+     * @param order name of the space-filling curve used to number vertices, or
+     *        "osm" to number vertices in increasing order of OSM IDs.
+     */
+    public void addVertexOrder(String order) {
+        setVertexOrder("osm".equalsIgnoreCase(order) ? null : SpaceFillingCurve.fromName(order));
+    }
+
     /**
      * Convenience method.
      *
@@ -121,6 +178,20 @@ public class OSM2GraphConfiguration {
         return this.writer;
     }
 
+    /**
+     * @return the node store
+     */
+    public NodeStore getNodeStore() {
+        return this.nodeStore;
+    }
+
+    /**
+     * @return the distance engine used to compute the length of arcs
+     */
+    public DistanceEngine getDistanceEngine() {
+        return this.distanceEngine;
+    }
+
     /**
      * @return the threads
      */
@@ -128,6 +199,116 @@ public class OSM2GraphConfiguration {
         return this.threads;
     }
 
+    /**
+     * @return true if ways should be converted to their compact form as they are
+     *         received instead of being kept until the end of the input.
+     */
+    public boolean isStreamingWays() {
+        return this.streamingWays;
+    }
+
+    /**
+     * @return true if the graph should be built in its compact form instead of as
+     *         vertex and arc objects.
+     */
+    public boolean isCompactGraph() {
+        return this.compactGraph;
+    }
+
+    /**
+     * @return true if the graph should be written while it is being created,
+     *         without being built in memory.
+     */
+    public boolean isStreamingOutput() {
+        return this.streamingOutput;
+    }
+
+    /**
+     * @return the space-filling curve used to number vertices, or null if vertices
+     *         are numbered in increasing order of OSM IDs.
+     */
+    public SpaceFillingCurve getVertexOrder() {
+        return this.vertexOrder;
+    }
+
+    /**
+     * @return true if chains of ways meeting end-to-end with the same road
+     *         information should be merged before conversion.
+     */
+    public boolean isContractChains() {
+        return this.contractChains;
+    }
+
+    /**
+     * @return the tolerance (in meters) used to simplify the polylines of arcs, or
+     *         0 if arcs are not simplified.
+     */
+    public double getSimplifyTolerance() {
+        return this.simplifyTolerance;
+    }
+
+    /**
+     * @return true if reverse arcs should be created for ways that are not one-way
+     *         (and predecessors linked to vertices).
+     */
+    public boolean isReverseArcs() {
+        return this.reverseArcs;
+    }
+
+    /**
+     * @return the executor shared by all the parallel phases, created with the
+     *         configured number of threads on first call.
+     */
+    public synchronized ParallelExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new ParallelExecutor(this.threads);
+        }
+        return this.executor;
+    }
+
+    /**
+     * @return the report of the stages of the conversion, created on first call.
+     */
+    public synchronized RunReport getRunReport() {
+        if (this.runReport == null) {
+            this.runReport = new RunReport();
+        }
+        return this.runReport;
+    }
+
+    /**
+     * @return the live metrics of the conversion, created on first call.
+     */
+    public synchronized ProgressMetrics getProgressMetrics() {
+        if (this.progressMetrics == null) {
+            this.progressMetrics = new ProgressMetrics(getRunReport(), getExecutor());
+        }
+        return this.progressMetrics;
+    }
+
+    /**
+     * @return the local port of the HTTP endpoint serving the metrics, or 0 if
+     *         the endpoint is disabled.
+     */
+    public int getMetricsPort() {
+        return this.metricsPort;
+    }
+
+    /**
+     * @return true if the report of the run should be written as a JSON file next
+     *         to the output file.
+     */
+    public boolean isWriteReport() {
+        return this.writeReport;
+    }
+
+    /**
+     * @return the file where the report of the run is written.
+     */
+    public File getReportFile() {
+        return new File(getOutputFile().getPath() + ".report.json");
+    }
+
     /**
      * @return the writerVersion
      */
@@ -163,6 +344,20 @@ public class OSM2GraphConfiguration {
         this.writer = writer;
     }
 
+    /**
+     * @param nodeStore node store to set
+     */
+    public void setNodeStore(NodeStore nodeStore) {
+        this.nodeStore = nodeStore;
+    }
+
+    /**
+     * @param distanceEngine distance engine to set
+     */
+    public void setDistanceEngine(DistanceEngine distanceEngine) {
+        this.distanceEngine = distanceEngine;
+    }
+
     /**
      * @param preferredLanguages the preferred language(s) to set
      */
@@ -177,6 +372,74 @@ public class OSM2GraphConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * @param streamingWays true to convert ways as they are received.
+     */
+    public void setStreamingWays(boolean streamingWays) {
+        this.streamingWays = streamingWays;
+    }
+
+    /**
+     * @param compactGraph true to build the graph in its compact form.
+     */
+    public void setCompactGraph(boolean compactGraph) {
+        this.compactGraph = compactGraph;
+    }
+
+    /**
+     * @param streamingOutput true to write the graph while it is being created.
+     */
+    public void setStreamingOutput(boolean streamingOutput) {
+        this.streamingOutput = streamingOutput;
+    }
+
+    /**
+     * @param vertexOrder space-filling curve used to number vertices, or null to
+     *        number vertices in increasing order of OSM IDs.
+     */
+    public void setVertexOrder(SpaceFillingCurve vertexOrder) {
+        this.vertexOrder = vertexOrder;
+    }
+
+    /**
+     * @param contractChains true to merge chains of ways before conversion.
+     */
+    public void setContractChains(boolean contractChains) {
+        this.contractChains = contractChains;
+    }
+
+    /**
+     * @param simplifyTolerance tolerance (in meters) used to simplify the
+     *        polylines of arcs, or 0 to keep all the points.
+     */
+    public void setSimplifyTolerance(double simplifyTolerance) {
+        this.simplifyTolerance = simplifyTolerance;
+    }
+
+    /**
+     * @param reverseArcs true to create reverse arcs for ways that are not
+     *        one-way.
+     */
+    public void setReverseArcs(boolean reverseArcs) {
+        this.reverseArcs = reverseArcs;
+    }
+
+    /**
+     * @param metricsPort local port of the HTTP endpoint serving the metrics, or 0
+     *        to disable the endpoint.
+     */
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    /**
+     * @param writeReport true to write the report of the run as a JSON file next
+     *        to the output file.
+     */
+    public void setWriteReport(boolean writeReport) {
+        this.writeReport = writeReport;
+    }
+
     /**
      * @param writerVersion the writerVersion to set
      */
@@ -195,6 +458,18 @@ public class OSM2GraphConfiguration {
             throw new IllegalArgumentException(
                     "Directory " + parent.getAbsolutePath() + " does not exist.");
         }
+        if (isStreamingOutput() && !(getGraphWriter() instanceof StreamingGraphWriter)) {
+            throw new IllegalArgumentException("The selected writer does not support streaming "
+                    + "output, use a writer that supports it or remove streaming-output.");
+        }
+        if (getMetricsPort() < 0 || getMetricsPort() > 65535) {
+            throw new IllegalArgumentException(
+                    "metrics-port must be a valid port number, or 0 to disable the endpoint.");
+        }
+        if (!(getSimplifyTolerance() >= 0)) {
+            throw new IllegalArgumentException(
+                    "simplify-tolerance must be a non-negative number of meters.");
+        }
         getGraphWriter().validate(this);
     }
 }
\ No newline at end of file
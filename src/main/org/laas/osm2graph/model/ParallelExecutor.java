@@ -0,0 +1,306 @@
+package org.laas.osm2graph.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Work-stealing executor shared by the parallel phases of the conversion.
+ * 
+ * Ranges of elements are split recursively into chunks whose weight (e.g., the
+ * number of nodes of the ways in the chunk) is roughly balanced, with several
+ * chunks per thread so that idle threads can steal work from busy ones. For each
+ * phase, the wall time and the CPU time spent by the workers are recorded so
+ * that the core usage of each phase can be reported.
+ */
+public class ParallelExecutor implements AutoCloseable {
+
+    /**
+     * Task processing a range of elements.
+     */
+    public interface RangeTask {
+
+        /**
+         * Process elements starting at first up to last (not included).
+         * 
+         * @param first
+         * @param last
+         */
+        public void run(int first, int last);
+
+    }
+
+    /**
+     * Usage statistics for one phase, aggregated over all its runs.
+     */
+    public static class PhaseUsage {
+
+        // Name of the phase.
+        private final String name;
+
+        // Number of elements processed.
+        private final long items;
+
+        // Wall and CPU time, in nanoseconds.
+        private final long wallTime, cpuTime;
+
+        public PhaseUsage(String name, long items, long wallTime, long cpuTime) {
+            this.name = name;
+            this.items = items;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+        }
+
+        /**
+         * @return Name of the phase.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of elements processed during this phase.
+         */
+        public long getItems() {
+            return items;
+        }
+
+        /**
+         * @return Wall time of this phase, in nanoseconds.
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return CPU time spent by the workers during this phase, in nanoseconds.
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * @param other Usage of another run of the same phase.
+         * 
+         * @return Usage of this run and the given one.
+         */
+        PhaseUsage add(PhaseUsage other) {
+            return new PhaseUsage(name, items + other.items, wallTime + other.wallTime,
+                    cpuTime + other.cpuTime);
+        }
+
+        /**
+         * @return Average number of cores used during this phase.
+         */
+        public double getCoreUsage() {
+            return wallTime == 0 ? 0 : (double) cpuTime / wallTime;
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %d items in %d ms (%.2f cores used on average)", name,
+                    items, TimeUnit.NANOSECONDS.toMillis(wallTime), getCoreUsage());
+        }
+    }
+
+    // Number of chunks per thread, to allow work stealing.
+    private static final int CHUNKS_PER_THREAD = 16;
+
+    // Bean to measure CPU time.
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * @return CPU time of the current thread, or 0 if not supported.
+     */
+    private static long currentThreadCpuTime() {
+        return THREAD_BEAN.isCurrentThreadCpuTimeSupported()
+                ? THREAD_BEAN.getCurrentThreadCpuTime()
+                : 0;
+    }
+
+    /**
+     * Recursive task splitting a range according to its weight.
+     */
+    private static class WeightedRangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeTask task;
+        private final long[] prefix;
+        private final long grain;
+        private final int first, last;
+        private final LongAdder cpuTime;
+
+        /**
+         * @param task Task to run on each chunk.
+         * @param prefix Cumulative weights (prefix[i] is the weight of elements
+         *        before i), or null if all elements have the same weight.
+         * @param grain Maximum weight of a chunk.
+         * @param first
+         * @param last
+         * @param cpuTime Accumulator for CPU time.
+         */
+        WeightedRangeAction(RangeTask task, long[] prefix, long grain, int first, int last,
+                LongAdder cpuTime) {
+            this.task = task;
+            this.prefix = prefix;
+            this.grain = grain;
+            this.first = first;
+            this.last = last;
+            this.cpuTime = cpuTime;
+        }
+
+        private long weight(int from, int to) {
+            return prefix == null ? to - from : prefix[to] - prefix[from];
+        }
+
+        /**
+         * @return Index splitting [first, last) in two ranges of similar weight.
+         */
+        private int split() {
+            if (prefix == null) {
+                return (first + last) >>> 1;
+            }
+            long target = prefix[first] + weight(first, last) / 2;
+            int lo = first + 1, hi = last - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (prefix[mid] < target) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1 && weight(first, last) > grain) {
+                int middle = split();
+                invokeAll(new WeightedRangeAction(task, prefix, grain, first, middle, cpuTime),
+                        new WeightedRangeAction(task, prefix, grain, middle, last, cpuTime));
+            }
+            else {
+                long start = currentThreadCpuTime();
+                task.run(first, last);
+                cpuTime.add(currentThreadCpuTime() - start);
+            }
+        }
+    }
+
+    // Underlying pool.
+    private final ForkJoinPool pool;
+
+    // Usage of each phase, by name, in the order phases are first run.
+    private final Map<String, PhaseUsage> usages;
+
+    /**
+     * @param threads Number of threads to use.
+     */
+    public ParallelExecutor(int threads) {
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.usages = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return Number of threads of this executor.
+     */
+    public int getThreads() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * @return Estimated number of chunks waiting to be processed.
+     */
+    public long getQueuedChunks() {
+        return this.pool.getQueuedTaskCount();
+    }
+
+    /**
+     * @return Estimated number of threads currently processing chunks.
+     */
+    public int getActiveThreads() {
+        return this.pool.getActiveThreadCount();
+    }
+
+    /**
+     * Run the given task over [0, size) with chunks of similar number of elements.
+     * 
+     * @param phase Name of the phase (for reporting).
+     * @param size Number of elements.
+     * @param task Task to run on each chunk.
+     */
+    public void forEach(String phase, int size, RangeTask task) {
+        forEach(phase, size, null, task);
+    }
+
+    /**
+     * Run the given task over [0, size) with chunks of similar weight.
+     * 
+     * @param phase Name of the phase (for reporting).
+     * @param size Number of elements.
+     * @param prefix Cumulative weights of the elements (of length size + 1,
+     *        prefix[i] being the total weight of elements before i), or null if
+     *        all elements have the same weight.
+     * @param task Task to run on each chunk.
+     */
+    public void forEach(String phase, int size, long[] prefix, RangeTask task) {
+        long total = prefix == null ? size : prefix[size];
+        long grain = Math.max(1, total / (CHUNKS_PER_THREAD * (long) getThreads()));
+        LongAdder cpuTime = new LongAdder();
+        long start = System.nanoTime();
+        if (size > 0) {
+            pool.invoke(new WeightedRangeAction(task, prefix, grain, 0, size, cpuTime));
+        }
+        PhaseUsage usage = new PhaseUsage(phase, size, System.nanoTime() - start,
+                cpuTime.sum());
+        synchronized (usages) {
+            usages.merge(phase, usage, PhaseUsage::add);
+        }
+    }
+
+    /**
+     * Run the given task in the background on the threads of this executor, e.g.
+     * to process a batch of elements while the next one is received. The task may
+     * itself run phases (see {@link #forEach(String, int, RangeTask)}).
+     * 
+     * @param task Task to run.
+     * 
+     * @return Result of the task, available once it is done.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    /**
+     * @return Usage of all the phases run on this executor, in the order they were
+     *         first run. Phases run several times (e.g., once per batch) are
+     *         aggregated.
+     */
+    public List<PhaseUsage> getPhaseUsages() {
+        synchronized (usages) {
+            return new ArrayList<>(usages.values());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+}
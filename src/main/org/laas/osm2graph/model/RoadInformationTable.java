@@ -0,0 +1,147 @@
+package org.laas.osm2graph.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.laas.osm2graph.graph.RoadInformation;
+
+/**
+ * Concurrent intern table of road informations, giving each distinct road
+ * information a dense ID (0, 1, 2, ...) when it is first added.
+ * 
+ * Lookups of existing road informations do not lock, and new road informations
+ * only lock the bin of the underlying concurrent map they fall in, so equal road
+ * informations added concurrently always get the same ID.
+ */
+public class RoadInformationTable {
+
+    // Maximum number of road informations (IDs are written on 24 bits).
+    public static final int MAXIMUM_SIZE = 1 << 24;
+
+    // Size of the chunks of the ID -> road information array.
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    // Road information -> ID.
+    private final ConcurrentHashMap<RoadInformation, Integer> ids;
+
+    // ID -> road information, chunks are allocated when needed.
+    private final AtomicReferenceArray<RoadInformation[]> chunks;
+
+    // Number of road informations.
+    private final AtomicInteger size;
+
+    public RoadInformationTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.chunks = new AtomicReferenceArray<>(MAXIMUM_SIZE >>> CHUNK_BITS);
+        this.size = new AtomicInteger(0);
+    }
+
+    /**
+     * Find the ID of the given road information, adding it to this table if no
+     * equal road information exists. This method can be called concurrently.
+     * 
+     * @param info
+     * 
+     * @return ID of the given road information.
+     */
+    public int intern(RoadInformation info) {
+        Integer id = ids.get(info);
+        if (id == null) {
+            id = ids.computeIfAbsent(info, this::add);
+        }
+        return id;
+    }
+
+    /**
+     * Add a road information that is not in this table yet, called by the
+     * underlying map while the bin of the road information is locked.
+     * 
+     * @param info
+     * 
+     * @return ID of the added road information.
+     */
+    private Integer add(RoadInformation info) {
+        int id = size.getAndIncrement();
+        if (id >= MAXIMUM_SIZE) {
+            throw new IllegalStateException(
+                    "too many distinct road informations, maximum is " + MAXIMUM_SIZE + ".");
+        }
+        int index = id >>> CHUNK_BITS;
+        RoadInformation[] chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new RoadInformation[CHUNK_MASK + 1]);
+            chunk = chunks.get(index);
+        }
+        chunk[id & CHUNK_MASK] = info;
+        return id;
+    }
+
+    /**
+     * Change the IDs of the road informations of this table. This method must not
+     * be called concurrently with the other methods.
+     * 
+     * @param ids New ID of each road information, indexed by its current ID, the
+     *        new IDs being a permutation of the current ones.
+     */
+    public void renumber(int[] ids) {
+        int n = size();
+        RoadInformation[] infos = new RoadInformation[n];
+        for (int id = 0; id < n; ++id) {
+            infos[ids[id]] = get(id);
+        }
+        for (int id = 0; id < n; ++id) {
+            chunks.get(id >>> CHUNK_BITS)[id & CHUNK_MASK] = infos[id];
+            this.ids.put(infos[id], id);
+        }
+    }
+
+    /**
+     * Retrieve a road information from its ID. The road information of an ID
+     * returned by {@link #intern(RoadInformation)} is always visible to the thread
+     * that called it, other threads should only call this method once interning
+     * is complete.
+     * 
+     * @param id
+     * 
+     * @return Road information with the given ID.
+     */
+    public RoadInformation get(int id) {
+        if (id < 0 || id >= size()) {
+            throw new IndexOutOfBoundsException("no road information with ID " + id + ".");
+        }
+        return chunks.get(id >>> CHUNK_BITS)[id & CHUNK_MASK];
+    }
+
+    /**
+     * @return Number of road informations in this table.
+     */
+    public int size() {
+        return Math.min(size.get(), MAXIMUM_SIZE);
+    }
+
+    /**
+     * @return List view of this table, the index of a road information in the list
+     *         being its ID.
+     */
+    public List<RoadInformation> asList() {
+        class TableList extends AbstractList<RoadInformation> implements RandomAccess {
+
+            @Override
+            public RoadInformation get(int index) {
+                return RoadInformationTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return RoadInformationTable.this.size();
+            }
+        }
+        return new TableList();
+    }
+
+}
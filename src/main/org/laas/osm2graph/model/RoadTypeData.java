@@ -38,19 +38,31 @@ public class RoadTypeData {
      * @return Road type associated to the given way, or null if none was found.
      */
     public static RoadType getRoadType(Map<String, String> tags) {
+        return getRoadType(tags.get("natural"), tags.get("junction"), tags.get("highway"));
+    }
+
+    /**
+     * Find the road type associated with the given tag values, see
+     * {@link #getRoadType(Map)}.
+     * 
+     * @param natural Value of the natural tag, or null.
+     * @param junction Value of the junction tag, or null.
+     * @param highway Value of the highway tag, or null.
+     * 
+     * @return Road type associated to the given values, or null if none was found.
+     */
+    public static RoadType getRoadType(String natural, String junction, String highway) {
 
         // natural=coastline -> Coastline
-        if (tags.getOrDefault("natural", "").toLowerCase().equals("coastline")) {
+        if (natural != null && TagClassifier.equalsLowerCase(natural, "coastline")) {
             return RoadType.COASTLINE;
         }
 
         // junction=roundabout -> Roundabout
-        if (tags.getOrDefault("junction", "").toLowerCase().equals("roundabout")) {
+        if (junction != null && TagClassifier.equalsLowerCase(junction, "roundabout")) {
             return RoadType.ROUNDABOUT;
         }
 
-        String highway = tags.getOrDefault("highway", null);
-
         if (highway == null) {
             return RoadType.UNCLASSIFIED;
         }
@@ -0,0 +1,329 @@
+package org.laas.osm2graph.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.laas.osm2graph.model.ParallelExecutor.PhaseUsage;
+
+/**
+ * Report of a conversion, made of the coarse stages of the conversion (node
+ * ingest, way ingest, junction detection, conversion, ...) and of the parallel
+ * phases run on the executor.
+ *
+ * For each stage, the wall time, the CPU time of the process, the number of
+ * bytes allocated by all the threads, the peak heap usage and the number of
+ * items processed are recorded. CPU time and allocated bytes rely on the
+ * extensions of the HotSpot management beans, and are reported as -1 when they
+ * are not available. Bytes allocated by threads that terminate during a stage are
+ * not counted, and the peak heap usage is the sum of the peak usages of the heap
+ * pools, which is an upper bound of the actual peak.
+ *
+ * Stages can be nested (e.g. descriptor collection while writing) but must be
+ * started and closed from a single thread at a time.
+ */
+public class RunReport {
+
+    /**
+     * A stage of the conversion, closed when the stage ends.
+     */
+    public class Stage implements AutoCloseable {
+
+        // Name of the stage.
+        private final String name;
+
+        // Number of items processed.
+        private long items;
+
+        // Start and end values of the counters.
+        private final long startWallTime, startCpuTime, startAllocatedBytes;
+        private long wallTime, cpuTime, allocatedBytes;
+
+        // Peak heap usage during this stage.
+        private long peakHeap;
+
+        // True when the stage is closed.
+        private boolean closed;
+
+        private Stage(String name) {
+            this.name = name;
+            this.startWallTime = System.nanoTime();
+            this.startCpuTime = processCpuTime();
+            this.startAllocatedBytes = allocatedBytes();
+        }
+
+        /**
+         * Add the given number of items to the items processed by this stage.
+         *
+         * @param items
+         */
+        public void addItems(long items) {
+            this.items += items;
+        }
+
+        /**
+         * @return Name of this stage.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of items processed during this stage.
+         */
+        public long getItems() {
+            return items;
+        }
+
+        /**
+         * @return Wall time of this stage, in nanoseconds.
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return CPU time of the process during this stage, in nanoseconds, or -1
+         *         if not available.
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * @return Number of bytes allocated during this stage, or -1 if not
+         *         available.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return Peak heap usage during this stage, in bytes.
+         */
+        public long getPeakHeap() {
+            return peakHeap;
+        }
+
+        /**
+         * @return Number of items processed per second during this stage.
+         */
+        public double getItemsPerSecond() {
+            return wallTime == 0 ? 0 : items * 1e9 / wallTime;
+        }
+
+        @Override
+        public void close() {
+            synchronized (RunReport.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                wallTime = System.nanoTime() - startWallTime;
+                long cpu = processCpuTime();
+                cpuTime = cpu < 0 || startCpuTime < 0 ? -1 : cpu - startCpuTime;
+                long allocated = allocatedBytes();
+                allocatedBytes = allocated < 0 || startAllocatedBytes < 0 ? -1
+                        : allocated - startAllocatedBytes;
+                updatePeakHeap();
+                running.remove(this);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %d items in %d ms (%.0f items/s), %d ms CPU, %.2f MB allocated, "
+                            + "%.2f MB peak heap",
+                    name, items, TimeUnit.NANOSECONDS.toMillis(wallTime), getItemsPerSecond(),
+                    TimeUnit.NANOSECONDS.toMillis(cpuTime), allocatedBytes / Math.pow(1024, 2),
+                    peakHeap / Math.pow(1024, 2));
+        }
+    }
+
+    // Beans used to measure the stages.
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    private static final OperatingSystemMXBean OS_BEAN = ManagementFactory
+            .getOperatingSystemMXBean();
+
+    // Start of the run.
+    private final Instant start = Instant.now();
+
+    // All the stages, in order of start, and the stages currently running.
+    private final List<Stage> stages = new ArrayList<>(), running = new ArrayList<>();
+
+    /**
+     * Start a new stage, which ends when closed.
+     *
+     * @param name Name of the stage.
+     *
+     * @return The new stage.
+     */
+    public synchronized Stage start(String name) {
+        updatePeakHeap();
+        Stage stage = new Stage(name);
+        stages.add(stage);
+        running.add(stage);
+        return stage;
+    }
+
+    /**
+     * @return Name of the most recently started stage that is still running, or
+     *         null if no stage is running.
+     */
+    public synchronized String getCurrentStage() {
+        return running.isEmpty() ? null : running.get(running.size() - 1).getName();
+    }
+
+    /**
+     * @return Stages of this report, in order of start.
+     */
+    public synchronized List<Stage> getStages() {
+        return Collections.unmodifiableList(new ArrayList<>(stages));
+    }
+
+    /**
+     * Update the peak heap usage of the running stages with the current peak
+     * usage of the heap pools, and reset the peak usage of the pools.
+     */
+    private void updatePeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        for (Stage stage: running) {
+            stage.peakHeap = Math.max(stage.peakHeap, peak);
+        }
+    }
+
+    /**
+     * @return CPU time of the process, in nanoseconds, or -1 if not available.
+     */
+    private static long processCpuTime() {
+        if (OS_BEAN instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) OS_BEAN).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of bytes allocated by all the live threads, or -1 if not
+     *         available.
+     */
+    private static long allocatedBytes() {
+        if (!(THREAD_BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated: bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write this report as a JSON document to the given file.
+     *
+     * @param file File to write.
+     * @param configuration Configuration of the run.
+     * @param phases Parallel phases run on the executor.
+     * @param caches Caches used during the run.
+     *
+     * @throws IOException
+     */
+    public void writeJson(File file, OSM2GraphConfiguration configuration,
+            List<PhaseUsage> phases, List<MemoCache<?, ?>> caches) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"start\": " + quote(start.toString()) + ",\n");
+            out.write("  \"output\": "
+                    + quote(configuration.getOutputFile().getAbsolutePath()) + ",\n");
+            out.write("  \"threads\": " + configuration.getThreads() + ",\n");
+            out.write("  \"stages\": [");
+            List<Stage> stages = getStages();
+            for (int i = 0; i < stages.size(); ++i) {
+                Stage stage = stages.get(i);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write(String.format(Locale.ROOT,
+                        "    {\"name\": %s, \"items\": %d, \"wallTimeNanos\": %d, "
+                                + "\"cpuTimeNanos\": %d, \"allocatedBytes\": %d, "
+                                + "\"peakHeapBytes\": %d, \"itemsPerSecond\": %.1f}",
+                        quote(stage.getName()), stage.getItems(), stage.getWallTime(),
+                        stage.getCpuTime(), stage.getAllocatedBytes(), stage.getPeakHeap(),
+                        stage.getItemsPerSecond()));
+            }
+            out.write("\n  ],\n");
+            out.write("  \"phases\": [");
+            for (int i = 0; i < phases.size(); ++i) {
+                PhaseUsage phase = phases.get(i);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write(String.format(Locale.ROOT,
+                        "    {\"name\": %s, \"items\": %d, \"wallTimeNanos\": %d, "
+                                + "\"cpuTimeNanos\": %d}",
+                        quote(phase.getName()), phase.getItems(), phase.getWallTime(),
+                        phase.getCpuTime()));
+            }
+            out.write("\n  ],\n");
+            out.write("  \"caches\": [");
+            for (int i = 0; i < caches.size(); ++i) {
+                MemoCache<?, ?> cache = caches.get(i);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write(String.format(Locale.ROOT,
+                        "    {\"name\": %s, \"hits\": %d, \"misses\": %d, \"entries\": %d}",
+                        quote(cache.getName()), cache.getHits(), cache.getMisses(),
+                        cache.size()));
+            }
+            out.write("\n  ]\n");
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * @param value
+     *
+     * @return The given value as a JSON string.
+     */
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+}
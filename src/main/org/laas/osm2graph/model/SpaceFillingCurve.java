@@ -0,0 +1,91 @@
+package org.laas.osm2graph.model;
+
+/**
+ * Space-filling curves used to number vertices so that vertices close to each
+ * other get close indices.
+ * 
+ * Curves are computed on a 2^16 x 2^16 grid, coordinates being scaled to the
+ * bounding box of the vertices beforehand.
+ */
+public enum SpaceFillingCurve {
+
+    /**
+     * Z-order curve, obtained by interleaving the bits of the coordinates (cheap
+     * but with large jumps between some consecutive cells).
+     */
+    MORTON {
+        @Override
+        public long index(int x, int y) {
+            return spread(x) | (spread(y) << 1);
+        }
+    },
+
+    /**
+     * Hilbert curve, consecutive cells are always adjacent.
+     */
+    HILBERT {
+        @Override
+        public long index(int x, int y) {
+            long index = 0;
+            for (int s = 1 << (ORDER - 1); s > 0; s >>>= 1) {
+                int rx = (x & s) != 0 ? 1 : 0, ry = (y & s) != 0 ? 1 : 0;
+                index += (long) s * s * ((3 * rx) ^ ry);
+                // Rotate the quadrant.
+                if (ry == 0) {
+                    if (rx == 1) {
+                        x = s - 1 - x;
+                        y = s - 1 - y;
+                    }
+                    int t = x;
+                    x = y;
+                    y = t;
+                }
+                x &= s - 1;
+                y &= s - 1;
+            }
+            return index;
+        }
+    };
+
+    /**
+     * Number of bits of each coordinate.
+     */
+    public static final int ORDER = 16;
+
+    /**
+     * @param x, y Coordinates of a cell, between 0 and 2^{@link #ORDER} - 1.
+     * 
+     * @return Position of the cell along this curve, between 0 and 2^(2 *
+     *         {@link #ORDER}) - 1.
+     */
+    public abstract long index(int x, int y);
+
+    /**
+     * @param name Name of a curve (case-insensitive).
+     * 
+     * @return The curve with the given name.
+     * 
+     * @throws IllegalArgumentException if there is no curve with the given name.
+     */
+    public static SpaceFillingCurve fromName(String name) {
+        for (SpaceFillingCurve curve: values()) {
+            if (curve.name().equalsIgnoreCase(name)) {
+                return curve;
+            }
+        }
+        throw new IllegalArgumentException("unrecognized vertex order: " + name);
+    }
+
+    /**
+     * @return The given 16-bit value with a zero bit inserted before each bit.
+     */
+    private static long spread(int value) {
+        long bits = value & 0xffffL;
+        bits = (bits | (bits << 8)) & 0x00ff00ffL;
+        bits = (bits | (bits << 4)) & 0x0f0f0f0fL;
+        bits = (bits | (bits << 2)) & 0x33333333L;
+        bits = (bits | (bits << 1)) & 0x55555555L;
+        return bits;
+    }
+
+}
@@ -25,6 +25,18 @@ public class SpeedData {
     // Default bicycle speed
     private final static int DEFAULT_BICYCLE_SPEED = 14;
 
+    // Codes of parsed "maxspeed" values whose speed is the default speed of the
+    // road type, possibly converted from knots or mph.
+    private final static long DEFAULT_SPEED = Long.MIN_VALUE,
+            DEFAULT_SPEED_KNOTS = DEFAULT_SPEED + 1, DEFAULT_SPEED_MPH = DEFAULT_SPEED + 2;
+
+    // Maximum number of cached "maxspeed" values.
+    private final static int CACHE_CAPACITY = 4096;
+
+    // Cache of parsed "maxspeed" values.
+    private final static MemoCache<String, Long> CACHE = new MemoCache<>("maxspeed",
+            CACHE_CAPACITY);
+
     /**
      * Try to infer the maximum speed from the given string (which should come from
      * a "maxspeed" tag), and use the given road type as a fallback.
@@ -35,46 +47,117 @@ public class SpeedData {
      * @return Maximum speed in kmph.
      */
     public static int getMaximumSpeed(Map<String, String> tags, RoadType roadtype) {
-        String maxspeed = tags.getOrDefault("maxspeed", null);
+        return getMaximumSpeed(tags.get("maxspeed"), roadtype);
+    }
+
+    /**
+     * Try to infer the maximum speed from the given string (which should come from
+     * a "maxspeed" tag), and use the given road type as a fallback.
+     * 
+     * @param maxspeed Value of a "maxspeed" tag, or null.
+     * @param roadtype Road type to infer speed if "maxspeed" was not sufficient.
+     * 
+     * @return Maximum speed in kmph.
+     */
+    public static int getMaximumSpeed(String maxspeed, RoadType roadtype) {
         final int defaultSpeed = SpeedData.maxSpeedForRoadType(roadtype, DEFAULT_MAXIMUM_SPEED);
         if (maxspeed == null) {
             return defaultSpeed;
         }
-        maxspeed = maxspeed.toLowerCase();
-        if (maxspeed.equals("none") || maxspeed.equals("signal")) {
+        long speed = CACHE.get(maxspeed, SpeedData::parseMaximumSpeed);
+        if (speed == DEFAULT_SPEED) {
             return defaultSpeed;
         }
-        if (maxspeed.equals("walk")) {
-            return DEFAULT_WALK_SPEED;
+        if (speed == DEFAULT_SPEED_KNOTS) {
+            return (int) (defaultSpeed * 1.852);
         }
-        int speed = DEFAULT_MAXIMUM_SPEED;
-        if (maxspeed.contains(":")) {
-            // Implicit speed
-            speed = SpeedData.speedForCode(maxspeed, defaultSpeed);
+        if (speed == DEFAULT_SPEED_MPH) {
+            return (int) (defaultSpeed * 1.609);
         }
-        else {
-            // Numeric speed
-            String[] parts = maxspeed.split(" ");
-            try {
-                speed = Integer.valueOf(parts[0]);
-            }
-            catch (NumberFormatException exception) {
-                speed = defaultSpeed;
-            }
+        return (int) speed;
+    }
 
-            if (parts.length == 1) {
-                return speed;
-            }
-            String unit = parts[1];
-            if (unit.equals("knots")) {
+    /**
+     * @return The cache of parsed "maxspeed" values.
+     */
+    public static MemoCache<String, Long> getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Parse the given "maxspeed" value, independently of the road type.
+     * 
+     * @param maxspeed Value of a "maxspeed" tag.
+     * 
+     * @return Maximum speed in kmph, or one of {@link #DEFAULT_SPEED},
+     *         {@link #DEFAULT_SPEED_KNOTS} or {@link #DEFAULT_SPEED_MPH} if the
+     *         speed depends on the road type.
+     */
+    private static long parseMaximumSpeed(String maxspeed) {
+        if (TagClassifier.equalsLowerCase(maxspeed, "none")
+                || TagClassifier.equalsLowerCase(maxspeed, "signal")) {
+            return DEFAULT_SPEED;
+        }
+        if (TagClassifier.equalsLowerCase(maxspeed, "walk")) {
+            return DEFAULT_WALK_SPEED;
+        }
+
+        // Fast path for the usual "50", "30 mph" or "20 knots" values.
+        int length = maxspeed.length(), digits = 0, speed = 0;
+        while (digits < length && digits < 9 && maxspeed.charAt(digits) >= '0'
+                && maxspeed.charAt(digits) <= '9') {
+            speed = 10 * speed + (maxspeed.charAt(digits) - '0');
+            digits += 1;
+        }
+        if (digits > 0 && digits == length) {
+            return speed;
+        }
+        if (digits > 0 && maxspeed.charAt(digits) == ' '
+                && maxspeed.indexOf(' ', digits + 1) < 0) {
+            if (TagClassifier.equalsLowerCase(maxspeed, digits + 1, "knots")) {
                 return (int) (speed * 1.852);
             }
-            if (unit.equals("mph")) {
+            if (TagClassifier.equalsLowerCase(maxspeed, digits + 1, "mph")) {
                 return (int) (speed * 1.609);
             }
-            return speed;
         }
-        return speed;
+
+        return parseLowerCaseMaximumSpeed(maxspeed.toLowerCase());
+    }
+
+    /**
+     * Parse a lower-case "maxspeed" value that is not handled by the fast path of
+     * {@link #parseMaximumSpeed(String)}.
+     * 
+     * @param maxspeed Lower-case value of a "maxspeed" tag.
+     * 
+     * @return Maximum speed in kmph, or one of the default speed codes.
+     */
+    private static long parseLowerCaseMaximumSpeed(String maxspeed) {
+        if (maxspeed.contains(":")) {
+            // Implicit speed
+            Integer speed = SPEED_FOR_COUNTRIES.get(maxspeed);
+            return speed == null ? DEFAULT_SPEED : speed;
+        }
+
+        // Numeric speed
+        String[] parts = maxspeed.split(" ");
+        Integer speed;
+        try {
+            speed = Integer.valueOf(parts[0]);
+        }
+        catch (NumberFormatException exception) {
+            speed = null;
+        }
+
+        String unit = parts.length == 1 ? null : parts[1];
+        if ("knots".equals(unit)) {
+            return speed == null ? DEFAULT_SPEED_KNOTS : (int) (speed * 1.852);
+        }
+        if ("mph".equals(unit)) {
+            return speed == null ? DEFAULT_SPEED_MPH : (int) (speed * 1.609);
+        }
+        return speed == null ? DEFAULT_SPEED : speed;
     }
 
     /**
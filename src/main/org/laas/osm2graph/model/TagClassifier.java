@@ -0,0 +1,238 @@
+package org.laas.osm2graph.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.laas.osm2graph.graph.RoadInformation.RoadType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+
+/**
+ * Classifier extracting the road type, maximum speed, access and one way
+ * information of a way in a single pass over its tags, without building a map of
+ * the tags.
+ * 
+ * Keys are dispatched through a perfect hash table built once for the useful
+ * keys, and values are compared without lower-casing them when they are ASCII.
+ * The results are the same as the ones of {@link RoadTypeData}, {@link SpeedData}
+ * and {@link AccessData} on the map of the useful tags.
+ * 
+ * Instances hold the values of the last classified way, and thus must not be
+ * shared between threads.
+ */
+public class TagClassifier {
+
+    // Indices of the useful keys (access keys follow, in the order of
+    // AccessData.USEFUL_TAGS).
+    private static final int NAME = 0, HIGHWAY = 1, NATURAL = 2, JUNCTION = 3, MAXSPEED = 4,
+            ONEWAY = 5, ACCESS = 6;
+
+    // Useful keys, by index.
+    private static final String[] KEYS;
+
+    // Perfect hash table of the useful keys: slot -> index of the key, or -1.
+    private static final int[] TABLE;
+    private static final int TABLE_MASK;
+
+    static {
+        List<String> keys = new ArrayList<>(
+                Arrays.asList("name", "highway", "natural", "junction", "maxspeed", "oneway"));
+        keys.addAll(AccessData.USEFUL_TAGS);
+        KEYS = keys.toArray(new String[0]);
+
+        // Find the smallest table without collision.
+        int size = Integer.highestOneBit(KEYS.length) << 1;
+        int[] table;
+        while ((table = createTable(size)) == null) {
+            size <<= 1;
+        }
+        TABLE = table;
+        TABLE_MASK = size - 1;
+    }
+
+    /**
+     * @param key
+     * 
+     * @return Slot of the given key in a table with size - 1 as mask.
+     */
+    private static int slot(String key, int mask) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @param size Size of the table, a power of two.
+     * 
+     * @return A table of the given size mapping each useful key to its index, or
+     *         null if two keys fall in the same slot.
+     */
+    private static int[] createTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < KEYS.length; ++i) {
+            int slot = slot(KEYS[i], size - 1);
+            if (table[slot] != -1) {
+                return null;
+            }
+            table[slot] = i;
+        }
+        return table;
+    }
+
+    /**
+     * @param key
+     * 
+     * @return Index of the given key among the useful keys, or -1 if the key is not
+     *         useful.
+     */
+    public static int getKeyIndex(String key) {
+        int index = TABLE[slot(key, TABLE_MASK)];
+        if (index < 0) {
+            return -1;
+        }
+        String candidate = KEYS[index];
+        return candidate == key || candidate.equals(key) ? index : -1;
+    }
+
+    /**
+     * @return true if lower-casing ASCII strings with the default locale does not
+     *         match ASCII lower-casing (the upper case I in Turkish and Azeri).
+     */
+    private static boolean isTurkic() {
+        String language = Locale.getDefault().getLanguage();
+        return language.equals("tr") || language.equals("az");
+    }
+
+    /**
+     * Check if value.toLowerCase() equals the given lower-case ASCII string,
+     * without creating the lower-case string unless value is not ASCII.
+     * 
+     * @param value
+     * @param lowerCase Lower-case ASCII string.
+     * 
+     * @return true if value.toLowerCase().equals(lowerCase).
+     */
+    public static boolean equalsLowerCase(String value, String lowerCase) {
+        return equalsLowerCase(value, 0, lowerCase);
+    }
+
+    /**
+     * Check if value.substring(offset).toLowerCase() equals the given lower-case
+     * ASCII string, without creating the lower-case string unless value is not
+     * ASCII.
+     * 
+     * @param value
+     * @param offset Offset of the first character to compare in value.
+     * @param lowerCase Lower-case ASCII string.
+     * 
+     * @return true if value.substring(offset).toLowerCase().equals(lowerCase).
+     */
+    public static boolean equalsLowerCase(String value, int offset, String lowerCase) {
+        int length = value.length() - offset;
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(offset + i);
+            if (c >= 0x80 || (c == 'I' && isTurkic())) {
+                return value.substring(offset).toLowerCase().equals(lowerCase);
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            // The lower-case version of the prefix (ASCII so far) already differs.
+            if (i >= lowerCase.length() || c != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return length == lowerCase.length();
+    }
+
+    // Values of the useful tags of the last way.
+    private final String[] values = new String[KEYS.length];
+    private final String[] accessValues = new String[KEYS.length - ACCESS];
+
+    // Results for the last way.
+    private RoadType roadType;
+    private int maximumSpeed;
+    private long access;
+    private boolean oneWay;
+    private String name;
+
+    /**
+     * Classify a way from its tags. If a key appears multiple times, its last value
+     * is used.
+     * 
+     * @param tags Tags of the way.
+     */
+    public void classify(Iterable<Tag> tags) {
+        Arrays.fill(values, null);
+        for (Tag tag: tags) {
+            int index = getKeyIndex(tag.getKey());
+            if (index >= 0) {
+                values[index] = tag.getValue();
+            }
+        }
+        System.arraycopy(values, ACCESS, accessValues, 0, accessValues.length);
+
+        this.roadType = RoadTypeData.getRoadType(values[NATURAL], values[JUNCTION],
+                values[HIGHWAY]);
+        this.maximumSpeed = SpeedData.getMaximumSpeed(values[MAXSPEED], roadType);
+        this.oneWay = getOneWay(values[ONEWAY], roadType);
+        this.access = AccessData.getAccessType(accessValues, roadType);
+        this.name = values[NAME] == null ? "" : values[NAME];
+    }
+
+    /**
+     * Retrieve one way information from the given tag value. If sOneWay is null,
+     * retrieve it from roadType.
+     * 
+     * @param sOneWay Value of the oneway tag, or null.
+     * @param roadType
+     * 
+     * @return true if the road is one way.
+     */
+    public static boolean getOneWay(String sOneWay, RoadType roadType) {
+        if (sOneWay != null) {
+            return equalsLowerCase(sOneWay, "yes") || equalsLowerCase(sOneWay, "true")
+                    || equalsLowerCase(sOneWay, "1");
+        }
+        return roadType == RoadType.MOTORWAY || roadType == RoadType.MOTORWAY_LINK
+                || roadType == RoadType.TRUNK_LINK || roadType == RoadType.PRIMARY_LINK
+                || roadType == RoadType.ROUNDABOUT;
+    }
+
+    /**
+     * @return Road type of the last way.
+     */
+    public RoadType getRoadType() {
+        return roadType;
+    }
+
+    /**
+     * @return Maximum speed of the last way, in kmph.
+     */
+    public int getMaximumSpeed() {
+        return maximumSpeed;
+    }
+
+    /**
+     * @return Access of the last way.
+     */
+    public long getAccess() {
+        return access;
+    }
+
+    /**
+     * @return true if the last way is one way.
+     */
+    public boolean isOneWay() {
+        return oneWay;
+    }
+
+    /**
+     * @return Name of the last way, or an empty string.
+     */
+    public String getName() {
+        return name;
+    }
+
+}
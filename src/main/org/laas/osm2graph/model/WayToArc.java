@@ -1,21 +1,30 @@
 package org.laas.osm2graph.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
+import org.laas.osm2graph.distance.DistanceEngine;
 import org.laas.osm2graph.graph.Arc;
+import org.laas.osm2graph.graph.CompactGraph;
 import org.laas.osm2graph.graph.Point;
+import org.laas.osm2graph.graph.PolylineSimplifier;
 import org.laas.osm2graph.graph.RoadInformation;
 import org.laas.osm2graph.graph.RoadInformation.RoadType;
 import org.laas.osm2graph.graph.Vertex;
+import org.laas.osm2graph.metrics.ProgressMetrics;
+import org.laas.osm2graph.model.RunReport.Stage;
+import org.laas.osm2graph.store.NodeStore;
+import org.laas.osm2graph.writers.BinaryGraphWriterInsa2018;
+import org.laas.osm2graph.writers.StreamingGraphWriter;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
@@ -25,85 +34,124 @@ public class WayToArc {
     // Logger
     private static final Logger LOGGER = Logger.getLogger(WayToArc.class.getName());
 
-    private class WayToArcProcessor implements Runnable {
-
-        // List of ways to process
-        private final List<Way> ways;
-
-        // first / last index
-        private final int first, last;
-        private int nProcessed;
-
-        // List of arcs processed
-        private final List<Arc> arcs;
+    /**
+     * Receiver of the arcs created by the conversion. Arcs are added concurrently
+     * from multiple threads, in no particular order, but each arc comes with its
+     * index in the conversion order (by way, then by position in the way), which
+     * does not depend on the scheduling of the threads.
+     */
+    public interface ArcSink {
 
         /**
-         * Create a new WayToArcProcessor that should convert ways starting at first up
-         * to last (not included).
+         * Add an arc.
          * 
-         * @param ways
-         * @param first
-         * @param last
+         * @param arc Index of the arc in the conversion order.
+         * @param point Index of the first intermediate point of the arc in the
+         *        conversion order, counting all the points of the previous arcs
+         *        before simplification.
+         * @param origin Index of the origin vertex.
+         * @param destination Index of the destination vertex.
+         * @param length Length of the arc, in meters.
+         * @param info Index of the road information of the arc.
+         * @param longitudes Longitudes of the points of the arc.
+         * @param latitudes Latitudes of the points of the arc.
+         * @param from Index of the first intermediate point in longitudes and
+         *        latitudes (the origin being at from - 1).
+         * @param to Index after the last intermediate point (the destination being
+         *        at to).
          */
-        public WayToArcProcessor(List<Way> ways, int first, int last) {
-            this.ways = ways;
-            this.first = first;
-            this.last = last;
-            this.nProcessed = 0;
-            this.arcs = new ArrayList<>(last - first);
-        }
+        public void addArc(long arc, long point, int origin, int destination, double length,
+                int info, double[] longitudes, double[] latitudes, int from, int to);
+
+    }
+
+    /**
+     * Index of the first arc and of the first intermediate point of each way in
+     * the conversion order, with one more entry holding the total numbers of arcs
+     * and points.
+     */
+    protected static class WayOffsets {
+
+        // First arc and first intermediate point of each way.
+        final long[] arcs, points;
 
         /**
-         * @return The list of converted arcs.
+         * @param size Number of ways.
          */
-        public synchronized List<Arc> getArcs() {
-            return this.arcs;
+        WayOffsets(int size) {
+            this.arcs = new long[size + 1];
+            this.points = new long[size + 1];
         }
+    }
+
+    /**
+     * Reusable buffer of coordinates, one per chunk of ways.
+     */
+    protected static class PointBuffer {
+
+        // Coordinates.
+        private double[] longitudes = new double[64], latitudes = new double[64];
+
+        // Simplifier of the polylines of arcs, or null if arcs are not simplified.
+        private PolylineSimplifier simplifier;
 
         /**
-         * @return Number of ways that have been processed.
+         * Ensure this buffer can hold at least the given number of points.
+         * 
+         * @param size
          */
-        public synchronized int getNumberOfWaysProcessed() {
-            return this.nProcessed;
-        }
-
-        @Override
-        public void run() {
-            for (int i = first; i < last; ++i) {
-                List<Arc> sarcs = convert(this.ways.get(i));
-                arcs.addAll(sarcs);
-                synchronized (this) {
-                    this.nProcessed += 1;
-                }
+        protected void ensureCapacity(int size) {
+            if (longitudes.length < size) {
+                longitudes = new double[size];
+                latitudes = new double[size];
             }
         }
+    }
+
+    // Classifier of the tags of ways, one per thread.
+    private final ThreadLocal<TagClassifier> classifiers = ThreadLocal
+            .withInitial(TagClassifier::new);
 
-    };
+    // Coordinates of OSM nodes.
+    protected final NodeStore nodes;
 
-    // Tags to keep:
-    private final static List<String> USEFUL_TAGS = Arrays
-            .asList(new String[]{ "name", "highway", "natural", "junction", "maxspeed", "oneway" });
+    // Vertices, by dense index (set by createVertices).
+    protected Vertex[] vertices;
 
-    // Mapping ID (OSM) -> Vertex.
-    protected final Map<Long, Vertex> vertices;
+    // Number of vertices (set by findVertex).
+    protected int numberOfVertices;
 
-    // Set of vertex IDs.
-    protected final Set<Long> nodeMarks;
+    // Number of arcs created.
+    protected final LongAdder numberOfArcs;
 
-    // Set of road informations.
-    protected final Map<RoadInformation, RoadInformation> roadinfos;
+    // Marks indicating which nodes are vertices (set by findVertex).
+    protected NodeMarks nodeMarks;
+
+    // Road informations, interned concurrently.
+    protected final RoadInformationTable roadinfos;
 
     // Configuration.
     protected final OSM2GraphConfiguration configuration;
 
     /**
-     * @param vertices
+     * @param nodes Store containing the coordinates of the OSM nodes.
+     * @param configuration
      */
-    public WayToArc(Map<Long, Vertex> vertices, OSM2GraphConfiguration configuration) {
-        this.vertices = vertices;
-        this.roadinfos = Collections.synchronizedMap(new HashMap<>());
+    public WayToArc(NodeStore nodes, OSM2GraphConfiguration configuration) {
+        this.nodes = nodes;
+        this.vertices = null;
+        this.numberOfVertices = -1;
+        this.numberOfArcs = new LongAdder();
+        this.roadinfos = new RoadInformationTable();
         this.configuration = configuration;
-        this.nodeMarks = new HashSet<>(vertices.size());
+        this.nodeMarks = null;
+    }
+
+    /**
+     * @return Number of arcs created by the conversion.
+     */
+    public long getNumberOfArcs() {
+        return this.numberOfArcs.sum();
     }
 
     /**
@@ -116,17 +164,7 @@ public class WayToArc {
      * @return
      */
     protected boolean getOneWay(Map<String, String> tags, RoadType roadType) {
-        String sOneWay = tags.getOrDefault("oneway", null);
-        if (sOneWay != null) {
-            sOneWay = sOneWay.toLowerCase();
-            return sOneWay.equals("yes") || sOneWay.equals("true") || sOneWay.equals("1");
-        }
-        if (roadType != null && (roadType == RoadType.MOTORWAY || roadType == RoadType.MOTORWAY_LINK
-                || roadType == RoadType.TRUNK_LINK || roadType == RoadType.PRIMARY_LINK
-                || roadType == RoadType.ROUNDABOUT)) {
-            return true;
-        }
-        return false;
+        return TagClassifier.getOneWay(tags.get("oneway"), roadType);
     }
 
     /**
@@ -135,8 +173,7 @@ public class WayToArc {
      * @return true if this tag is useful, false otherwize.
      */
     protected boolean isUsefulTag(Tag tag) {
-        return USEFUL_TAGS.contains((String) tag.getKey())
-                || AccessData.USEFUL_TAGS.contains((String) tag.getKey());
+        return TagClassifier.getKeyIndex(tag.getKey()) >= 0;
     }
 
     /**
@@ -148,141 +185,499 @@ public class WayToArc {
      * @return Existing or new RoadInformation for the given way.
      */
     protected RoadInformation getOrCreateRoadInformation(Way way) {
+        return this.roadinfos.get(getOrCreateRoadInformationIndex(way));
+    }
 
-        Map<String, String> tags = new HashMap<>();
+    /**
+     * Try to find a matching road information inside roadinfos. If none is found, a
+     * new one is created.
+     * 
+     * @param way
+     * 
+     * @return Index of the existing or new RoadInformation for the given way.
+     */
+    protected int getOrCreateRoadInformationIndex(Way way) {
 
-        for (Tag tag: way.getTags()) {
-            if (isUsefulTag(tag)) {
-                tags.put(tag.getKey(), tag.getValue());
-            }
+        TagClassifier classifier = classifiers.get();
+        classifier.classify(way.getTags());
+
+        RoadInformation roadinfo = new RoadInformation(classifier.getRoadType(),
+                classifier.getAccess(), classifier.isOneWay(), classifier.getMaximumSpeed(),
+                classifier.getName());
+        return this.roadinfos.intern(roadinfo);
+    }
+
+    /**
+     * Convert the given way to its compact form.
+     * 
+     * @param way Way to convert.
+     * 
+     * @return Compact form of the given way, or null if the way has less than two
+     *         nodes (and thus cannot create any arc).
+     */
+    public CompactWay compact(Way way) {
+        List<WayNode> wayNodes = way.getWayNodes();
+        if (wayNodes.size() < 2) {
+            return null;
         }
+        long[] ids = new long[wayNodes.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = wayNodes.get(i).getNodeId();
+        }
+        return new CompactWay(ids, getOrCreateRoadInformationIndex(way));
+    }
 
-        RoadType roadType = RoadTypeData.getRoadType(tags);
-        int maxSpeed = SpeedData.getMaximumSpeed(tags, roadType);
-        boolean oneWay = getOneWay(tags, roadType);
-        long access = AccessData.getAccessType(tags, roadType);
+    /**
+     * Convert the given list of ways to their compact forms, using the configured
+     * number of threads. Ways that cannot create any arc are discarded.
+     * 
+     * @param ways List of ways to convert.
+     * 
+     * @return List of compact ways.
+     */
+    public ArrayList<CompactWay> compact(List<Way> ways) {
+        ArrayList<CompactWay> compactWays = compactBatch(ways);
+        renumberRoadInformations(compactWays);
+        return compactWays;
+    }
 
-        String name = tags.getOrDefault("name", "");
+    /**
+     * Convert a batch of ways to their compact forms, using the configured number
+     * of threads. Ways that cannot create any arc are discarded. Road informations
+     * are interned in the order the chunks are processed, so
+     * {@link #renumberRoadInformations(List)} must be called once all the batches
+     * have been compacted.
+     * 
+     * @param ways List of ways to convert.
+     * 
+     * @return List of compact ways, in the order of the given ways.
+     */
+    public ArrayList<CompactWay> compactBatch(List<Way> ways) {
+        ConcurrentSkipListMap<Integer, List<CompactWay>> chunks = new ConcurrentSkipListMap<>();
+        configuration.getExecutor().forEach("way-compaction", ways.size(), (first, last) -> {
+            List<CompactWay> chunk = new ArrayList<>(last - first);
+            for (int i = first; i < last; ++i) {
+                CompactWay way = compact(ways.get(i));
+                if (way != null) {
+                    chunk.add(way);
+                }
+            }
+            chunks.put(first, chunk);
+        });
 
-        RoadInformation roadinfo = new RoadInformation(roadType, access, oneWay, maxSpeed, name);
-        RoadInformation previous = roadinfos.getOrDefault(roadinfo, null);
+        ArrayList<CompactWay> compactWays = new ArrayList<>(ways.size());
+        for (List<CompactWay> chunk: chunks.values()) {
+            compactWays.addAll(chunk);
+        }
+        return compactWays;
+    }
 
-        if (previous == null) {
-            roadinfos.put(roadinfo, roadinfo);
+    /**
+     * Renumber the road informations in the order of their first way, as a
+     * sequential compaction would do (ways without arcs do not intern road
+     * informations), and update the given compact ways accordingly.
+     * 
+     * @param compactWays All the compact ways, in the order of the input.
+     */
+    public void renumberRoadInformations(List<CompactWay> compactWays) {
+        int[] ids = new int[this.roadinfos.size()];
+        Arrays.fill(ids, -1);
+        int next = 0;
+        for (CompactWay way: compactWays) {
+            if (ids[way.getRoadInformationIndex()] < 0) {
+                ids[way.getRoadInformationIndex()] = next++;
+            }
         }
-        else {
-            roadinfo = previous;
+        for (int id = 0; id < ids.length; ++id) {
+            if (ids[id] < 0) {
+                ids[id] = next++;
+            }
+        }
+        this.roadinfos.renumber(ids);
+        for (int i = 0; i < compactWays.size(); ++i) {
+            CompactWay way = compactWays.get(i);
+            compactWays.set(i, way.withRoadInformationIndex(ids[way.getRoadInformationIndex()]));
         }
+    }
 
-        return roadinfo;
+    /**
+     * Merge the chains of ways that meet end-to-end with the same road information
+     * (see {@link ChainContractor}).
+     * 
+     * @param ways List of compact ways.
+     * 
+     * @return List of compact ways where chains have been merged.
+     */
+    public List<CompactWay> contractChains(List<CompactWay> ways) {
+        return new ChainContractor(configuration.getExecutor(), getRoadInformations())
+                .contract(ways);
+    }
 
+    /**
+     * Compute the cumulative number of nodes of the given ways, used to balance the
+     * work between threads.
+     * 
+     * @param ways
+     * 
+     * @return Array of size ways.size() + 1 whose i-th element is the number of
+     *         nodes in the ways before i.
+     */
+    protected long[] getNodePrefixSums(List<CompactWay> ways) {
+        long[] prefix = new long[ways.size() + 1];
+        for (int i = 0; i < ways.size(); ++i) {
+            prefix[i + 1] = prefix[i] + ways.get(i).getNumberOfNodes();
+        }
+        return prefix;
+    }
+
+    /**
+     * @return List of road informations, the index of a road information in this
+     *         list is the one stored in compact ways.
+     */
+    public List<RoadInformation> getRoadInformations() {
+        return this.roadinfos.asList();
     }
 
     /**
-     * Update the `nodesToMark` attributes to indicate which node correspond to a
+     * Update the `nodeMarks` attributes to indicate which node correspond to a
      * vertex in the graph. A node is considered a vertex if it is the first or last
      * node of a way, or if it is used by two different ways.
      * 
+     * Ways are processed concurrently on the shared executor.
+     * 
      * @param ways
      * 
      */
-    protected void findVertex(List<Way> ways) {
-        Set<Long> current = new HashSet<>(vertices.size());
-        for (Way way: ways) {
-            List<WayNode> nodes = way.getWayNodes();
-            for (WayNode node: nodes) {
-                long id = node.getNodeId();
-                if (current.contains(id)) {
-                    this.nodeMarks.add(id);
-                }
-                else {
-                    current.add(id);
-                }
+    protected void findVertex(List<CompactWay> ways) {
+        RunReport report = configuration.getRunReport();
+
+        NodeMarks marks;
+        try (Stage stage = report.start("junction-detection")) {
+            stage.addItems(ways.size());
+            marks = markVertices(ways);
+        }
+        this.numberOfVertices = marks.getNumberOfVertices();
+
+        if (configuration.getVertexOrder() != null) {
+            try (Stage stage = report.start("renumbering")) {
+                stage.addItems(this.numberOfVertices);
+                marks.setPermutation(getVertexOrder(marks, configuration.getVertexOrder()));
             }
-            this.nodeMarks.add(nodes.get(0).getNodeId());
-            this.nodeMarks.add(nodes.get(nodes.size() - 1).getNodeId());
         }
+        this.nodeMarks = marks;
     }
 
     /**
-     * Convert a way into a list of arcs - A way might be split if one of its node
-     * is shared with another way (in which case this node becomes a vertex).
+     * Mark the nodes of the given ways that are vertices, and index the vertices
+     * in increasing order of OSM IDs.
      * 
-     * @param way Way to convert.
+     * @param ways
      * 
-     * @return List of arcs corresponding to the given way.
+     * @return Marks of the vertices.
      */
-    protected ArrayList<Arc> convert(Way way) {
-
-        // Get road information
-        RoadInformation roadinfo = getOrCreateRoadInformation(way);
-
-        // Way nodes
-        List<WayNode> nodes = way.getWayNodes();
-        Iterator<WayNode> itNodes = nodes.iterator();
-
-        // Arc and points
-        ArrayList<Arc> arcs = new ArrayList<Arc>();
-        ArrayList<Point> points = new ArrayList<Point>();
-        double length = 0.0;
-        Vertex origin = vertices.get(itNodes.next().getNodeId());
-        points.add(origin.getPoint());
-        while (itNodes.hasNext()) {
-            long nodeId = itNodes.next().getNodeId();
-            Point newPoint = vertices.get(nodeId).getPoint();
-            length += points.get(points.size() - 1).distanceTo(newPoint);
-            points.add(newPoint);
-
-            if (this.nodeMarks.contains(nodeId)) {
-                arcs.add(new Arc(arcs.size(), origin, vertices.get(nodeId), length, roadinfo,
-                        points));
-
-                length = 0;
-                points = new ArrayList<Point>();
-                origin = vertices.get(nodeId);
-                points.add(origin.getPoint());
+    protected NodeMarks markVertices(List<CompactWay> ways) {
+
+        ParallelExecutor executor = configuration.getExecutor();
+        long[] prefix = getNodePrefixSums(ways);
+
+        // Range of IDs, to size the marks.
+        AtomicLong minIds = new AtomicLong(Long.MAX_VALUE), maxIds = new AtomicLong(Long.MIN_VALUE);
+        executor.forEach("junction-range", ways.size(), prefix, (first, last) -> {
+            long minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+            for (int i = first; i < last; ++i) {
+                CompactWay way = ways.get(i);
+                for (int j = 0; j < way.getNumberOfNodes(); ++j) {
+                    minId = Math.min(minId, way.getNodeId(j));
+                    maxId = Math.max(maxId, way.getNodeId(j));
+                }
             }
+            minIds.accumulateAndGet(minId, Math::min);
+            maxIds.accumulateAndGet(maxId, Math::max);
+        });
+        long minId = minIds.get(), maxId = maxIds.get();
+        if (minId > maxId) {
+            minId = maxId = 0;
         }
 
-        return arcs;
+        NodeMarks marks = new NodeMarks(minId, maxId);
+        executor.forEach("junction-detection", ways.size(), prefix, (first, last) -> {
+            for (int i = first; i < last; ++i) {
+                CompactWay way = ways.get(i);
+                int nNodes = way.getNumberOfNodes();
+                for (int j = 0; j < nNodes; ++j) {
+                    marks.mark(way.getNodeId(j));
+                }
+                marks.markVertex(way.getNodeId(0));
+                marks.markVertex(way.getNodeId(nNodes - 1));
+            }
+        });
+        marks.index(executor);
+        return marks;
     }
 
     /**
-     * Convert the given list of ways into a list of arcs.
+     * Compute the index of each vertex along the given curve. Vertices in the same
+     * cell of the curve keep the order of their OSM IDs.
      * 
-     * @param ways List of ways to convert.
+     * @param marks Marks of the vertices, indexed in increasing order of OSM IDs.
+     * @param curve Curve to use.
      * 
-     * @return List of arcs created from the ways.
+     * @return New index of each vertex, by index in increasing order of OSM IDs.
      */
-    public ArrayList<Arc> convert(List<Way> ways) {
-        // Find vertex...
-        LOGGER.info("finding vertices inside ways... ");
-        findVertex(ways);
+    protected int[] getVertexOrder(NodeMarks marks, SpaceFillingCurve curve) {
+        ParallelExecutor executor = configuration.getExecutor();
+        int nVertices = marks.getNumberOfVertices();
+
+        // Fixed-point coordinates of the vertices.
+        int[] longitudes = new int[nVertices], latitudes = new int[nVertices];
+        marks.forEachVertex(executor, "vertex-ordering", (id, index) -> {
+            long packed = this.nodes.get(id);
+            longitudes[index] = NodeStore.longitude(packed);
+            latitudes[index] = NodeStore.latitude(packed);
+        });
+        int minLongitude = Integer.MAX_VALUE, maxLongitude = Integer.MIN_VALUE,
+                minLatitude = Integer.MAX_VALUE, maxLatitude = Integer.MIN_VALUE;
+        for (int i = 0; i < nVertices; ++i) {
+            minLongitude = Math.min(minLongitude, longitudes[i]);
+            maxLongitude = Math.max(maxLongitude, longitudes[i]);
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+        }
 
-        // Convert arcs
-        LOGGER.info("converting way to arcs... ");
+        // Position along the curve (high 32 bits) and current index (low 32 bits),
+        // with the sign bit flipped so that signed order is the unsigned order.
+        long[] keys = new long[nVertices];
+        double cells = (1 << SpaceFillingCurve.ORDER) - 1;
+        double scaleLongitude = cells / Math.max(1L, (long) maxLongitude - minLongitude),
+                scaleLatitude = cells / Math.max(1L, (long) maxLatitude - minLatitude);
+        int minLon = minLongitude, minLat = minLatitude;
+        executor.forEach("vertex-ordering", nVertices, (first, last) -> {
+            for (int i = first; i < last; ++i) {
+                int x = (int) (((long) longitudes[i] - minLon) * scaleLongitude);
+                int y = (int) (((long) latitudes[i] - minLat) * scaleLatitude);
+                keys[i] = ((curve.index(x, y) << 32) | i) ^ Long.MIN_VALUE;
+            }
+        });
+        Arrays.parallelSort(keys);
 
-        int nPerThread = ways.size() / configuration.getThreads() + 1;
+        int[] permutation = new int[nVertices];
+        executor.forEach("vertex-ordering", nVertices, (first, last) -> {
+            for (int i = first; i < last; ++i) {
+                permutation[(int) keys[i]] = i;
+            }
+        });
+        return permutation;
+    }
+
+    /**
+     * Create the vertices found by findVertex, in parallel. Vertices are numbered
+     * in increasing order of OSM IDs, or along the curve given by the
+     * configuration.
+     */
+    protected void createVertices() {
+        Vertex[] vertices = new Vertex[this.numberOfVertices];
+        this.nodeMarks.forEachVertex(configuration.getExecutor(), (id, index) -> {
+            vertices[index] = new Vertex(index, this.nodes.getPoint(id));
+        });
+        this.vertices = vertices;
+    }
+
+    /**
+     * Store the coordinates of the given node in the given buffer.
+     * 
+     * @param nodeId OSM ID of the node.
+     * @param buffer
+     * @param index Index in the buffer.
+     */
+    private void loadPoint(long nodeId, PointBuffer buffer, int index) {
+        long packed = this.nodes.get(nodeId);
+        if (packed == NodeStore.MISSING) {
+            throw new IllegalStateException("node " + nodeId + " is used by a way but was not "
+                    + "found in the input, use --used-node or complete ways.");
+        }
+        buffer.longitudes[index] = NodeStore.fromFixed(NodeStore.longitude(packed));
+        buffer.latitudes[index] = NodeStore.fromFixed(NodeStore.latitude(packed));
+    }
 
-        WayToArcProcessor[] processors = new WayToArcProcessor[configuration.getThreads()];
-        Thread[] threads = new Thread[configuration.getThreads()];
-        for (int i = 0; i < threads.length; ++i) {
-            processors[i] = new WayToArcProcessor(ways, i * nPerThread,
-                    Math.min((i + 1) * nPerThread, ways.size()));
-            threads[i] = new Thread(processors[i]);
-            threads[i].start();
+    /**
+     * @param way
+     * 
+     * @return true if reverse arcs must be created for the given way, i.e. if
+     *         reverse arcs are enabled and the way is not one-way.
+     */
+    protected boolean hasReverseArcs(CompactWay way) {
+        return this.configuration.isReverseArcs()
+                && !this.roadinfos.get(way.getRoadInformationIndex()).isOneWay();
+    }
+
+    /**
+     * Reverse the points from first (included) to last (excluded) of the given
+     * buffer.
+     * 
+     * @param buffer
+     * @param first
+     * @param last
+     */
+    private static void reversePoints(PointBuffer buffer, int first, int last) {
+        for (int i = first, j = last - 1; i < j; ++i, --j) {
+            double longitude = buffer.longitudes[i], latitude = buffer.latitudes[i];
+            buffer.longitudes[i] = buffer.longitudes[j];
+            buffer.latitudes[i] = buffer.latitudes[j];
+            buffer.longitudes[j] = longitude;
+            buffer.latitudes[j] = latitude;
         }
+    }
 
+    /**
+     * Count the arcs and intermediate points created from each way, and the number
+     * of arcs leaving and entering each vertex, without creating the arcs.
+     * 
+     * @param ways
+     * @param degrees Array updated with the number of arcs leaving each vertex, or
+     *        null.
+     * @param inDegrees Array updated with the number of arcs entering each vertex,
+     *        or null.
+     * 
+     * @return Position of the arcs and points of each way in the conversion order.
+     */
+    protected WayOffsets countArcs(List<CompactWay> ways, AtomicIntegerArray degrees,
+            AtomicIntegerArray inDegrees) {
+        WayOffsets offsets = new WayOffsets(ways.size());
+        configuration.getExecutor().forEach("arc-counting", ways.size(), getNodePrefixSums(ways),
+                (first, last) -> {
+                    for (int i = first; i < last; ++i) {
+                        CompactWay way = ways.get(i);
+                        boolean reverse = hasReverseArcs(way);
+                        int origin = this.nodeMarks.getVertexIndex(way.getNodeId(0));
+                        long arcs = 0, points = 0;
+                        for (int j = 1; j < way.getNumberOfNodes(); ++j) {
+                            int destination = this.nodeMarks.getVertexIndex(way.getNodeId(j));
+                            if (destination >= 0) {
+                                arcs += reverse ? 2 : 1;
+                                if (degrees != null) {
+                                    degrees.incrementAndGet(origin);
+                                    if (reverse) {
+                                        degrees.incrementAndGet(destination);
+                                    }
+                                }
+                                if (inDegrees != null) {
+                                    inDegrees.incrementAndGet(destination);
+                                    if (reverse) {
+                                        inDegrees.incrementAndGet(origin);
+                                    }
+                                }
+                                origin = destination;
+                            }
+                            else {
+                                points += reverse ? 2 : 1;
+                            }
+                        }
+                        offsets.arcs[i + 1] = arcs;
+                        offsets.points[i + 1] = points;
+                    }
+                });
+        for (int i = 0; i < ways.size(); ++i) {
+            offsets.arcs[i + 1] += offsets.arcs[i];
+            offsets.points[i + 1] += offsets.points[i];
+        }
+        return offsets;
+    }
+
+    /**
+     * Convert a way into arcs - A way might be split if one of its node is shared
+     * with another way (in which case this node becomes a vertex). If reverse arcs
+     * are enabled and the way is not one-way, each arc is followed by its reverse.
+     * 
+     * @param way Way to convert.
+     * @param arc Index of the first arc of the way in the conversion order.
+     * @param point Index of the first intermediate point of the way in the
+     *        conversion order.
+     * @param sink Sink receiving the arcs.
+     * @param buffer Buffer for the coordinates of the points.
+     * 
+     * @return Number of arcs created from the given way.
+     */
+    protected int convert(CompactWay way, long arc, long point, ArcSink sink,
+            PointBuffer buffer) {
+        int nNodes = way.getNumberOfNodes(), info = way.getRoadInformationIndex();
+        buffer.ensureCapacity(nNodes);
+        double[] longitudes = buffer.longitudes, latitudes = buffer.latitudes;
+
+        DistanceEngine engine = this.configuration.getDistanceEngine();
+        double tolerance = this.configuration.getSimplifyTolerance();
+        if (tolerance > 0 && buffer.simplifier == null) {
+            buffer.simplifier = new PolylineSimplifier(tolerance,
+                    BinaryGraphWriterInsa2018.MAXIMUM_POINT_DELTA);
+        }
+
+        boolean reverse = hasReverseArcs(way);
+
+        int nArcs = 0, size = 1;
+        int origin = this.nodeMarks.getVertexIndex(way.getNodeId(0));
+        loadPoint(way.getNodeId(0), buffer, 0);
+        for (int i = 1; i < nNodes; ++i) {
+            long nodeId = way.getNodeId(i);
+            loadPoint(nodeId, buffer, size);
+
+            int destination = this.nodeMarks.getVertexIndex(nodeId);
+            if (destination >= 0) {
+                // The length is computed before simplification, from all the points,
+                // which are also the ones counted by countArcs.
+                double length = engine.length(longitudes, latitudes, 0, size);
+                int nPoints = size - 1;
+                if (buffer.simplifier != null) {
+                    size = buffer.simplifier.simplify(longitudes, latitudes, 0, size);
+                }
+                sink.addArc(arc + nArcs, point, origin, destination, length, info, longitudes,
+                        latitudes, 1, size);
+                nArcs += 1;
+                point += nPoints;
+                if (reverse) {
+                    // After reversal, the destination (which is also the origin of the
+                    // next arc) is at index 0.
+                    reversePoints(buffer, 0, size + 1);
+                    sink.addArc(arc + nArcs, point, destination, origin, length, info,
+                            longitudes, latitudes, 1, size);
+                    nArcs += 1;
+                    point += nPoints;
+                }
+                else {
+                    longitudes[0] = longitudes[size];
+                    latitudes[0] = latitudes[size];
+                }
+                size = 1;
+                origin = destination;
+            }
+            else {
+                size += 1;
+            }
+        }
+
+        return nArcs;
+    }
+
+    /**
+     * Convert all the given ways into arcs, in parallel. findVertex must have been
+     * called before.
+     * 
+     * @param ways List of ways to convert.
+     * @param offsets Position of the arcs and points of each way (see
+     *        {@link #countArcs}).
+     * @param sink Sink receiving the arcs.
+     */
+    protected void convert(List<CompactWay> ways, WayOffsets offsets, ArcSink sink) {
+        LOGGER.info("converting way to arcs... ");
+
+        ProgressMetrics metrics = configuration.getProgressMetrics();
+        metrics.setWaysToConvert(ways.size());
+        long converted = metrics.getWaysConverted();
         Thread logger = new Thread(new Runnable() {
             @Override
             public void run() {
                 while (true) {
                     try {
-                        int count = 0;
-                        for (int i = 0; i < processors.length; ++i) {
-                            count += processors[i].getNumberOfWaysProcessed();
-                        }
-                        LOGGER.info("processed " + count + " out of " + ways.size() + " ways.");
+                        LOGGER.info("processed " + (metrics.getWaysConverted() - converted)
+                                + " out of " + ways.size() + " ways.");
                         Thread.sleep(5000);
                     }
                     catch (InterruptedException ex) {
@@ -293,22 +688,207 @@ public class WayToArc {
         });
         logger.start();
 
-        ArrayList<Arc> arcs = new ArrayList<Arc>();
-        for (int i = 0; i < processors.length; ++i) {
-            try {
-                threads[i].join();
+        try (Stage stage = configuration.getRunReport().start("conversion")) {
+            stage.addItems(ways.size());
+            configuration.getExecutor().forEach("conversion", ways.size(),
+                    getNodePrefixSums(ways), (first, last) -> {
+                        PointBuffer buffer = new PointBuffer();
+                        for (int i = first; i < last; ++i) {
+                            int nArcs = convert(ways.get(i), offsets.arcs[i],
+                                    offsets.points[i], sink, buffer);
+                            numberOfArcs.add(nArcs);
+                            metrics.addWaysConverted(1, nArcs);
+                        }
+                    });
+        }
+        finally {
+            logger.interrupt();
+        }
+    }
+
+    /**
+     * Convert the given list of ways into a list of vertices, each vertex being
+     * linked to the arcs leaving it.
+     * 
+     * @param ways List of ways to convert.
+     * 
+     * @return List of vertices, the ID of each vertex being its index in the list.
+     *         If reverse arcs are enabled, each vertex is also linked to the arcs
+     *         entering it (its predecessors).
+     */
+    public List<Vertex> convert(List<CompactWay> ways) {
+        // Find vertex...
+        LOGGER.info("finding vertices inside ways... ");
+        findVertex(ways);
+
+        LOGGER.info("creating vertices... ");
+        createVertices();
+
+        // The ID of each arc is its index in the conversion order. Arcs are created
+        // concurrently, their indices being put in the bucket of their origin (and of
+        // their destination for predecessors), and each vertex is then linked to the
+        // arcs of its bucket in this order, so that the order of its successors is
+        // the one of a sequential conversion.
+        boolean reverseArcs = configuration.isReverseArcs();
+        AtomicIntegerArray degrees = new AtomicIntegerArray(this.numberOfVertices),
+                inDegrees = reverseArcs ? new AtomicIntegerArray(this.numberOfVertices) : null;
+        WayOffsets offsets = countArcs(ways, degrees, inDegrees);
+        long nArcs = offsets.arcs[ways.size()];
+        if (nArcs > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many arcs for an in-memory graph: " + nArcs
+                    + ", use streaming-output.");
+        }
+        int[] starts = getBucketStarts(degrees),
+                inStarts = reverseArcs ? getBucketStarts(inDegrees) : null;
+        int[] successors = new int[(int) nArcs],
+                predecessors = reverseArcs ? new int[(int) nArcs] : null;
+
+        Arc[] arcs = new Arc[(int) nArcs];
+        convert(ways, offsets, (arc, point, origin, destination, length, info, longitudes,
+                latitudes, from, to) -> {
+            Vertex vOrigin = this.vertices[origin], vDestination = this.vertices[destination];
+            List<Point> points = new ArrayList<Point>(to - from + 2);
+            points.add(vOrigin.getPoint());
+            for (int i = from; i < to; ++i) {
+                points.add(new Point(longitudes[i], latitudes[i]));
             }
-            catch (InterruptedException e) {
-                LOGGER.warning("Exception when joining thread " + i);
-                e.printStackTrace();
-                return null;
+            points.add(vDestination.getPoint());
+            arcs[(int) arc] = new Arc((int) arc, vOrigin, vDestination, length,
+                    this.roadinfos.get(info), points, false);
+
+            // Degrees are used as cursors, buckets being filled from their end.
+            successors[starts[origin] + degrees.decrementAndGet(origin)] = (int) arc;
+            if (predecessors != null) {
+                predecessors[inStarts[destination] + inDegrees.decrementAndGet(destination)] =
+                        (int) arc;
             }
-            arcs.addAll(processors[i].getArcs());
+        });
+
+        configuration.getExecutor().forEach("arc-linking", this.numberOfVertices,
+                (first, last) -> {
+                    for (int i = first; i < last; ++i) {
+                        Arrays.sort(successors, starts[i], starts[i + 1]);
+                        for (int k = starts[i]; k < starts[i + 1]; ++k) {
+                            this.vertices[i].addSuccessor(arcs[successors[k]]);
+                        }
+                        if (predecessors != null) {
+                            Arrays.sort(predecessors, inStarts[i], inStarts[i + 1]);
+                            for (int k = inStarts[i]; k < inStarts[i + 1]; ++k) {
+                                this.vertices[i].addPredecessor(arcs[predecessors[k]]);
+                            }
+                        }
+                    }
+                });
+
+        return Arrays.asList(this.vertices);
+    }
+
+    /**
+     * @param degrees Number of arcs of each vertex.
+     * 
+     * @return Index of the first arc of each vertex in an array where the arcs are
+     *         grouped by vertex, with one more entry holding the total number of
+     *         arcs.
+     */
+    protected int[] getBucketStarts(AtomicIntegerArray degrees) {
+        int[] starts = new int[degrees.length() + 1];
+        configuration.getExecutor().forEach("arc-linking", degrees.length(), (first, last) -> {
+            for (int i = first; i < last; ++i) {
+                starts[i + 1] = degrees.get(i);
+            }
+        });
+        Arrays.parallelPrefix(starts, Integer::sum);
+        return starts;
+    }
+
+    /**
+     * Convert the given list of ways and write the resulting graph with the given
+     * streaming writer while arcs are created, without building the graph in
+     * memory.
+     * 
+     * @param ways List of ways to convert.
+     * @param writer Writer to use, its output must have been set.
+     * @param mapId ID of the graph.
+     * @param mapName Name of the graph.
+     * 
+     * @return Number of vertices of the graph.
+     * 
+     * @throws IOException
+     */
+    public int convertStreaming(List<CompactWay> ways, StreamingGraphWriter writer,
+            String mapId, String mapName) throws IOException {
+        LOGGER.info("finding vertices inside ways... ");
+        findVertex(ways);
+
+        writer.beginGraph(mapId, mapName, this.numberOfVertices,
+                this.roadinfos.asList());
+
+        LOGGER.info("writing vertices... ");
+        double[] longitudes = new double[this.numberOfVertices],
+                latitudes = new double[this.numberOfVertices];
+        this.nodeMarks.forEachVertex(configuration.getExecutor(), (id, index) -> {
+            long packed = this.nodes.get(id);
+            longitudes[index] = NodeStore.fromFixed(NodeStore.longitude(packed));
+            latitudes[index] = NodeStore.fromFixed(NodeStore.latitude(packed));
+        });
+        writer.writeVertices(longitudes, latitudes);
+
+        try {
+            convert(ways, countArcs(ways, null, null), (arc, point, origin, destination, length, info,
+                    xs, ys, from, to) -> writer.writeArc(arc, origin, destination, length, info,
+                            xs, ys, from, to));
+        }
+        catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+
+        // Arcs have been encoded during the conversion, only their final move is
+        // recorded as writing.
+        try (Stage stage = configuration.getRunReport().start("writing")) {
+            stage.addItems(this.numberOfVertices);
+            writer.endGraph();
+        }
+        return this.numberOfVertices;
+    }
+
+    /**
+     * Convert the given list of ways into a compact graph, without creating any
+     * vertex or arc object.
+     * 
+     * @param ways List of ways to convert.
+     * @param mapId ID of the graph.
+     * @param mapName Name of the graph.
+     * 
+     * @return Compact graph corresponding to the ways.
+     */
+    public CompactGraph convertCompact(List<CompactWay> ways, String mapId, String mapName) {
+        LOGGER.info("finding vertices inside ways... ");
+        findVertex(ways);
+
+        LOGGER.info("creating vertices... ");
+        double[] longitudes = new double[this.numberOfVertices],
+                latitudes = new double[this.numberOfVertices];
+        this.nodeMarks.forEachVertex(configuration.getExecutor(), (id, index) -> {
+            long packed = this.nodes.get(id);
+            longitudes[index] = NodeStore.fromFixed(NodeStore.longitude(packed));
+            latitudes[index] = NodeStore.fromFixed(NodeStore.latitude(packed));
+        });
+
+        AtomicIntegerArray degrees = new AtomicIntegerArray(this.numberOfVertices);
+        WayOffsets offsets = countArcs(ways, degrees, null);
+        long numberOfPoints = offsets.points[ways.size()];
+        int[] vertexDegrees = new int[this.numberOfVertices];
+        for (int i = 0; i < vertexDegrees.length; ++i) {
+            vertexDegrees[i] = degrees.get(i);
         }
 
-        logger.interrupt();
+        CompactGraph.Builder builder = new CompactGraph.Builder(mapId, mapName, longitudes,
+                latitudes, vertexDegrees, numberOfPoints, this.roadinfos.asList());
+        convert(ways, offsets, builder::addArc);
+        configuration.getExecutor().forEach("arc-sorting", this.numberOfVertices,
+                builder::sortArcs);
 
-        return arcs;
+        return builder.build();
     }
 
 }
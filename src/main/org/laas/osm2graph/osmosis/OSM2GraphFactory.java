@@ -1,6 +1,8 @@
 package org.laas.osm2graph.osmosis;
 
+import org.laas.osm2graph.distance.DistanceEngineFactory;
 import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.store.NodeStoreFactory;
 import org.laas.osm2graph.writers.GraphWriterFactory;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
@@ -20,6 +22,17 @@ public class OSM2GraphFactory extends TaskManagerFactory {
     private static final String PARAM_MAPID = "id";
     private static final String PARAM_MAPNAME = "name";
     private static final String PARAM_WRITER = "writer";
+    private static final String PARAM_NODE_STORE = "node-store";
+    private static final String PARAM_STREAMING_WAYS = "streaming-ways";
+    private static final String PARAM_COMPACT_GRAPH = "compact-graph";
+    private static final String PARAM_STREAMING_OUTPUT = "streaming-output";
+    private static final String PARAM_DISTANCE = "distance";
+    private static final String PARAM_VERTEX_ORDER = "vertex-order";
+    private static final String PARAM_CONTRACT_CHAINS = "contract-chains";
+    private static final String PARAM_SIMPLIFY_TOLERANCE = "simplify-tolerance";
+    private static final String PARAM_REVERSE_ARCS = "reverse-arcs";
+    private static final String PARAM_REPORT = "report";
+    private static final String PARAM_METRICS_PORT = "metrics-port";
 
     @Override
     protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
@@ -32,6 +45,22 @@ public class OSM2GraphFactory extends TaskManagerFactory {
         configuration.setMapId(getStringArgument(taskConfig, PARAM_MAPID, null));
         configuration.setMapName(getStringArgument(taskConfig, PARAM_MAPNAME, null));
         configuration.setThreads(getIntegerArgument(taskConfig, PARAM_THREADS, 1));
+        configuration.addNodeStore(
+                getStringArgument(taskConfig, PARAM_NODE_STORE, NodeStoreFactory.DEFAULT_STORE));
+        configuration.setStreamingWays(getBooleanArgument(taskConfig, PARAM_STREAMING_WAYS, false));
+        configuration.setCompactGraph(getBooleanArgument(taskConfig, PARAM_COMPACT_GRAPH, false));
+        configuration.setStreamingOutput(
+                getBooleanArgument(taskConfig, PARAM_STREAMING_OUTPUT, false));
+        configuration.addDistanceEngine(getStringArgument(taskConfig, PARAM_DISTANCE,
+                DistanceEngineFactory.DEFAULT_ENGINE));
+        configuration.addVertexOrder(getStringArgument(taskConfig, PARAM_VERTEX_ORDER, "osm"));
+        configuration.setContractChains(
+                getBooleanArgument(taskConfig, PARAM_CONTRACT_CHAINS, false));
+        configuration.setSimplifyTolerance(
+                getDoubleArgument(taskConfig, PARAM_SIMPLIFY_TOLERANCE, 0));
+        configuration.setReverseArcs(getBooleanArgument(taskConfig, PARAM_REVERSE_ARCS, false));
+        configuration.setWriteReport(getBooleanArgument(taskConfig, PARAM_REPORT, false));
+        configuration.setMetricsPort(getIntegerArgument(taskConfig, PARAM_METRICS_PORT, 0));
 
         configuration.validate();
 
@@ -12,26 +12,40 @@
  */
 package org.laas.osm2graph.osmosis;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.NumberFormat;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.laas.osm2graph.graph.Arc;
+import javax.management.JMException;
+
+import org.laas.osm2graph.graph.CompactGraph;
 import org.laas.osm2graph.graph.Graph;
 import org.laas.osm2graph.graph.Vertex;
-import org.laas.osm2graph.model.NodeToVertex;
+import org.laas.osm2graph.metrics.MetricsServer;
+import org.laas.osm2graph.metrics.ProgressMetrics;
+import org.laas.osm2graph.model.AccessData;
+import org.laas.osm2graph.model.CompactWay;
 import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.ParallelExecutor.PhaseUsage;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
+import org.laas.osm2graph.model.SpeedData;
 import org.laas.osm2graph.model.WayToArc;
+import org.laas.osm2graph.store.NodeStore;
 import org.laas.osm2graph.writers.GraphWriter;
+import org.laas.osm2graph.writers.StreamingGraphWriter;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
@@ -46,18 +60,37 @@ public class OSM2GraphTask implements Sink {
 
     private static final Logger LOGGER = Logger.getLogger(OSM2GraphTask.class.getName());
 
+    // Number of ways compacted at once when ways are converted as they are
+    // received.
+    private static final int WAY_BATCH_SIZE = 1 << 16;
+
     // Accounting
     private int amountOfNodesProcessed = 0;
     private int amountOfWaysProcessed = 0;
 
     private final OSM2GraphConfiguration configuration;
 
-    // Converters & Filters
-    private NodeToVertex nodeToVertex = new NodeToVertex();
-
     // Nodes and ways
-    Map<Long, Vertex> vertices;
+    NodeStore nodeStore;
     ArrayList<Way> ways;
+    List<CompactWay> compactWays;
+
+    // Ways received and not compacted yet, and compaction of the previous batch
+    // running in the background (if any), when ways are converted as they are
+    // received.
+    ArrayList<Way> wayBatch;
+    Future<ArrayList<CompactWay>> pendingBatch;
+
+    // Converter
+    WayToArc wayToArc;
+
+    // Report of the run, and current ingest stage (nodes or ways).
+    RunReport report;
+    Stage ingestStage;
+
+    // Live metrics, and HTTP endpoint serving them (if enabled).
+    ProgressMetrics metrics;
+    MetricsServer metricsServer;
 
     OSM2GraphTask(OSM2GraphConfiguration configuration) {
         this.configuration = configuration;
@@ -71,12 +104,115 @@ public class OSM2GraphTask implements Sink {
      */
     @Override
     public void initialize(Map<String, Object> metadata) {
-        this.vertices = new HashMap<Long, Vertex>();
-        this.ways = new ArrayList<Way>();
+        this.nodeStore = this.configuration.getNodeStore();
+        this.report = this.configuration.getRunReport();
+        this.metrics = this.configuration.getProgressMetrics();
+        try {
+            this.metrics.registerMBean();
+        }
+        catch (JMException e) {
+            LOGGER.log(Level.WARNING, "unable to register metrics MBean", e);
+        }
+        if (this.configuration.getMetricsPort() > 0) {
+            try {
+                this.metricsServer = new MetricsServer(this.metrics,
+                        this.configuration.getMetricsPort());
+                LOGGER.info("serving metrics on http://localhost:"
+                        + this.metricsServer.getPort() + "/metrics");
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.WARNING, "unable to start metrics endpoint", e);
+            }
+        }
+        this.wayToArc = new WayToArc(this.nodeStore, this.configuration);
+        if (this.configuration.isStreamingWays()) {
+            this.compactWays = new ArrayList<CompactWay>();
+            this.wayBatch = new ArrayList<Way>(WAY_BATCH_SIZE);
+        }
+        else {
+            this.ways = new ArrayList<Way>();
+        }
     }
 
     @Override
     public final void close() {
+        if (this.metricsServer != null) {
+            this.metricsServer.close();
+        }
+        try {
+            this.metrics.unregisterMBean();
+        }
+        catch (JMException e) {
+            LOGGER.log(Level.WARNING, "unable to unregister metrics MBean", e);
+        }
+        this.configuration.getExecutor().close();
+        try {
+            this.nodeStore.close();
+        }
+        catch (IOException e) {
+            LOGGER.log(Level.WARNING, "error while closing node store", e);
+        }
+    }
+
+    /**
+     * Compact the current batch of ways in the background, after waiting for the
+     * previous batch, so that the next batch is received while this one is
+     * compacted.
+     */
+    private void submitWayBatch() {
+        awaitWayBatch();
+        List<Way> batch = this.wayBatch;
+        this.wayBatch = new ArrayList<Way>(WAY_BATCH_SIZE);
+        this.pendingBatch = this.configuration.getExecutor()
+                .submit(() -> this.wayToArc.compactBatch(batch));
+    }
+
+    /**
+     * Wait for the batch of ways compacted in the background, if any, and append
+     * its compact ways to the ones of the previous batches.
+     */
+    private void awaitWayBatch() {
+        if (this.pendingBatch == null) {
+            return;
+        }
+        try {
+            this.compactWays.addAll(this.pendingBatch.get());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while compacting ways", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("error while compacting ways", e.getCause());
+        }
+        finally {
+            this.pendingBatch = null;
+        }
+    }
+
+    /**
+     * Open the output file and set it as the output of the configured writer.
+     * 
+     * @return The configured writer.
+     * 
+     * @throws IOException
+     */
+    private GraphWriter openGraphWriter() throws IOException {
+        if (this.configuration.getOutputFile().exists()) {
+            LOGGER.info("overwriting file " + this.configuration.getOutputFile().getAbsolutePath());
+            this.configuration.getOutputFile().delete();
+        }
+        GraphWriter writer = this.configuration.getGraphWriter();
+        writer.setOutputChannel(FileChannel.open(this.configuration.getOutputFile().toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        writer.setExecutor(this.configuration.getExecutor());
+        writer.setRunReport(this.report);
+        writer.setOutputCounter(this.metrics.getOutputBytesCounter());
+        return writer;
     }
 
     @Override
@@ -89,74 +225,132 @@ public class OSM2GraphTask implements Sink {
 
         LOGGER.info("creating graph using " + this.configuration.getThreads() + "threads...");
 
+        startIngestStage(null);
+        this.nodeStore.complete();
+
         Instant start = Instant.now();
-        ArrayList<Arc> arcs = new WayToArc(this.vertices, this.configuration).convert(this.ways);
-        Duration time = Duration.between(start, Instant.now());
-        LOGGER.info("converted " + ways.size() + " ways to " + arcs.size() + " arcs in "
-                + time.toMillis() + "us.");
-
-        LOGGER.info("retrieving vertices from arcs... ");
-        ArrayList<Vertex> nodes = new ArrayList<Vertex>(2 * arcs.size());
-        for (int i = 0; i < arcs.size(); ++i) {
-            Arc arc = arcs.get(i);
-            Vertex oldOrigin = arc.getOrigin(), oldDestination = arc.getDestination();
-            long originId = oldOrigin.getId(), destinationId = oldDestination.getId();
-            if (vertices.get(originId) == oldOrigin) {
-                oldOrigin = new Vertex(nodes.size(), oldOrigin.getPoint());
-                nodes.add(oldOrigin);
-                vertices.put(originId, oldOrigin);
+        if (this.wayBatch != null) {
+            try (Stage stage = this.report.start("way-compaction")) {
+                stage.addItems(this.wayBatch.size());
+                submitWayBatch();
+                awaitWayBatch();
+                this.wayToArc.renumberRoadInformations(this.compactWays);
             }
-            if (vertices.get(destinationId) == oldDestination) {
-                oldDestination = new Vertex(nodes.size(), oldDestination.getPoint());
-                nodes.add(oldDestination);
-                vertices.put(destinationId, oldDestination);
+            // hint to GC
+            this.wayBatch = null;
+        }
+        if (this.compactWays == null) {
+            LOGGER.info("compacting ways... ");
+            try (Stage stage = this.report.start("way-compaction")) {
+                stage.addItems(this.ways.size());
+                this.compactWays = this.wayToArc.compact(this.ways);
             }
-            new Arc(arc.getId(), vertices.get(originId), vertices.get(destinationId),
-                    arc.getLength(), arc.getInfo(), arc.getPoints());
-
-            // Hint to GC
-            arcs.set(i, null);
-            arc = null;
+            // hint to GC
+            this.ways = null;
         }
-        nodes.sort(new Comparator<Vertex>() {
-            @Override
-            public int compare(Vertex v1, Vertex v2) {
-                return v1.compareTo(v2);
+        if (this.configuration.isContractChains()) {
+            LOGGER.info("merging chains of ways... ");
+            try (Stage stage = this.report.start("chain-merging")) {
+                stage.addItems(this.compactWays.size());
+                this.compactWays = this.wayToArc.contractChains(this.compactWays);
             }
-        });
-
-        LOGGER.info("Created " + arcs.size() + " arcs out of " + amountOfWaysProcessed + " ways "
-                + "and " + nodes.size() + " vertex out of " + amountOfNodesProcessed + " nodes.");
+        }
+        Graph graph = null;
+        int nVertices = 0;
+        if (this.configuration.isStreamingOutput()) {
+            LOGGER.info("start writing file while converting ways...");
+            try {
+                nVertices = this.wayToArc.convertStreaming(this.compactWays,
+                        (StreamingGraphWriter) openGraphWriter(), this.configuration.getMapId(),
+                        this.configuration.getMapName());
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "error while writing file", e);
+            }
+        }
+        else if (this.configuration.isCompactGraph()) {
+            CompactGraph compactGraph = this.wayToArc.convertCompact(this.compactWays,
+                    this.configuration.getMapId(), this.configuration.getMapName());
+            nVertices = compactGraph.getNumberOfVertices();
+            graph = compactGraph.asGraph();
+        }
+        else {
+            List<Vertex> nodes = this.wayToArc.convert(this.compactWays);
+            nVertices = nodes.size();
+            graph = new Graph(this.configuration.getMapId(), this.configuration.getMapName(),
+                    nodes, this.wayToArc.getRoadInformations());
+        }
+        Duration time = Duration.between(start, Instant.now());
+        LOGGER.info("converted " + compactWays.size() + " ways to "
+                + this.wayToArc.getNumberOfArcs() + " arcs in " + time.toMillis() + "ms.");
 
-        LOGGER.info("start writing file...");
+        LOGGER.info("Created " + this.wayToArc.getNumberOfArcs() + " arcs out of "
+                + amountOfWaysProcessed + " ways " + "and " + nVertices + " vertex out of "
+                + amountOfNodesProcessed + " nodes.");
 
-        try {
-            Graph graph = new Graph(this.configuration.getMapId(), this.configuration.getMapName(),
-                    nodes);
-            if (this.configuration.getOutputFile().exists()) {
-                LOGGER.info(
-                        "overwriting file " + this.configuration.getOutputFile().getAbsolutePath());
-                this.configuration.getOutputFile().delete();
+        if (graph != null) {
+            LOGGER.info("start writing file...");
+            try (Stage stage = this.report.start("writing")) {
+                stage.addItems(nVertices);
+                openGraphWriter().writeGraph(graph);
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "error while writing file", e);
             }
-            GraphWriter writer = this.configuration.getGraphWriter();
-            writer.setOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(this.configuration.getOutputFile())));
-            writer.writeGraph(graph);
-        }
-        catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "error while writing file", e);
         }
 
         LOGGER.info("finished...");
         LOGGER.fine("total processed nodes: " + nfCounts.format(this.amountOfNodesProcessed));
         LOGGER.fine("total processed ways: " + nfCounts.format(this.amountOfWaysProcessed));
 
+        for (Stage stage: this.report.getStages()) {
+            LOGGER.info("stage " + stage);
+        }
+        for (PhaseUsage usage: this.configuration.getExecutor().getPhaseUsages()) {
+            LOGGER.info("phase " + usage);
+        }
+        LOGGER.info("tag cache " + SpeedData.getCache());
+        LOGGER.info("tag cache " + AccessData.getCache());
+
+        if (this.configuration.isWriteReport()) {
+            File file = this.configuration.getReportFile();
+            try {
+                this.report.writeJson(file, this.configuration,
+                        this.configuration.getExecutor().getPhaseUsages(),
+                        Arrays.asList(SpeedData.getCache(), AccessData.getCache()));
+                LOGGER.info("run report written to " + file.getAbsolutePath());
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.WARNING, "error while writing run report", e);
+            }
+        }
+
         LOGGER.info("estimated memory consumption: " + nfMegabyte
                 .format(+((Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory())
                         / Math.pow(1024, 2)))
                 + "MB");
     }
 
+    /**
+     * Close the current ingest stage and start a new one if its name differs from
+     * the current one.
+     * 
+     * @param name Name of the new ingest stage, or null to only close the current
+     *        one.
+     */
+    private void startIngestStage(String name) {
+        if (this.ingestStage != null && this.ingestStage.getName().equals(name)) {
+            return;
+        }
+        if (this.ingestStage != null) {
+            this.ingestStage.close();
+            this.ingestStage = null;
+        }
+        if (name != null) {
+            this.ingestStage = this.report.start(name);
+        }
+    }
+
     @Override
     public final void process(EntityContainer entityContainer) {
         Entity entity = entityContainer.getEntity();
@@ -169,7 +363,11 @@ public class OSM2GraphTask implements Sink {
         // ****************** NODE PROCESSING *********************
         // ********************************************************
         case Node:
-            this.vertices.put(entity.getId(), this.nodeToVertex.convert((Node) entity));
+            startIngestStage("node-ingest");
+            this.ingestStage.addItems(1);
+            this.metrics.addNodesIngested(1);
+            Node node = (Node) entity;
+            this.nodeStore.put(node.getId(), node.getLongitude(), node.getLatitude());
             // hint to GC
             entity = null;
             this.amountOfNodesProcessed++;
@@ -179,7 +377,18 @@ public class OSM2GraphTask implements Sink {
         // ******************* WAY PROCESSING *********************
         // ********************************************************
         case Way:
-            this.ways.add((Way) entity);
+            startIngestStage("way-ingest");
+            this.ingestStage.addItems(1);
+            this.metrics.addWaysIngested(1);
+            if (this.wayBatch != null) {
+                this.wayBatch.add((Way) entity);
+                if (this.wayBatch.size() >= WAY_BATCH_SIZE) {
+                    submitWayBatch();
+                }
+            }
+            else {
+                this.ways.add((Way) entity);
+            }
             // hint to GC
             entity = null;
             this.amountOfWaysProcessed++;
@@ -0,0 +1,86 @@
+package org.laas.osm2graph.readers;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.graph.RoadInformation.RoadType;
+import org.laas.osm2graph.model.AccessData;
+
+/**
+ * This reader reads files generated by
+ * {@link org.laas.osm2graph.writers.BinaryGraphWriterInsa2016}, in the same way
+ * as {@link BinaryGraphReaderInsa2018}.
+ *
+ * These files do not contain the access of the roads (road informations read
+ * have an unknown access for all vehicles) nor a map name, and lengths are
+ * stored in meters on 16 bits (lengths of arcs longer than 65535 meters are not
+ * correct).
+ */
+public class BinaryGraphReaderInsa2016 extends BinaryGraphReaderInsa2018 {
+
+    // Map version and magic number targeted for this reader.
+    private static final int VERSION = 4;
+    static final int MAGIC_NUMBER = 0xbacaff;
+
+    private static final String DEFAULT_EXTENSION = "map";
+
+    @Override
+    protected long readHeader() throws IOException {
+        input.check(0, 24);
+        if (input.getInt(0) != MAGIC_NUMBER) {
+            throw new IOException("invalid magic number, not an insa2016 file.");
+        }
+        if (input.getInt(4) != VERSION) {
+            throw new IOException("unsupported version: " + input.getInt(4) + ".");
+        }
+        this.mapId = Integer.toUnsignedString(input.getInt(8));
+        this.mapName = null;
+        this.numberOfInfos = input.getInt(16);
+        this.numberOfVertices = input.getInt(20);
+        return 24;
+    }
+
+    @Override
+    protected long readDescriptor(long position, List<RoadInformation> infos)
+            throws IOException {
+        input.check(position, 1 + 1 + 2);
+        RoadType type = getTypeFromChar((char) input.getUnsignedByte(position));
+        int x = input.getUnsignedByte(position + 1);
+        String name = input.getUTF(position + 2);
+        infos.add(new RoadInformation(type, AccessData.MASK_ALL & AccessData.MASK_UNKNOWN,
+                (x & 0x80) != 0, (x & 0x7f) * 5, name));
+        return position + 4 + input.getUnsignedShort(position + 2);
+    }
+
+    @Override
+    protected int getArcHeaderSize() {
+        return 1 + 3 + 3 + 2 + 2;
+    }
+
+    @Override
+    protected int getNumberOfPoints(long position) {
+        return input.getUnsignedShort(position + 9);
+    }
+
+    @Override
+    protected int getTarget(long position) {
+        return input.get24bits(position + 1);
+    }
+
+    @Override
+    protected int getInfo(long position) {
+        return input.get24bits(position + 4);
+    }
+
+    @Override
+    protected double getLength(long position) {
+        return untruncate(input.getUnsignedShort(position + 7)) / 1000.0;
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return DEFAULT_EXTENSION;
+    }
+
+}
@@ -0,0 +1,657 @@
+package org.laas.osm2graph.readers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.laas.osm2graph.graph.Arc;
+import org.laas.osm2graph.graph.CompactGraph;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.graph.Point;
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.graph.RoadInformation.RoadType;
+import org.laas.osm2graph.graph.Vertex;
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
+
+/**
+ * This reader reads files generated by
+ * {@link org.laas.osm2graph.writers.BinaryGraphWriterInsa2018}.
+ *
+ * The file is memory-mapped. The nodes section has a fixed size per vertex and
+ * is decoded in parallel. The successors section is first scanned to find the
+ * position of the successors of each vertex (only the number of points of each
+ * arc is read), and the arcs are then decoded in parallel. Views only keep
+ * the position of the successors of some vertices, and decode vertices on
+ * demand.
+ *
+ * Coordinates, lengths and point deltas are truncated towards zero by the
+ * writer, so each value is decoded as the middle of the interval of values that
+ * were truncated to it (see {@link #untruncate(int)}). This is closer to the
+ * original value on average, and writing the graph read gives the same file.
+ */
+public class BinaryGraphReaderInsa2018 implements GraphReader {
+
+    // Map version and magic number targeted for this reader.
+    private static final int VERSION = 8;
+    static final int MAGIC_NUMBER = 0x208BC3B3;
+
+    private static final String DEFAULT_EXTENSION = "mapgr";
+
+    private static final int MAP_ID_FIELD_LENGTH = 32;
+
+    // Number of bytes used by each vertex in the nodes section.
+    protected static final int NODE_SIZE = 9;
+
+    // Number of vertices between two entries of the index of the successors
+    // section used by views.
+    protected static final int VIEW_INDEX_STRIDE = 64;
+
+    /**
+     * Position of the successors of every stride-th vertex in the successors
+     * section, with the index of their first arc and of their first intermediate
+     * point. The last entry corresponds to the end of the section.
+     */
+    protected static class SuccessorIndex {
+
+        // Number of vertices between two entries.
+        final int stride;
+
+        // Position relative to the successors section, first arc and first point of
+        // each entry.
+        final long[] positions, points;
+        final int[] arcs;
+
+        /**
+         * @param stride Number of vertices between two entries.
+         * @param size Number of entries.
+         */
+        SuccessorIndex(int stride, int size) {
+            this.stride = stride;
+            this.positions = new long[size];
+            this.points = new long[size];
+            this.arcs = new int[size];
+        }
+    }
+
+    /**
+     * Position in the successors section of a view, after the last vertex created
+     * by a thread, so that consecutive vertices are decoded without skipping the
+     * successors of the previous ones again.
+     */
+    protected static class ViewCursor {
+
+        // Next vertex, position of its successors and index of its first arc.
+        int vertex = Integer.MAX_VALUE;
+        long position;
+        int arc;
+    }
+
+    /**
+     * Convert a character to its corresponding road type.
+     *
+     * @param ch Character to convert.
+     *
+     * @return Road type corresponding to ch.
+     *
+     * @see org.laas.osm2graph.writers.BinaryGraphWriterInsa2018#getCharFromType(RoadType)
+     */
+    public static RoadType getTypeFromChar(char ch) {
+        switch (ch) {
+        case 'a':
+            return RoadType.MOTORWAY;
+        case 'b':
+            return RoadType.TRUNK;
+        case 'c':
+            return RoadType.PRIMARY;
+        case 'd':
+            return RoadType.SECONDARY;
+        case 'e':
+            return RoadType.MOTORWAY_LINK;
+        case 'f':
+            return RoadType.TRUNK_LINK;
+        case 'g':
+            return RoadType.PRIMARY_LINK;
+        case 'h':
+            return RoadType.SECONDARY_LINK;
+        case 'i':
+            return RoadType.TERTIARY;
+        case 'j':
+            return RoadType.RESIDENTIAL;
+        case 'm':
+            return RoadType.LIVING_STREET;
+        case 'n':
+            return RoadType.SERVICE;
+        case 'o':
+            return RoadType.ROUNDABOUT;
+        case 'p':
+            return RoadType.PEDESTRIAN;
+        case 'q':
+            return RoadType.BICYCLE;
+        case 'r':
+            return RoadType.TRACK;
+        case 'z':
+            return RoadType.COASTLINE;
+        }
+        return RoadType.UNCLASSIFIED;
+    }
+
+    /**
+     * @param value Value truncated towards zero.
+     *
+     * @return Middle of the interval of values that are truncated to value.
+     */
+    protected static double untruncate(int value) {
+        if (value > 0) {
+            return value + 0.5;
+        }
+        else if (value < 0) {
+            return value - 0.5;
+        }
+        return 0;
+    }
+
+    // Input channel.
+    FileChannel channel;
+
+    // Executor used to decode sections in parallel (if set).
+    ParallelExecutor executor;
+
+    // Report where the stages of the reader are recorded.
+    RunReport report = new RunReport();
+
+    // Mapped input file.
+    MappedInput input;
+
+    // Content of the header: map ID and name, number of road informations and of
+    // vertices.
+    String mapId, mapName;
+    int numberOfInfos, numberOfVertices;
+
+    // Position of the nodes and successors sections.
+    long nodesStart, arcsStart;
+
+    // Distinct road informations, and index of the distinct road information of
+    // each road information of the file.
+    List<RoadInformation> roadInformations;
+    int[] distinct;
+
+    @Override
+    public void setInputChannel(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void setExecutor(ParallelExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void setRunReport(RunReport report) {
+        this.report = report;
+    }
+
+    /**
+     * Run the given task on the range [0, size), in parallel if an executor is set.
+     *
+     * @param phase Name of the phase (for reporting).
+     * @param size
+     * @param prefix Cumulative weights of the elements, or null.
+     * @param task
+     *
+     * @throws IOException if the task failed with an {@link UncheckedIOException}.
+     */
+    protected void forEach(String phase, int size, long[] prefix, ParallelExecutor.RangeTask task)
+            throws IOException {
+        try {
+            if (executor != null) {
+                executor.forEach(phase, size, prefix, task);
+            }
+            else {
+                task.run(0, size);
+            }
+        }
+        catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Check a value read from the input.
+     *
+     * @param valid true if the value is valid.
+     * @param message Message of the exception if the value is not valid.
+     *
+     * @throws UncheckedIOException if the value is not valid.
+     */
+    protected static void checkFormat(boolean valid, String message) {
+        if (!valid) {
+            throw new UncheckedIOException(new IOException(message));
+        }
+    }
+
+    /**
+     * Check that the byte at the given position is the expected format check.
+     *
+     * @param position
+     * @param expected
+     *
+     * @throws IOException
+     */
+    protected void checkByte(long position, int expected) throws IOException {
+        input.check(position, 1);
+        if (input.getUnsignedByte(position) != expected) {
+            throw new IOException("invalid format: expected " + expected + " at " + position
+                    + ", found " + input.getUnsignedByte(position) + ".");
+        }
+    }
+
+    /**
+     * Read the header of the file, setting the map ID, map name, number of road
+     * informations and number of vertices.
+     *
+     * @return Position of the nodes section.
+     *
+     * @throws IOException
+     */
+    protected long readHeader() throws IOException {
+        input.check(0, 8 + MAP_ID_FIELD_LENGTH + 2);
+        if (input.getInt(0) != MAGIC_NUMBER) {
+            throw new IOException("invalid magic number, not an insa2018 file.");
+        }
+        if (input.getInt(4) != VERSION) {
+            throw new IOException("unsupported version: " + input.getInt(4) + ".");
+        }
+        byte[] id = new byte[MAP_ID_FIELD_LENGTH];
+        input.get(8, id, 0, id.length);
+        int length = 0;
+        while (length < id.length && id[length] != 0) {
+            ++length;
+        }
+        this.mapId = new String(id, 0, length, StandardCharsets.UTF_8);
+        long position = 8 + MAP_ID_FIELD_LENGTH;
+        this.mapName = input.getUTF(position);
+        position += 2 + input.getUnsignedShort(position);
+        input.check(position, 8);
+        this.numberOfInfos = input.getInt(position);
+        this.numberOfVertices = input.getInt(position + 4);
+        return position + 8;
+    }
+
+    /**
+     * Read a road information of the descriptors section.
+     *
+     * @param position Position of the road information.
+     * @param infos List to add the road information to.
+     *
+     * @return Position after the road information.
+     *
+     * @throws IOException
+     */
+    protected long readDescriptor(long position, List<RoadInformation> infos)
+            throws IOException {
+        input.check(position, 1 + 1 + 8 + 2);
+        RoadType type = getTypeFromChar((char) input.getUnsignedByte(position));
+        int x = input.getUnsignedByte(position + 1);
+        long access = input.getLong(position + 2);
+        String name = input.getUTF(position + 10);
+        infos.add(new RoadInformation(type, access, (x & 0x80) != 0, (x & 0x7f) * 5, name));
+        return position + 12 + input.getUnsignedShort(position + 10);
+    }
+
+    /**
+     * @return Number of bytes of an arc before its intermediate points.
+     */
+    protected int getArcHeaderSize() {
+        return 3 + 3 + 4 + 2;
+    }
+
+    /**
+     * @param position Position of an arc.
+     *
+     * @return Number of intermediate points of the arc.
+     */
+    protected int getNumberOfPoints(long position) {
+        return input.getUnsignedShort(position + 10);
+    }
+
+    /**
+     * @param position Position of an arc.
+     *
+     * @return Index of the destination of the arc.
+     */
+    protected int getTarget(long position) {
+        return input.get24bits(position);
+    }
+
+    /**
+     * @param position Position of an arc.
+     *
+     * @return Index of the road information of the arc.
+     */
+    protected int getInfo(long position) {
+        return input.get24bits(position + 3);
+    }
+
+    /**
+     * @param position Position of an arc.
+     *
+     * @return Length of the arc, in meters.
+     */
+    protected double getLength(long position) {
+        return untruncate(input.getInt(position + 6)) / 1000.0;
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Longitude of the vertex.
+     */
+    protected double getLongitude(int vertex) {
+        return untruncate(input.getInt(nodesStart + (long) NODE_SIZE * vertex)) / 1e6;
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Latitude of the vertex.
+     */
+    protected double getLatitude(int vertex) {
+        return untruncate(input.getInt(nodesStart + (long) NODE_SIZE * vertex + 4)) / 1e6;
+    }
+
+    /**
+     * @param vertex Index of a vertex.
+     *
+     * @return Number of arcs leaving the vertex.
+     */
+    protected int getDegree(int vertex) {
+        return input.getUnsignedByte(nodesStart + (long) NODE_SIZE * vertex + 8);
+    }
+
+    /**
+     * Read the header and the descriptors of the file, and locate the nodes and
+     * successors sections.
+     *
+     * @throws IOException
+     */
+    protected void readLayout() throws IOException {
+        this.nodesStart = readHeader();
+        input.check(nodesStart, (long) NODE_SIZE * numberOfVertices);
+
+        long position = nodesStart + (long) NODE_SIZE * numberOfVertices;
+        checkByte(position++, 255);
+        List<RoadInformation> infos = new ArrayList<>(numberOfInfos);
+        for (int i = 0; i < numberOfInfos; ++i) {
+            position = readDescriptor(position, infos);
+        }
+        checkByte(position++, 254);
+        this.arcsStart = position;
+
+        // Index of the distinct road information equal to each road information
+        // of the file (formats that do not store every field may contain equal
+        // road informations, which writers would not distinguish).
+        this.distinct = new int[numberOfInfos];
+        Map<RoadInformation, Integer> indices = new HashMap<>();
+        this.roadInformations = new ArrayList<>(numberOfInfos);
+        for (int i = 0; i < numberOfInfos; ++i) {
+            Integer index = indices.putIfAbsent(infos.get(i), roadInformations.size());
+            if (index == null) {
+                index = roadInformations.size();
+                roadInformations.add(infos.get(i));
+            }
+            distinct[i] = index;
+        }
+    }
+
+    /**
+     * Scan the successors section to index the position of the successors of
+     * every stride-th vertex, and check the end of the file.
+     *
+     * @param stride Number of vertices between two entries of the index.
+     *
+     * @return Index of the successors section.
+     *
+     * @throws IOException
+     */
+    protected SuccessorIndex scanSuccessors(int stride) throws IOException {
+        int nVertices = numberOfVertices;
+        SuccessorIndex index = new SuccessorIndex(stride, (nVertices + stride - 1) / stride + 1);
+        long position = arcsStart;
+        try (Stage stage = report.start("successor-scan")) {
+            int headerSize = getArcHeaderSize();
+            long nArcs = 0, nPoints = 0;
+            for (int i = 0; i < nVertices; ++i) {
+                if (i % stride == 0) {
+                    index.positions[i / stride] = position - arcsStart;
+                    index.arcs[i / stride] = (int) nArcs;
+                    index.points[i / stride] = nPoints;
+                }
+                int degree = getDegree(i);
+                for (int k = degree; k > 0; --k) {
+                    input.check(position, headerSize);
+                    int size = getNumberOfPoints(position);
+                    nPoints += size;
+                    position += headerSize + 4L * size;
+                }
+                nArcs += degree;
+                if (nArcs > Integer.MAX_VALUE) {
+                    throw new IOException("too many arcs: " + nArcs + ".");
+                }
+            }
+            int last = index.positions.length - 1;
+            index.positions[last] = position - arcsStart;
+            index.arcs[last] = (int) nArcs;
+            index.points[last] = nPoints;
+            stage.addItems(nArcs);
+        }
+        input.check(arcsStart, position - arcsStart);
+        checkByte(position, 253);
+        if (position + 1 != input.size()) {
+            throw new IOException("unexpected data after the successors section.");
+        }
+        return index;
+    }
+
+    @Override
+    public CompactGraph readCompactGraph() throws IOException {
+        try {
+            this.input = new MappedInput(channel, 0, channel.size());
+            return decode();
+        }
+        finally {
+            this.input = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * Decode the mapped input.
+     *
+     * @return The graph read.
+     *
+     * @throws IOException
+     */
+    protected CompactGraph decode() throws IOException {
+        readLayout();
+        int nVertices = this.numberOfVertices;
+
+        // Nodes.
+        double[] longitudes = new double[nVertices], latitudes = new double[nVertices];
+        try (Stage stage = report.start("node-decoding")) {
+            stage.addItems(nVertices);
+            forEach("node-decoding", nVertices, null, (first, last) -> {
+                for (int i = first; i < last; ++i) {
+                    longitudes[i] = getLongitude(i);
+                    latitudes[i] = getLatitude(i);
+                }
+            });
+        }
+
+        // Position of the successors of each vertex and of their points.
+        SuccessorIndex index = scanSuccessors(1);
+        int[] offsets = index.arcs;
+        long[] positions = index.positions, points = index.points;
+        if (2 * points[nVertices] > Integer.MAX_VALUE) {
+            throw new IOException("too many points for a compact graph: " + points[nVertices]);
+        }
+
+        // Arcs.
+        int nArcs = offsets[nVertices];
+        int[] targets = new int[nArcs], arcInfos = new int[nArcs],
+                polylineStarts = new int[nArcs], polylineSizes = new int[nArcs];
+        double[] lengths = new double[nArcs];
+        double[] polylines = new double[(int) (2 * points[nVertices])];
+        try (Stage stage = report.start("arc-decoding")) {
+            stage.addItems(nArcs);
+            forEach("arc-decoding", nVertices, positions, (first, last) -> {
+                int headerSize = getArcHeaderSize();
+                for (int i = first; i < last; ++i) {
+                    long arcPosition = arcsStart + positions[i];
+                    int point = (int) points[i];
+                    for (int arc = offsets[i]; arc < offsets[i + 1]; ++arc) {
+                        targets[arc] = getTarget(arcPosition);
+                        arcInfos[arc] = getDistinctInfo(arcPosition, arc);
+                        lengths[arc] = getLength(arcPosition);
+                        int size = getNumberOfPoints(arcPosition);
+                        polylineStarts[arc] = point;
+                        polylineSizes[arc] = size;
+                        arcPosition += headerSize;
+                        double longitude = longitudes[i], latitude = latitudes[i];
+                        for (int k = 0; k < size; ++k, ++point, arcPosition += 4) {
+                            longitude += untruncate(input.getShort(arcPosition)) / 2.e5;
+                            latitude += untruncate(input.getShort(arcPosition + 2)) / 2.e5;
+                            polylines[2 * point] = longitude;
+                            polylines[2 * point + 1] = latitude;
+                        }
+                    }
+                }
+            });
+        }
+
+        return new CompactGraph(mapId, mapName, longitudes, latitudes, offsets, targets,
+                arcInfos, lengths, polylineStarts, polylineSizes, polylines, roadInformations);
+    }
+
+    /**
+     * Check the destination and road information of an arc.
+     *
+     * @param position Position of the arc.
+     * @param arc Index of the arc.
+     *
+     * @return Index of the distinct road information of the arc.
+     *
+     * @throws UncheckedIOException if the arc is not valid.
+     */
+    protected int getDistinctInfo(long position, int arc) {
+        checkFormat(getTarget(position) < numberOfVertices,
+                "invalid destination for arc " + arc + ".");
+        int info = getInfo(position);
+        checkFormat(info < numberOfInfos, "invalid road information for arc " + arc + ".");
+        return distinct[info];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the position of the successors of every {@value #VIEW_INDEX_STRIDE}
+     * vertices is kept in memory, and each thread keeps the position after the last
+     * vertex it accessed, so that vertices accessed in order are decoded in
+     * constant time. The reader must not be reused while the view is used.
+     */
+    @Override
+    public Graph readGraphView() throws IOException {
+        try {
+            this.input = new MappedInput(channel, 0, channel.size());
+            readLayout();
+            SuccessorIndex index = scanSuccessors(VIEW_INDEX_STRIDE);
+            ThreadLocal<ViewCursor> cursors = ThreadLocal.withInitial(ViewCursor::new);
+            return new Graph(mapId, mapName, new AbstractList<Vertex>() {
+
+                @Override
+                public Vertex get(int vertex) {
+                    return createVertex(index, cursors.get(), vertex);
+                }
+
+                @Override
+                public int size() {
+                    return numberOfVertices;
+                }
+            }, roadInformations);
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Create a Vertex for the given vertex, with its successors, decoded from the
+     * input. Destination of the successors are created without their own
+     * successors.
+     *
+     * @param index Index of the successors section.
+     * @param cursor Cursor of the current thread, updated to the next vertex.
+     * @param vertex Index of a vertex.
+     *
+     * @return New Vertex corresponding to the given vertex.
+     *
+     * @throws UncheckedIOException if an arc of the vertex is not valid.
+     */
+    protected Vertex createVertex(SuccessorIndex index, ViewCursor cursor, int vertex) {
+        int headerSize = getArcHeaderSize();
+
+        // Skip the successors of the previous vertices, from the cursor if it is
+        // before the vertex and after the entry of the vertex.
+        int entry = vertex / index.stride;
+        if (cursor.vertex > vertex || cursor.vertex < entry * index.stride) {
+            cursor.vertex = entry * index.stride;
+            cursor.position = arcsStart + index.positions[entry];
+            cursor.arc = index.arcs[entry];
+        }
+        long position = cursor.position;
+        int arc = cursor.arc;
+        for (int i = cursor.vertex; i < vertex; ++i) {
+            for (int k = getDegree(i); k > 0; --k, ++arc) {
+                position += headerSize + 4L * getNumberOfPoints(position);
+            }
+        }
+
+        Vertex origin = new Vertex(vertex, new Point(getLongitude(vertex), getLatitude(vertex)));
+        for (int k = getDegree(vertex); k > 0; --k, ++arc) {
+            int target = getTarget(position);
+            RoadInformation info = roadInformations.get(getDistinctInfo(position, arc));
+            double length = getLength(position);
+            int size = getNumberOfPoints(position);
+            Point destination = new Point(getLongitude(target), getLatitude(target));
+            List<Point> points = new ArrayList<>(size + 2);
+            points.add(origin.getPoint());
+            position += headerSize;
+            double longitude = origin.getPoint().getLongitude(),
+                    latitude = origin.getPoint().getLatitude();
+            for (int i = 0; i < size; ++i, position += 4) {
+                longitude += untruncate(input.getShort(position)) / 2.e5;
+                latitude += untruncate(input.getShort(position + 2)) / 2.e5;
+                points.add(new Point(longitude, latitude));
+            }
+            points.add(destination);
+            new Arc(arc, origin, new Vertex(target, destination), length, info, points);
+        }
+        cursor.vertex = vertex + 1;
+        cursor.position = position;
+        cursor.arc = arc;
+        return origin;
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return DEFAULT_EXTENSION;
+    }
+
+}
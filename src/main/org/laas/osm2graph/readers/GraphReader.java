@@ -0,0 +1,79 @@
+package org.laas.osm2graph.readers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import org.laas.osm2graph.graph.CompactGraph;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
+
+public interface GraphReader {
+
+    /**
+     * Set the input channel for this reader. The channel is closed once the graph
+     * has been read.
+     * 
+     * @param channel
+     */
+    public void setInputChannel(FileChannel channel);
+
+    /**
+     * Set the executor that the reader may use to decode the graph in parallel.
+     * The default implementation ignores the executor.
+     * 
+     * @param executor
+     */
+    public default void setExecutor(ParallelExecutor executor) {
+    }
+
+    /**
+     * Set the report where the reader records its stages. The default
+     * implementation ignores the report.
+     * 
+     * @param report
+     */
+    public default void setRunReport(RunReport report) {
+    }
+
+    /**
+     * Read a graph in its compact form using this reader.
+     * 
+     * @return The graph read.
+     * 
+     * @throws IOException
+     */
+    public CompactGraph readCompactGraph() throws IOException;
+
+    /**
+     * Read a graph using this reader. The default implementation reads the graph
+     * in its compact form and converts it (see {@link CompactGraph#toGraph()}).
+     * 
+     * @return The graph read.
+     * 
+     * @throws IOException
+     */
+    public default Graph readGraph() throws IOException {
+        return readCompactGraph().toGraph();
+    }
+
+    /**
+     * Read a graph as a view, whose vertices are decoded from the input on demand
+     * (see {@link CompactGraph#asGraph()}), so that graphs larger than the memory
+     * can be traversed. The input must not be modified while the view is used.
+     * The default implementation reads the whole graph (see {@link #readGraph()}).
+     * 
+     * @return A view of the graph read.
+     * 
+     * @throws IOException
+     */
+    public default Graph readGraphView() throws IOException {
+        return readGraph();
+    }
+
+    /**
+     * @return Default extension of the files read by this reader.
+     */
+    public String getDefaultExtension();
+
+}
@@ -0,0 +1,68 @@
+package org.laas.osm2graph.readers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.laas.osm2graph.graph.MappedGraph;
+
+public class GraphReaderFactory {
+
+    // Allowed readers (same names as the corresponding writers).
+    public final static Map<String, Class<? extends GraphReader>> ALLOWED_READERS = new HashMap<String, Class<? extends GraphReader>>();
+
+    // Name of the reader for each magic number (first 4 bytes of a file, read as
+    // a big-endian integer).
+    private final static Map<Integer, String> MAGIC_NUMBERS = new HashMap<Integer, String>();
+
+    /**
+     * @param name
+     * @return
+     */
+    public static final GraphReader graphReaderFromName(String name) {
+        Class<? extends GraphReader> cls = ALLOWED_READERS.getOrDefault(name.toLowerCase(), null);
+        if (cls == null) {
+            return null;
+        }
+        try {
+            return cls.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Find the reader of the file of the given channel from its magic number. The
+     * position of the channel is not changed.
+     * 
+     * @param channel Readable channel of a graph file.
+     * 
+     * @return Name of the reader for the file, or null if the format is unknown.
+     * 
+     * @throws IOException
+     */
+    public static final String detectReader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return MAGIC_NUMBERS.get(buffer.getInt(0));
+    }
+
+    static {
+        ALLOWED_READERS.put("insa2016", BinaryGraphReaderInsa2016.class);
+        ALLOWED_READERS.put("insa2018", BinaryGraphReaderInsa2018.class);
+        ALLOWED_READERS.put("mapped", MappedGraphReader.class);
+
+        MAGIC_NUMBERS.put(BinaryGraphReaderInsa2016.MAGIC_NUMBER, "insa2016");
+        MAGIC_NUMBERS.put(BinaryGraphReaderInsa2018.MAGIC_NUMBER, "insa2018");
+        // Mapped files are little-endian.
+        MAGIC_NUMBERS.put(Integer.reverseBytes(MappedGraph.MAGIC_NUMBER), "mapped");
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.laas.osm2graph.readers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import org.laas.osm2graph.graph.CompactGraph;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.graph.MappedGraph;
+
+/**
+ * This reader reads files generated by
+ * {@link org.laas.osm2graph.writers.BinaryGraphWriterMapped} through a
+ * {@link MappedGraph}, so views do not decode anything when they are read.
+ */
+public class MappedGraphReader implements GraphReader {
+
+    private static final String DEFAULT_EXTENSION = "mapgm";
+
+    // Input channel.
+    FileChannel channel;
+
+    @Override
+    public void setInputChannel(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Map the input and close the channel.
+     *
+     * @return The mapped graph.
+     *
+     * @throws IOException
+     */
+    protected MappedGraph open() throws IOException {
+        try {
+            return MappedGraph.open(channel);
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public CompactGraph readCompactGraph() throws IOException {
+        MappedGraph graph = open();
+        int nVertices = graph.getNumberOfVertices(), nArcs = graph.getNumberOfArcs();
+        double[] longitudes = new double[nVertices], latitudes = new double[nVertices];
+        int[] offsets = new int[nVertices + 1];
+        for (int vertex = 0; vertex < nVertices; ++vertex) {
+            longitudes[vertex] = graph.getLongitude(vertex);
+            latitudes[vertex] = graph.getLatitude(vertex);
+            offsets[vertex] = graph.getFirstArc(vertex);
+        }
+        offsets[nVertices] = nArcs;
+
+        int[] targets = new int[nArcs], infos = new int[nArcs], polylineStarts = new int[nArcs],
+                polylineSizes = new int[nArcs];
+        double[] lengths = new double[nArcs];
+        int nPoints = 0;
+        for (int arc = 0; arc < nArcs; ++arc) {
+            polylineStarts[arc] = nPoints;
+            polylineSizes[arc] = graph.getNumberOfIntermediatePoints(arc);
+            nPoints += polylineSizes[arc];
+            if (nPoints > Integer.MAX_VALUE / 2) {
+                throw new IOException("too many points for a compact graph.");
+            }
+        }
+        double[] polylines = new double[2 * nPoints];
+        for (int arc = 0; arc < nArcs; ++arc) {
+            targets[arc] = graph.getTarget(arc);
+            infos[arc] = graph.getRoadInformationIndex(arc);
+            lengths[arc] = graph.getLength(arc);
+            for (int i = 0; i < polylineSizes[arc]; ++i) {
+                polylines[2 * (polylineStarts[arc] + i)] = graph.getPointLongitude(arc, i);
+                polylines[2 * (polylineStarts[arc] + i) + 1] = graph.getPointLatitude(arc, i);
+            }
+        }
+
+        return new CompactGraph(graph.getMapId(), graph.getMapName(), longitudes, latitudes,
+                offsets, targets, infos, lengths, polylineStarts, polylineSizes, polylines,
+                graph.getRoadInformations());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The view is the one of the mapped graph (see {@link MappedGraph#asGraph()}).
+     */
+    @Override
+    public Graph readGraphView() throws IOException {
+        return open().asGraph();
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return DEFAULT_EXTENSION;
+    }
+
+}
@@ -0,0 +1,171 @@
+package org.laas.osm2graph.readers;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only region of a file mapped in memory through windows of limited size,
+ * allowing random big-endian reads at any offset of the region. Reads do not
+ * change the state of the region, so they can be done concurrently.
+ */
+public class MappedInput {
+
+    // Size of the windows (1GB).
+    private static final int WINDOW_BITS = 30;
+    private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+
+    // Windows.
+    private final MappedByteBuffer[] windows;
+
+    // Size of the region.
+    private final long size;
+
+    /**
+     * @param channel Channel of the file, must be readable.
+     * @param position Position of the region in the file.
+     * @param size Size of the region.
+     *
+     * @throws IOException
+     */
+    public MappedInput(FileChannel channel, long position, long size) throws IOException {
+        this.size = size;
+        this.windows = new MappedByteBuffer[(int) ((size + WINDOW_MASK) >>> WINDOW_BITS)];
+        for (int i = 0; i < windows.length; ++i) {
+            long offset = (long) i << WINDOW_BITS;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                    Math.min(size - offset, 1L << WINDOW_BITS));
+        }
+    }
+
+    /**
+     * @return Size of the region, in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Check that the given number of bytes can be read at the given offset.
+     *
+     * @param offset
+     * @param length
+     *
+     * @throws EOFException if the bytes are outside of the region.
+     */
+    public void check(long offset, long length) throws EOFException {
+        if (offset < 0 || offset + length > size) {
+            throw new EOFException("reading " + length + " bytes at " + offset
+                    + " past the end of the input (" + size + " bytes).");
+        }
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Byte at the given offset.
+     */
+    public byte get(long offset) {
+        return windows[(int) (offset >>> WINDOW_BITS)].get((int) (offset & WINDOW_MASK));
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Unsigned byte at the given offset.
+     */
+    public int getUnsignedByte(long offset) {
+        return get(offset) & 0xff;
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Short at the given offset.
+     */
+    public short getShort(long offset) {
+        int index = (int) (offset & WINDOW_MASK);
+        MappedByteBuffer window = windows[(int) (offset >>> WINDOW_BITS)];
+        if (index + 2 <= window.limit()) {
+            return window.getShort(index);
+        }
+        return (short) ((getUnsignedByte(offset) << 8) | getUnsignedByte(offset + 1));
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Unsigned short at the given offset.
+     */
+    public int getUnsignedShort(long offset) {
+        return getShort(offset) & 0xffff;
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Unsigned 24-bits integer at the given offset.
+     */
+    public int get24bits(long offset) {
+        return (getUnsignedShort(offset) << 8) | getUnsignedByte(offset + 2);
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Integer at the given offset.
+     */
+    public int getInt(long offset) {
+        int index = (int) (offset & WINDOW_MASK);
+        MappedByteBuffer window = windows[(int) (offset >>> WINDOW_BITS)];
+        if (index + 4 <= window.limit()) {
+            return window.getInt(index);
+        }
+        return (getUnsignedShort(offset) << 16) | getUnsignedShort(offset + 2);
+    }
+
+    /**
+     * @param offset Offset in the region.
+     *
+     * @return Long at the given offset.
+     */
+    public long getLong(long offset) {
+        return ((long) getInt(offset) << 32) | (getInt(offset + 4) & 0xffffffffL);
+    }
+
+    /**
+     * Read bytes from the region.
+     *
+     * @param offset Offset in the region.
+     * @param dst Array to read bytes into.
+     * @param off Offset in dst.
+     * @param len Number of bytes to read.
+     */
+    public void get(long offset, byte[] dst, int off, int len) {
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = get(offset + i);
+        }
+    }
+
+    /**
+     * Read a string written with {@link java.io.DataOutput#writeUTF(String)}.
+     *
+     * @param offset Offset of the string (its length) in the region.
+     *
+     * @return The string, which uses 2 bytes plus its length (see
+     *         {@link #getUnsignedShort(long)}) in the region.
+     *
+     * @throws IOException if the string is not correctly encoded.
+     */
+    public String getUTF(long offset) throws IOException {
+        int length = getUnsignedShort(offset);
+        check(offset, 2 + length);
+        byte[] bytes = new byte[2 + length];
+        get(offset, bytes, 0, bytes.length);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+}
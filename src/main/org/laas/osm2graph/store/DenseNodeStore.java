@@ -0,0 +1,122 @@
+package org.laas.osm2graph.store;
+
+import java.util.Arrays;
+
+/**
+ * Node store that keeps nodes contiguously in two primitive arrays (IDs and
+ * packed coordinates) and uses binary search for lookups. This uses 16 bytes
+ * per node whatever the distribution of IDs, which makes it the best choice for
+ * regional extracts.
+ * 
+ * Nodes are usually received ordered by ID, if they are not, the arrays are
+ * sorted once in {@link #complete()}.
+ */
+public class DenseNodeStore implements NodeStore {
+
+    // Initial and maximum capacity of the arrays.
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE - 8;
+
+    // IDs and packed coordinates.
+    private long[] ids, coordinates;
+
+    // Number of nodes.
+    private int size;
+
+    // true if ids are in increasing order.
+    private boolean sorted;
+
+    public DenseNodeStore() {
+        this.ids = new long[INITIAL_CAPACITY];
+        this.coordinates = new long[INITIAL_CAPACITY];
+        this.size = 0;
+        this.sorted = true;
+    }
+
+    @Override
+    public void put(long id, double longitude, double latitude) {
+        if (size == ids.length) {
+            if (size == MAXIMUM_CAPACITY) {
+                throw new IllegalArgumentException("too many nodes for the dense node store ("
+                        + MAXIMUM_CAPACITY + "), use node-store=sparse or node-store=mapped.");
+            }
+            int capacity = (int) Math.min(ids.length + (long) (ids.length >> 1),
+                    MAXIMUM_CAPACITY);
+            ids = Arrays.copyOf(ids, capacity);
+            coordinates = Arrays.copyOf(coordinates, capacity);
+        }
+        if (size > 0 && ids[size - 1] >= id) {
+            sorted = false;
+        }
+        ids[size] = id;
+        coordinates[size] = NodeStore.pack(NodeStore.toFixed(longitude),
+                NodeStore.toFixed(latitude));
+        size += 1;
+    }
+
+    @Override
+    public void complete() {
+        if (!sorted) {
+            sort(0, size - 1);
+            sorted = true;
+        }
+        ids = Arrays.copyOf(ids, size);
+        coordinates = Arrays.copyOf(coordinates, size);
+    }
+
+    @Override
+    public long get(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return MISSING;
+        }
+        return coordinates[index];
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Sort both arrays by ID between first and last (included).
+     * 
+     * @param first
+     * @param last
+     */
+    private void sort(int first, int last) {
+        while (first < last) {
+            long pivot = ids[(first + last) >>> 1];
+            int i = first, j = last;
+            while (i <= j) {
+                while (ids[i] < pivot) {
+                    ++i;
+                }
+                while (ids[j] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse on the smaller part to bound the stack depth.
+            if (j - first < last - i) {
+                sort(first, j);
+                first = i;
+            }
+            else {
+                sort(i, last);
+                last = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long id = ids[i], coordinate = coordinates[i];
+        ids[i] = ids[j];
+        coordinates[i] = coordinates[j];
+        ids[j] = id;
+        coordinates[j] = coordinate;
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.laas.osm2graph.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Node store indexed directly by OSM ID and backed by a memory-mapped temporary
+ * file, so that coordinates live outside of the Java heap. The file is sparse
+ * (8 bytes per possible ID), which makes this store suited for planet-sized
+ * inputs where IDs are dense.
+ * 
+ * The temporary file is removed when the store is closed.
+ */
+public class MappedNodeStore implements NodeStore {
+
+    // Number of bytes per node.
+    private static final int NODE_SIZE = 8;
+
+    // Number of nodes per mapped segment (log2), 128M nodes = 1GB.
+    private static final int SEGMENT_BITS = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    // Latitudes are stored with their sign bit flipped, so that the zero-filled
+    // content of the file does not correspond to a valid coordinate.
+    private static final int LATITUDE_FLIP = Integer.MIN_VALUE;
+
+    // Backing file and channel (created on first insertion).
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    // Mapped segments, indexed by id >>> SEGMENT_BITS.
+    private MappedByteBuffer[] segments;
+
+    // Number of nodes.
+    private long size;
+
+    public MappedNodeStore() {
+        this.segments = new MappedByteBuffer[0];
+        this.size = 0;
+    }
+
+    /**
+     * @param index Index of the segment.
+     * 
+     * @return The segment at the given index, mapping it if necessary.
+     * 
+     * @throws IOException
+     */
+    private MappedByteBuffer getOrMapSegment(int index) throws IOException {
+        if (channel == null) {
+            file = File.createTempFile("osm2graph-nodes", ".bin");
+            file.deleteOnExit();
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+        }
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+        }
+        if (segments[index] == null) {
+            segments[index] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    ((long) index << SEGMENT_BITS) * NODE_SIZE, (1L << SEGMENT_BITS) * NODE_SIZE);
+        }
+        return segments[index];
+    }
+
+    @Override
+    public void put(long id, double longitude, double latitude) {
+        if (id < 0) {
+            throw new IllegalArgumentException(
+                    "negative node IDs are not supported by this node store: " + id);
+        }
+        try {
+            MappedByteBuffer segment = getOrMapSegment((int) (id >>> SEGMENT_BITS));
+            int offset = (int) (id & SEGMENT_MASK) * NODE_SIZE;
+            if (segment.getInt(offset + 4) == 0) {
+                size += 1;
+            }
+            segment.putInt(offset, NodeStore.toFixed(longitude));
+            segment.putInt(offset + 4, NodeStore.toFixed(latitude) ^ LATITUDE_FLIP);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("unable to map node store file", e);
+        }
+    }
+
+    @Override
+    public void complete() {
+    }
+
+    @Override
+    public long get(long id) {
+        long index = id >>> SEGMENT_BITS;
+        if (id < 0 || index >= segments.length || segments[(int) index] == null) {
+            return MISSING;
+        }
+        MappedByteBuffer segment = segments[(int) index];
+        int offset = (int) (id & SEGMENT_MASK) * NODE_SIZE;
+        int latitude = segment.getInt(offset + 4);
+        if (latitude == 0) {
+            return MISSING;
+        }
+        return NodeStore.pack(segment.getInt(offset), latitude ^ LATITUDE_FLIP);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments = new MappedByteBuffer[0];
+        if (channel != null) {
+            channel.close();
+            raf.close();
+            file.delete();
+            channel = null;
+        }
+    }
+
+}
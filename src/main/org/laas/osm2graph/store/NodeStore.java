@@ -0,0 +1,121 @@
+package org.laas.osm2graph.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.laas.osm2graph.graph.Point;
+
+/**
+ * Storage for the coordinates of OSM nodes, keyed by OSM ID.
+ * 
+ * Coordinates are kept as fixed-point integers (1e-7 degree, which is the
+ * precision of OSM data) and are packed into a single long (longitude in the
+ * high 32 bits, latitude in the low 32 bits) so that lookups do not allocate.
+ * 
+ * Nodes are added from the osmosis thread only. Once {@link #complete()} has
+ * been called, the store is read-only and can be queried concurrently.
+ */
+public interface NodeStore extends Closeable {
+
+    /**
+     * Value returned by {@link #get(long)} when a node is not in the store.
+     */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    /**
+     * Number of fixed-point units per degree.
+     */
+    public static final double FIXED_PRECISION = 1e7;
+
+    /**
+     * @param degrees Coordinate to convert, in degrees.
+     * 
+     * @return Fixed-point value for the given coordinate.
+     */
+    public static int toFixed(double degrees) {
+        return (int) Math.round(degrees * FIXED_PRECISION);
+    }
+
+    /**
+     * @param fixed Fixed-point coordinate to convert.
+     * 
+     * @return Coordinate in degrees.
+     */
+    public static double fromFixed(int fixed) {
+        return fixed / FIXED_PRECISION;
+    }
+
+    /**
+     * @param longitude Fixed-point longitude.
+     * @param latitude Fixed-point latitude.
+     * 
+     * @return Packed coordinates.
+     */
+    public static long pack(int longitude, int latitude) {
+        return ((long) longitude << 32) | (latitude & 0xffffffffL);
+    }
+
+    /**
+     * @param packed Packed coordinates.
+     * 
+     * @return Fixed-point longitude of the packed coordinates.
+     */
+    public static int longitude(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * @param packed Packed coordinates.
+     * 
+     * @return Fixed-point latitude of the packed coordinates.
+     */
+    public static int latitude(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Add a node to this store.
+     * 
+     * @param id OSM ID of the node.
+     * @param longitude Longitude of the node, in degrees.
+     * @param latitude Latitude of the node, in degrees.
+     */
+    public void put(long id, double longitude, double latitude);
+
+    /**
+     * Indicate that all nodes have been added to this store.
+     */
+    public void complete();
+
+    /**
+     * @param id OSM ID of the node.
+     * 
+     * @return Packed coordinates of the node, or {@link #MISSING} if the node is
+     *         not in this store.
+     */
+    public long get(long id);
+
+    /**
+     * @return Number of nodes in this store.
+     */
+    public long size();
+
+    /**
+     * @param id OSM ID of the node.
+     * 
+     * @return Point corresponding to the given node, or null if the node is not in
+     *         this store.
+     */
+    public default Point getPoint(long id) {
+        long packed = get(id);
+        if (packed == MISSING) {
+            return null;
+        }
+        return new Point(fromFixed(longitude(packed)), fromFixed(latitude(packed)));
+    }
+
+    @Override
+    public default void close() throws IOException {
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.laas.osm2graph.store;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NodeStoreFactory {
+
+    // Default node store.
+    public final static String DEFAULT_STORE = "dense";
+
+    // Allowed node stores
+    public final static Map<String, Class<? extends NodeStore>> ALLOWED_STORES = new HashMap<String, Class<? extends NodeStore>>();
+
+    /**
+     * @param name
+     * @return
+     */
+    public static final NodeStore nodeStoreFromName(String name) {
+        Class<? extends NodeStore> cls = ALLOWED_STORES.getOrDefault(name.toLowerCase(), null);
+        if (cls == null) {
+            return null;
+        }
+        try {
+            return cls.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static {
+        ALLOWED_STORES.put("dense", DenseNodeStore.class);
+        ALLOWED_STORES.put("sparse", SparseNodeStore.class);
+        ALLOWED_STORES.put("mapped", MappedNodeStore.class);
+    }
+
+}
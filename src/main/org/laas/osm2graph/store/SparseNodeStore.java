@@ -0,0 +1,78 @@
+package org.laas.osm2graph.store;
+
+import java.util.Arrays;
+
+/**
+ * Node store indexed directly by OSM ID, split into fixed-size pages that are
+ * only allocated when a node falls inside them. Lookups are O(1), and memory
+ * usage is good as long as IDs are clustered (which is the case for extracts
+ * filtered with --used-node).
+ */
+public class SparseNodeStore implements NodeStore {
+
+    // Number of nodes per page (log2).
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Pages, indexed by id >>> PAGE_BITS.
+    private long[][] pages;
+
+    // Number of nodes.
+    private long size;
+
+    public SparseNodeStore() {
+        this.pages = new long[1024][];
+        this.size = 0;
+    }
+
+    @Override
+    public void put(long id, double longitude, double latitude) {
+        if (id < 0) {
+            throw new IllegalArgumentException(
+                    "negative node IDs are not supported by this node store: " + id);
+        }
+        long pageIndex = id >>> PAGE_BITS;
+        if (pageIndex >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("node ID is too large for this node store: " + id);
+        }
+        if (pageIndex >= pages.length) {
+            pages = Arrays.copyOf(pages,
+                    (int) Math.min(Integer.MAX_VALUE - 1, Math.max(pageIndex + 1, 2L * pages.length)));
+        }
+        long[] page = pages[(int) pageIndex];
+        if (page == null) {
+            page = new long[PAGE_SIZE];
+            Arrays.fill(page, MISSING);
+            pages[(int) pageIndex] = page;
+        }
+        int offset = (int) (id & PAGE_MASK);
+        if (page[offset] == MISSING) {
+            size += 1;
+        }
+        page[offset] = NodeStore.pack(NodeStore.toFixed(longitude), NodeStore.toFixed(latitude));
+    }
+
+    @Override
+    public void complete() {
+    }
+
+    @Override
+    public long get(long id) {
+        long pageIndex = id >>> PAGE_BITS;
+        if (id < 0 || pageIndex >= pages.length) {
+            return MISSING;
+        }
+        long[] page = pages[(int) pageIndex];
+        if (page == null) {
+            return MISSING;
+        }
+        return page[(int) (id & PAGE_MASK)];
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+}
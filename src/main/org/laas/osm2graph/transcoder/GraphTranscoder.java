@@ -0,0 +1,293 @@
+package org.laas.osm2graph.transcoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.laas.osm2graph.graph.Arc;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.graph.Point;
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.graph.Vertex;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.ParallelExecutor.PhaseUsage;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
+import org.laas.osm2graph.readers.GraphReader;
+import org.laas.osm2graph.readers.GraphReaderFactory;
+import org.laas.osm2graph.writers.GraphWriter;
+import org.laas.osm2graph.writers.GraphWriterFactory;
+import org.laas.osm2graph.writers.StreamingGraphWriter;
+
+/**
+ * Standalone entry point converting an existing graph file to another format,
+ * without the OSM input it was generated from.
+ *
+ * The input is read as a view (see {@link GraphReader#readGraphView()}), so its
+ * vertices are decoded from the mapped file when the writer accesses them and
+ * are not all kept in memory. Writers implementing {@link StreamingGraphWriter}
+ * receive the arcs in a single parallel pass over the vertices, so that only
+ * per-vertex data is kept in memory. Arguments use the same key=value syntax as
+ * the osm2graph task:
+ *
+ * <pre>
+ * java -cp ... org.laas.osm2graph.transcoder.GraphTranscoder input=in.mapgr \
+ *     file=out.mapgv writer=varint threads=4
+ * </pre>
+ */
+public class GraphTranscoder {
+
+    private static final Logger LOGGER = Logger.getLogger(GraphTranscoder.class.getName());
+
+    private static final String PARAM_INFILE = "input";
+    private static final String PARAM_READER = "reader";
+    private static final String PARAM_OUTFILE = "file";
+    private static final String PARAM_WRITER = "writer";
+    private static final String PARAM_MAPID = "id";
+    private static final String PARAM_MAPNAME = "name";
+    private static final String PARAM_THREADS = "threads";
+    private static final String PARAM_REPORT = "report";
+
+    // Configuration of the output, and input file with its reader.
+    private final OSM2GraphConfiguration configuration;
+    private final File inputFile;
+    private final GraphReader reader;
+
+    /**
+     * @param arguments Arguments of the transcoder, as key=value strings.
+     *
+     * @throws IllegalArgumentException if an argument is invalid.
+     * @throws IOException if the format of the input file cannot be detected.
+     */
+    public GraphTranscoder(String[] arguments) throws IllegalArgumentException, IOException {
+        Map<String, String> values = new HashMap<>();
+        for (String argument: arguments) {
+            int index = argument.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("invalid argument: " + argument
+                        + ", arguments must be key=value.");
+            }
+            values.put(argument.substring(0, index), argument.substring(index + 1));
+        }
+
+        String input = values.remove(PARAM_INFILE);
+        if (input == null) {
+            throw new IllegalArgumentException("missing input file (" + PARAM_INFILE + "=).");
+        }
+        this.inputFile = new File(input);
+        if (!inputFile.isFile()) {
+            throw new IllegalArgumentException("input file " + input + " does not exist.");
+        }
+        String readerType = values.remove(PARAM_READER);
+        if (readerType == null) {
+            try (FileChannel channel = FileChannel.open(inputFile.toPath())) {
+                readerType = GraphReaderFactory.detectReader(channel);
+            }
+            if (readerType == null) {
+                throw new IllegalArgumentException("unknown format for " + input
+                        + ", specify its reader (" + PARAM_READER + "=).");
+            }
+        }
+        this.reader = GraphReaderFactory.graphReaderFromName(readerType);
+        if (this.reader == null) {
+            throw new IllegalArgumentException("unrecognized reader: " + readerType);
+        }
+
+        this.configuration = new OSM2GraphConfiguration();
+        configuration.addGraphWriter(
+                values.getOrDefault(PARAM_WRITER, GraphWriterFactory.DEFAULT_WRITER));
+        values.remove(PARAM_WRITER);
+        String output = values.remove(PARAM_OUTFILE);
+        if (output == null) {
+            throw new IllegalArgumentException("missing output file (" + PARAM_OUTFILE + "=).");
+        }
+        configuration.addOutputFile(output);
+        configuration.setMapId(values.remove(PARAM_MAPID));
+        configuration.setMapName(values.remove(PARAM_MAPNAME));
+        try {
+            configuration.setThreads(Integer.parseInt(values.getOrDefault(PARAM_THREADS, "1")));
+            values.remove(PARAM_THREADS);
+        }
+        catch (NumberFormatException exception) {
+            throw new IllegalArgumentException(PARAM_THREADS + " must be an integer.");
+        }
+        configuration.setWriteReport(Boolean.parseBoolean(values.remove(PARAM_REPORT)));
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("unknown arguments: " + values.keySet());
+        }
+    }
+
+    /**
+     * Read the input file and write it using the configured writer. The map ID and
+     * name of the input are kept unless other ones are configured (the name is
+     * dropped for writers that do not store it, see
+     * {@link GraphWriter#validate(OSM2GraphConfiguration)}).
+     *
+     * @throws IllegalArgumentException if the configuration is invalid for the
+     *         input graph.
+     * @throws IOException if the input cannot be read or the output written.
+     */
+    public void run() throws IllegalArgumentException, IOException {
+        RunReport report = configuration.getRunReport();
+        reader.setInputChannel(FileChannel.open(inputFile.toPath(), StandardOpenOption.READ));
+        reader.setExecutor(configuration.getExecutor());
+        reader.setRunReport(report);
+        Graph view;
+        try (Stage stage = report.start("reading")) {
+            view = reader.readGraphView();
+            stage.addItems(view.getNodes().size());
+        }
+
+        if (configuration.getMapId() == null) {
+            configuration.setMapId(view.getMapId());
+        }
+        if (configuration.getMapName() == null && view.getMapName() != null) {
+            // Keep the name of the input, unless the writer does not store names.
+            configuration.setMapName(view.getMapName());
+            try {
+                configuration.getGraphWriter().validate(configuration);
+            }
+            catch (IllegalArgumentException exception) {
+                configuration.setMapName(null);
+            }
+        }
+        configuration.validate();
+        Graph graph = new Graph(configuration.getMapId(), configuration.getMapName(),
+                view.getNodes(), view.getRoadInformations());
+
+        File output = configuration.getOutputFile();
+        if (output.exists()) {
+            LOGGER.info("overwriting file " + output.getAbsolutePath());
+            output.delete();
+        }
+        GraphWriter writer = configuration.getGraphWriter();
+        writer.setOutputChannel(FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        writer.setExecutor(configuration.getExecutor());
+        writer.setRunReport(report);
+        try (Stage stage = report.start("writing")) {
+            stage.addItems(graph.getNodes().size());
+            if (writer instanceof StreamingGraphWriter && graph.getRoadInformations() != null) {
+                stream(graph, (StreamingGraphWriter) writer);
+            }
+            else {
+                writer.writeGraph(graph);
+            }
+        }
+
+        for (Stage stage: report.getStages()) {
+            LOGGER.info("stage " + stage);
+        }
+        for (PhaseUsage usage: configuration.getExecutor().getPhaseUsages()) {
+            LOGGER.info("phase " + usage);
+        }
+        if (configuration.isWriteReport()) {
+            File file = configuration.getReportFile();
+            report.writeJson(file, configuration, configuration.getExecutor().getPhaseUsages(),
+                    Collections.emptyList());
+            LOGGER.info("run report written to " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Write the given graph with the given streaming writer, in a single parallel
+     * pass over its vertices. Arcs keep their index in the input, so the arcs of
+     * each vertex are written in their input order.
+     * 
+     * @param graph Graph to write, with its road informations.
+     * @param writer Writer to use, its output must have been set.
+     * 
+     * @throws IOException
+     */
+    protected void stream(Graph graph, StreamingGraphWriter writer) throws IOException {
+        List<Vertex> nodes = graph.getNodes();
+        List<RoadInformation> roadInformations = graph.getRoadInformations();
+        Map<RoadInformation, Integer> infos = new HashMap<>();
+        for (RoadInformation info: roadInformations) {
+            infos.put(info, infos.size());
+        }
+        writer.beginGraph(graph.getMapId(), graph.getMapName(), nodes.size(), roadInformations);
+
+        // Vertices are written once all of them have been decoded with their arcs.
+        double[] longitudes = new double[nodes.size()], latitudes = new double[nodes.size()];
+        try {
+            configuration.getExecutor().forEach("transcoding", nodes.size(), (first, last) -> {
+                double[] xs = new double[64], ys = new double[64];
+                for (int i = first; i < last; ++i) {
+                    Vertex vertex = nodes.get(i);
+                    longitudes[i] = vertex.getPoint().getLongitude();
+                    latitudes[i] = vertex.getPoint().getLatitude();
+                    for (Arc arc: vertex.getSuccessors()) {
+                        List<Point> points = arc.getPoints();
+                        if (xs.length < points.size()) {
+                            xs = new double[Math.max(points.size(), 2 * xs.length)];
+                            ys = new double[xs.length];
+                        }
+                        for (int k = 0; k < points.size(); ++k) {
+                            xs[k] = points.get(k).getLongitude();
+                            ys[k] = points.get(k).getLatitude();
+                        }
+                        writer.writeArc(arc.getId(), i, (int) arc.getDestination().getId(),
+                                arc.getLength(), infos.get(arc.getInfo()), xs, ys, 1,
+                                points.size() - 1);
+                    }
+                }
+            });
+        }
+        catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        writer.writeVertices(longitudes, latitudes);
+        writer.endGraph();
+    }
+
+    /**
+     * Release the resources used by the transcoder.
+     */
+    public void close() {
+        configuration.getExecutor().close();
+    }
+
+    public static void main(String[] args) {
+        GraphTranscoder transcoder;
+        try {
+            transcoder = new GraphTranscoder(args);
+        }
+        catch (IllegalArgumentException | IOException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println("usage: " + GraphTranscoder.class.getName() + " " + PARAM_INFILE
+                    + "=<file> " + PARAM_OUTFILE + "=<file> [" + PARAM_READER + "=<reader>] ["
+                    + PARAM_WRITER + "=<writer>] [" + PARAM_MAPID + "=<id>] [" + PARAM_MAPNAME
+                    + "=<name>] [" + PARAM_THREADS + "=<n>] [" + PARAM_REPORT + "=true]");
+            System.exit(1);
+            return;
+        }
+        int status = 0;
+        try {
+            transcoder.run();
+        }
+        catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            status = 1;
+        }
+        catch (IOException exception) {
+            LOGGER.log(Level.SEVERE, "error while transcoding", exception);
+            status = 1;
+        }
+        finally {
+            transcoder.close();
+        }
+        System.exit(status);
+    }
+
+}
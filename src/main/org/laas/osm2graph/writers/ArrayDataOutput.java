@@ -0,0 +1,39 @@
+package org.laas.osm2graph.writers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * DataOutput writing into a fixed region of a byte array, used to encode parts
+ * of a file independently before writing them in order.
+ */
+public class ArrayDataOutput extends ByteBufferDataOutput {
+
+    /**
+     * @param array Array to write into.
+     * @param offset Offset of the first byte to write.
+     * @param length Number of bytes available.
+     */
+    public ArrayDataOutput(byte[] array, int offset, int length) {
+        this.buffer = ByteBuffer.wrap(array, offset, length);
+    }
+
+    /**
+     * @return Number of bytes that can still be written.
+     */
+    public int getRemaining() {
+        return buffer.remaining();
+    }
+
+    @Override
+    protected void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            throw new IOException("region is full, cannot write " + size + " more bytes");
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
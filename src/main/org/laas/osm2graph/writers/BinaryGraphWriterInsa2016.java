@@ -1,11 +1,17 @@
 package org.laas.osm2graph.writers;
 
+import java.io.Closeable;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.laas.osm2graph.graph.Arc;
 import org.laas.osm2graph.graph.Graph;
@@ -14,6 +20,8 @@ import org.laas.osm2graph.graph.RoadInformation;
 import org.laas.osm2graph.graph.RoadInformation.RoadType;
 import org.laas.osm2graph.graph.Vertex;
 import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
 
 /**
  * This writer generates files that were used for practice session at INSA of
@@ -79,8 +87,15 @@ public class BinaryGraphWriterInsa2016 implements GraphWriter {
         }
     }
 
-    // Data inpout stream
-    DataOutputStream dos;
+    // Data output, and channel to use instead of a stream (if set).
+    DataOutput dos;
+    WritableByteChannel channel;
+
+    // Report where the stages of the writer are recorded.
+    RunReport report = new RunReport();
+
+    // Counter of the bytes written, or null.
+    LongAdder counter;
 
     /**
      * Create a new BinaryGraphReader using the given DataInputStream.
@@ -93,6 +108,86 @@ public class BinaryGraphWriterInsa2016 implements GraphWriter {
     @Override
     public void setOutputStream(OutputStream stream) {
         this.dos = new DataOutputStream(stream);
+        this.channel = null;
+    }
+
+    @Override
+    public void setOutputChannel(WritableByteChannel channel) {
+        this.channel = channel;
+        this.dos = null;
+    }
+
+    @Override
+    public void setRunReport(RunReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public void setOutputCounter(LongAdder counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * @param arc
+     * 
+     * @return Number of bytes used by the given arc in the successors section.
+     */
+    protected static long getArcSize(Arc arc) {
+        return 1 + 3 + 3 + 2 + 2 + 4 * (arc.getPoints().size() - 2);
+    }
+
+    /**
+     * Compute the size of the file that will be written for the given graph.
+     * 
+     * @param graph
+     * @param infos Sorted road informations.
+     * 
+     * @return Size of the file, in bytes.
+     */
+    protected long getFileSize(Graph graph, RoadInformation[] infos) {
+        List<Vertex> nodes = graph.getNodes();
+        long size = 4 + 4 + 4 + 4 + 4 + 4;
+        size += 9L * nodes.size() + 1;
+        for (RoadInformation info: infos) {
+            size += 1 + 1 + ByteBufferDataOutput.getUTFLength(info.getName());
+        }
+        size += 1;
+        for (Vertex node: nodes) {
+            for (Arc arc: node.getSuccessors()) {
+                size += getArcSize(arc);
+            }
+        }
+        return size + 1;
+    }
+
+    /**
+     * Open the output channel, if any. The output is memory-mapped if the channel
+     * is a readable file channel.
+     * 
+     * @param graph
+     * @param infos Sorted road informations.
+     * 
+     * @throws IOException
+     */
+    protected void openOutput(Graph graph, RoadInformation[] infos) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (channel instanceof FileChannel) {
+            try {
+                MappedDataOutput output = new MappedDataOutput((FileChannel) channel,
+                        getFileSize(graph, infos));
+                output.setCounter(counter);
+                dos = output;
+                return;
+            }
+            catch (NonReadableChannelException exception) {
+                // Cannot map write-only channels, fall back to a buffered channel.
+            }
+        }
+        ChannelDataOutput output = new ChannelDataOutput(channel);
+        output.setCounter(counter);
+        dos = output;
     }
 
     /**
@@ -106,6 +201,34 @@ public class BinaryGraphWriterInsa2016 implements GraphWriter {
         dos.writeByte(value & 0xff);
     }
 
+    /**
+     * Index the road informations of the given graph, using the road informations
+     * known by the graph if any, or the ones of its arcs otherwise.
+     * 
+     * @param graph
+     * 
+     * @return Map from road information to its index in the file.
+     */
+    protected IdentityHashMap<RoadInformation, Integer> getRoadInformations(Graph graph) {
+        List<RoadInformation> known = graph.getRoadInformations();
+        if (known == null) {
+            return getRoadInformations(graph.getNodes());
+        }
+        IdentityHashMap<RoadInformation, Integer> rinfos = new IdentityHashMap<RoadInformation, Integer>();
+        for (RoadInformation info: known) {
+            rinfos.put(info, rinfos.size());
+        }
+        return rinfos;
+    }
+
+    /**
+     * Index the road informations used by the arcs leaving the given nodes, in
+     * order of first use.
+     * 
+     * @param nodes
+     * 
+     * @return Map from road information to its index in the file.
+     */
     protected IdentityHashMap<RoadInformation, Integer> getRoadInformations(List<Vertex> nodes) {
         IdentityHashMap<RoadInformation, Integer> rinfos = new IdentityHashMap<RoadInformation, Integer>();
         for (Vertex node: nodes) {
@@ -121,20 +244,26 @@ public class BinaryGraphWriterInsa2016 implements GraphWriter {
     @Override
     public void writeGraph(Graph graph) throws IOException {
 
-        dos.writeInt(MAGIC_NUMBER);
-        dos.writeInt(VERSION);
-
-        dos.writeInt(parseMapId(graph.getMapId()));
-        dos.writeInt(DEFAULT_ZONE);
-
         List<Vertex> nodes = graph.getNodes();
-        IdentityHashMap<RoadInformation, Integer> infos = getRoadInformations(nodes);
+        IdentityHashMap<RoadInformation, Integer> infos;
+        try (Stage stage = report.start("descriptor-collection")) {
+            infos = getRoadInformations(graph);
+            stage.addItems(infos.size());
+        }
 
         RoadInformation[] sortedInfos = new RoadInformation[infos.size()];
         for (Map.Entry<RoadInformation, Integer> entry: infos.entrySet()) {
             sortedInfos[entry.getValue()] = entry.getKey();
         }
 
+        openOutput(graph, sortedInfos);
+
+        dos.writeInt(MAGIC_NUMBER);
+        dos.writeInt(VERSION);
+
+        dos.writeInt(parseMapId(graph.getMapId()));
+        dos.writeInt(DEFAULT_ZONE);
+
         // Number of descriptors and nodes.
         dos.writeInt(infos.size());
         dos.writeInt(nodes.size());
@@ -182,13 +311,13 @@ public class BinaryGraphWriterInsa2016 implements GraphWriter {
 
                 // Number of segments.
                 List<Point> points = arc.getPoints();
-                dos.writeShort(points.size() - 2);
+                dos.writeShort(BinaryGraphWriterInsa2018.getNumberOfSegments(points.size()));
 
                 for (int i = 1; i < points.size() - 1; ++i) {
-                    dos.writeShort((int) (2.e5
-                            * (points.get(i).getLongitude() - points.get(i - 1).getLongitude())));
-                    dos.writeShort((int) (2.e5
-                            * (points.get(i).getLatitude() - points.get(i - 1).getLatitude())));
+                    dos.writeShort(BinaryGraphWriterInsa2018.getPointDelta(
+                            points.get(i - 1).getLongitude(), points.get(i).getLongitude()));
+                    dos.writeShort(BinaryGraphWriterInsa2018.getPointDelta(
+                            points.get(i - 1).getLatitude(), points.get(i).getLatitude()));
                 }
             }
         }
@@ -196,8 +325,7 @@ public class BinaryGraphWriterInsa2016 implements GraphWriter {
         // Check format.
         dos.writeByte(253);
 
-        dos.flush();
-        dos.close();
+        ((Closeable) dos).close();
     }
 
     public String getDefaultExtension() {
@@ -1,13 +1,22 @@
 package org.laas.osm2graph.writers;
 
+import java.io.Closeable;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.laas.osm2graph.graph.Arc;
 import org.laas.osm2graph.graph.Graph;
@@ -16,6 +25,9 @@ import org.laas.osm2graph.graph.RoadInformation;
 import org.laas.osm2graph.graph.RoadInformation.RoadType;
 import org.laas.osm2graph.graph.Vertex;
 import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
 
 /**
  * This writer generates files that are used for practice session at INSA of
@@ -24,7 +36,7 @@ import org.laas.osm2graph.model.OSM2GraphConfiguration;
  * @author Mikael
  *
  */
-public class BinaryGraphWriterInsa2018 implements GraphWriter {
+public class BinaryGraphWriterInsa2018 implements StreamingGraphWriter {
 
     // Map version and magic number targeted for this reader.
     private static final int VERSION = 8;
@@ -34,6 +46,42 @@ public class BinaryGraphWriterInsa2018 implements GraphWriter {
 
     private static final int MAP_ID_FIELD_LENGTH = 32;
 
+    // Number of bytes used by each vertex in the nodes section.
+    private static final int NODE_SIZE = 9;
+
+    // Maximum number of bytes encoded in memory before being written.
+    private static final int BATCH_SIZE = 64 << 20;
+
+    /**
+     * Maximum number of points of an arc, including its origin and destination (the
+     * number of intermediate points is stored on 16 bits).
+     */
+    public static final int MAXIMUM_NUMBER_OF_POINTS = 0xffff + 2;
+
+    /**
+     * Maximum difference of longitude or latitude between two consecutive points of
+     * an arc, in degrees (differences are stored on 16 bits, in 1/2e5 degrees).
+     */
+    public static final double MAXIMUM_POINT_DELTA = Short.MAX_VALUE / 2.e5;
+
+    /**
+     * Encoder for a range of vertices of a section of the file.
+     */
+    protected interface SectionEncoder {
+
+        /**
+         * Encode vertices starting at first up to last (not included).
+         * 
+         * @param out Output to write to.
+         * @param first
+         * @param last
+         * 
+         * @throws IOException
+         */
+        public void encode(DataOutput out, int first, int last) throws IOException;
+
+    }
+
     /**
      * Convert a character to its corresponding road type.
      * 
@@ -85,8 +133,27 @@ public class BinaryGraphWriterInsa2018 implements GraphWriter {
         return 'k';
     }
 
-    // Data inpout stream
-    DataOutputStream dos;
+    // Data output, and channel to use instead of a stream (if set).
+    DataOutput dos;
+    WritableByteChannel channel;
+
+    // Executor used to encode sections in parallel (if set).
+    ParallelExecutor executor;
+
+    // Report where the stages of the writer are recorded.
+    RunReport report = new RunReport();
+
+    // Streaming state: output file, number of vertices, position of the nodes and
+    // successors sections, degree and size of the successors of each vertex, and
+    // spill file receiving the encoded arcs.
+    FileChannel file;
+    int numberOfVertices;
+    long nodesStart, arcsStart;
+    AtomicIntegerArray degrees, arcSizes;
+    SpillFile spill;
+
+    // Counter of the bytes written, or null.
+    LongAdder counter;
 
     /**
      * Create a new BinaryGraphReader using the given DataInputStream.
@@ -99,65 +166,217 @@ public class BinaryGraphWriterInsa2018 implements GraphWriter {
     @Override
     public void setOutputStream(OutputStream stream) {
         this.dos = new DataOutputStream(stream);
+        this.channel = null;
+    }
+
+    @Override
+    public void setOutputChannel(WritableByteChannel channel) {
+        this.channel = channel;
+        this.dos = null;
+    }
+
+    @Override
+    public void setExecutor(ParallelExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void setRunReport(RunReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public void setOutputCounter(LongAdder counter) {
+        this.counter = counter;
     }
 
     /**
-     * Write 24 bits to the stream in BigEndian order.
+     * @param arc
      * 
-     * @param value
-     * @throws IOException
+     * @return Number of bytes used by the given arc in the successors section.
      */
-    protected void write24bits(int value) throws IOException {
-        dos.writeShort(value >> 8);
-        dos.writeByte(value & 0xff);
+    protected static long getArcSize(Arc arc) {
+        return 3 + 3 + 4 + 2 + 4 * (arc.getPoints().size() - 2);
     }
 
-    protected Map<RoadInformation, Integer> getRoadInformations(List<Vertex> nodes) {
-        Map<RoadInformation, Integer> rinfos = new HashMap<>();
-        for (Vertex node: nodes) {
-            for (Arc arc: node.getSuccessors()) {
-                if (!rinfos.containsKey(arc.getInfo())) {
-                    rinfos.put(arc.getInfo(), rinfos.size());
+    /**
+     * Compute the offsets of the successors of each vertex in the successors
+     * section.
+     * 
+     * @param nodes
+     * 
+     * @return Array of length nodes.size() + 1 where the i-th element is the number
+     *         of bytes used by the successors of the vertices before i.
+     */
+    protected long[] getArcOffsets(List<Vertex> nodes) {
+        long[] offsets = new long[nodes.size() + 1];
+        ParallelExecutor.RangeTask task = (first, last) -> {
+            for (int i = first; i < last; ++i) {
+                long size = 0;
+                for (Arc arc: nodes.get(i).getSuccessors()) {
+                    size += getArcSize(arc);
                 }
+                offsets[i + 1] = size;
             }
+        };
+        if (executor != null) {
+            executor.forEach("arc-sizing", nodes.size(), task);
         }
-        return rinfos;
+        else {
+            task.run(0, nodes.size());
+        }
+        for (int i = 0; i < nodes.size(); ++i) {
+            offsets[i + 1] += offsets[i];
+        }
+        return offsets;
     }
 
-    @Override
-    public void writeGraph(Graph graph) throws IOException {
+    /**
+     * @param mapName
+     * 
+     * @return Size of the header of the file, in bytes.
+     */
+    protected static long getHeaderSize(String mapName) {
+        return 4 + 4 + MAP_ID_FIELD_LENGTH + ByteBufferDataOutput.getUTFLength(mapName) + 4 + 4;
+    }
 
-        dos.writeInt(MAGIC_NUMBER);
-        dos.writeInt(VERSION);
+    /**
+     * Compute the size of the file that will be written for the given graph.
+     * 
+     * @param graph
+     * @param infos Sorted road informations.
+     * @param arcsSize Size of the successors section, in bytes.
+     * 
+     * @return Size of the file, in bytes.
+     */
+    protected long getFileSize(Graph graph, RoadInformation[] infos, long arcsSize) {
+        long size = getHeaderSize(graph.getMapName());
+        size += (long) NODE_SIZE * graph.getNodes().size() + 1;
+        for (RoadInformation info: infos) {
+            size += 1 + 1 + 8 + ByteBufferDataOutput.getUTFLength(info.getName());
+        }
+        return size + 1 + arcsSize + 1;
+    }
 
-        dos.write(Arrays.copyOf(graph.getMapId().getBytes("UTF-8"), MAP_ID_FIELD_LENGTH));
-        dos.writeUTF(graph.getMapName());
+    /**
+     * Open the output channel, if any. The output is memory-mapped if the channel
+     * is a readable file channel.
+     * 
+     * @param graph
+     * @param infos Sorted road informations.
+     * @param arcsSize Size of the successors section, in bytes.
+     * 
+     * @throws IOException
+     */
+    protected void openOutput(Graph graph, RoadInformation[] infos, long arcsSize)
+            throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (channel instanceof FileChannel) {
+            try {
+                MappedDataOutput output = new MappedDataOutput((FileChannel) channel,
+                        getFileSize(graph, infos, arcsSize));
+                output.setCounter(counter);
+                dos = output;
+                return;
+            }
+            catch (NonReadableChannelException exception) {
+                // Cannot map write-only channels, fall back to a buffered channel.
+            }
+        }
+        ChannelDataOutput output = new ChannelDataOutput(channel);
+        output.setCounter(counter);
+        dos = output;
+    }
 
-        List<Vertex> nodes = graph.getNodes();
-        Map<RoadInformation, Integer> infos = getRoadInformations(nodes);
+    /**
+     * @param size Number of points of an arc, including its origin and destination.
+     * 
+     * @return Number of segments stored for the arc (its number of intermediate
+     *         points).
+     * 
+     * @throws IllegalArgumentException if the arc has more than
+     *         {@link #MAXIMUM_NUMBER_OF_POINTS} points.
+     */
+    protected static int getNumberOfSegments(int size) {
+        if (size > MAXIMUM_NUMBER_OF_POINTS) {
+            throw new IllegalArgumentException("arc with " + size
+                    + " points cannot be written, at most " + MAXIMUM_NUMBER_OF_POINTS
+                    + " points are allowed.");
+        }
+        return size - 2;
+    }
 
-        RoadInformation[] sortedInfos = new RoadInformation[infos.size()];
-        for (Map.Entry<RoadInformation, Integer> entry: infos.entrySet()) {
-            sortedInfos[entry.getValue()] = entry.getKey();
+    /**
+     * @param from Longitude or latitude of a point, in degrees.
+     * @param to Longitude or latitude of the next point, in degrees.
+     * 
+     * @return Difference between the two values, as stored in the file.
+     * 
+     * @throws IllegalArgumentException if the difference is larger than
+     *         {@link #MAXIMUM_POINT_DELTA}.
+     */
+    protected static int getPointDelta(double from, double to) {
+        int delta = (int) (2.e5 * (to - from));
+        if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("points " + from + " and " + to
+                    + " are too far apart to be written, at most " + MAXIMUM_POINT_DELTA
+                    + " degrees are allowed.");
         }
+        return delta;
+    }
+
+    /**
+     * Write 24 bits to the given output in BigEndian order.
+     * 
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    protected static void write24bits(DataOutput out, int value) throws IOException {
+        out.writeShort(value >> 8);
+        out.writeByte(value & 0xff);
+    }
+
+    /**
+     * Write the header of the file.
+     * 
+     * @param mapId
+     * @param mapName
+     * @param numberOfInfos Number of road informations.
+     * @param numberOfNodes Number of vertices.
+     * 
+     * @throws IOException
+     */
+    protected void writeHeader(String mapId, String mapName, int numberOfInfos,
+            int numberOfNodes) throws IOException {
+        dos.writeInt(MAGIC_NUMBER);
+        dos.writeInt(VERSION);
+
+        dos.write(Arrays.copyOf(mapId.getBytes("UTF-8"), MAP_ID_FIELD_LENGTH));
+        dos.writeUTF(mapName);
 
         // Number of descriptors and nodes.
-        dos.writeInt(infos.size());
-        dos.writeInt(nodes.size());
+        dos.writeInt(numberOfInfos);
+        dos.writeInt(numberOfNodes);
+    }
 
-        // Read nodes.
-        for (Vertex v: nodes) {
-            dos.writeInt((int) (v.getPoint().getLongitude() * 1e6));
-            dos.writeInt((int) (v.getPoint().getLatitude() * 1e6));
-            dos.writeByte(v.getSuccessors().size());
-        }
+    /**
+     * Write the descriptors section, including the format checks around it.
+     * 
+     * @param infos Sorted road informations.
+     * 
+     * @throws IOException
+     */
+    protected void writeDescriptors(RoadInformation[] infos) throws IOException {
 
         // Check format.
         dos.writeByte(255);
 
         // Read
-        for (int descr = 0; descr < sortedInfos.length; ++descr) {
-            RoadInformation info = sortedInfos[descr];
+        for (int descr = 0; descr < infos.length; ++descr) {
+            RoadInformation info = infos[descr];
             dos.writeByte(getCharFromType(info.getType()));
             int x = info.getMaximumSpeed() / 5;
             if (info.isOneWay()) {
@@ -170,38 +389,413 @@ public class BinaryGraphWriterInsa2018 implements GraphWriter {
 
         // Check format.
         dos.writeByte(254);
+    }
 
-        // Read successors and convert to arcs.
-        for (Vertex node: nodes) {
-            for (Arc arc: node.getSuccessors()) {
+    /**
+     * Write a section of the file. If an executor with more than one thread is
+     * available, ranges of vertices are encoded in parallel into memory, by
+     * batches of limited size, and then written in order.
+     * 
+     * @param phase Name of the phase (for reporting).
+     * @param size Number of vertices.
+     * @param offsets Offsets of each vertex in the section (see
+     *        {@link #getArcOffsets(List)}), or null if each vertex uses itemSize
+     *        bytes.
+     * @param itemSize Number of bytes per vertex if offsets is null.
+     * @param encoder Encoder for the section.
+     * 
+     * @throws IOException
+     */
+    protected void writeSection(String phase, int size, long[] offsets, int itemSize,
+            SectionEncoder encoder) throws IOException {
+        if (executor == null || executor.getThreads() < 2) {
+            encoder.encode(dos, 0, size);
+            return;
+        }
+        int first = 0;
+        while (first < size) {
+
+            // Find the largest range of vertices that fits in a batch.
+            final int from = first;
+            final long base = offsets == null ? (long) itemSize * from : offsets[from];
+            int last;
+            if (offsets == null) {
+                last = from + Math.min(size - from, Math.max(1, BATCH_SIZE / itemSize));
+            }
+            else {
+                int lo = from + 1, hi = size;
+                while (lo < hi) {
+                    int mid = (lo + hi + 1) >>> 1;
+                    if (offsets[mid] - base <= BATCH_SIZE) {
+                        lo = mid;
+                    }
+                    else {
+                        hi = mid - 1;
+                    }
+                }
+                last = lo;
+            }
+
+            long[] prefix = offsets == null ? null
+                    : Arrays.copyOfRange(offsets, from, last + 1);
+            byte[] batch = new byte[(int) ((offsets == null ? (long) itemSize * last
+                    : offsets[last]) - base)];
+            try {
+                executor.forEach(phase, last - from, prefix, (start, end) -> {
+                    int offset = prefix == null ? itemSize * start
+                            : (int) (prefix[start] - prefix[0]);
+                    int length = prefix == null ? itemSize * (end - start)
+                            : (int) (prefix[end] - prefix[start]);
+                    ArrayDataOutput out = new ArrayDataOutput(batch, offset, length);
+                    try {
+                        encoder.encode(out, from + start, from + end);
+                    }
+                    catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                    if (out.getRemaining() != 0) {
+                        throw new IllegalStateException("encoded " + (length - out.getRemaining())
+                                + " bytes instead of " + length + " during " + phase + ".");
+                    }
+                });
+            }
+            catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            dos.write(batch);
+            first = last;
+        }
+    }
+
+    /**
+     * Encode vertices of the nodes section.
+     * 
+     * @param out
+     * @param nodes
+     * @param first
+     * @param last
+     * 
+     * @throws IOException
+     */
+    protected void writeNodes(DataOutput out, List<Vertex> nodes, int first, int last)
+            throws IOException {
+        for (int i = first; i < last; ++i) {
+            Vertex v = nodes.get(i);
+            out.writeInt((int) (v.getPoint().getLongitude() * 1e6));
+            out.writeInt((int) (v.getPoint().getLatitude() * 1e6));
+            out.writeByte(v.getSuccessors().size());
+        }
+    }
+
+    /**
+     * Encode successors of vertices of the successors section.
+     * 
+     * @param out
+     * @param nodes
+     * @param infos Indices of road informations.
+     * @param first
+     * @param last
+     * 
+     * @throws IOException
+     */
+    protected void writeArcs(DataOutput out, List<Vertex> nodes,
+            Map<RoadInformation, Integer> infos, int first, int last) throws IOException {
+        for (int n = first; n < last; ++n) {
+            for (Arc arc: nodes.get(n).getSuccessors()) {
 
                 // Read target node number.
-                write24bits((int) arc.getDestination().getId());
+                write24bits(out, (int) arc.getDestination().getId());
 
                 // Read information number.
-                write24bits(infos.get(arc.getInfo()));
+                write24bits(out, infos.get(arc.getInfo()));
 
                 // Length of the arc.
-                dos.writeInt((int) (arc.getLength() * 1000));
+                out.writeInt((int) (arc.getLength() * 1000));
 
                 // Number of segments.
                 List<Point> points = arc.getPoints();
-                dos.writeShort(points.size() - 2);
+                out.writeShort(getNumberOfSegments(points.size()));
 
                 for (int i = 1; i < points.size() - 1; ++i) {
-                    dos.writeShort((int) (2.e5
-                            * (points.get(i).getLongitude() - points.get(i - 1).getLongitude())));
-                    dos.writeShort((int) (2.e5
-                            * (points.get(i).getLatitude() - points.get(i - 1).getLatitude())));
+                    out.writeShort(getPointDelta(points.get(i - 1).getLongitude(),
+                            points.get(i).getLongitude()));
+                    out.writeShort(getPointDelta(points.get(i - 1).getLatitude(),
+                            points.get(i).getLatitude()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Index the road informations of the given graph, using the road informations
+     * known by the graph if any, or the ones of its arcs otherwise.
+     * 
+     * @param graph
+     * 
+     * @return Map from road information to its index in the file.
+     */
+    protected Map<RoadInformation, Integer> getRoadInformations(Graph graph) {
+        List<RoadInformation> known = graph.getRoadInformations();
+        if (known == null) {
+            return getRoadInformations(graph.getNodes());
+        }
+        Map<RoadInformation, Integer> rinfos = new HashMap<>();
+        for (RoadInformation info: known) {
+            rinfos.put(info, rinfos.size());
+        }
+        return rinfos;
+    }
+
+    /**
+     * Index the road informations used by the arcs leaving the given nodes, in
+     * order of first use.
+     * 
+     * @param nodes
+     * 
+     * @return Map from road information to its index in the file.
+     */
+    protected Map<RoadInformation, Integer> getRoadInformations(List<Vertex> nodes) {
+        Map<RoadInformation, Integer> rinfos = new HashMap<>();
+        for (Vertex node: nodes) {
+            for (Arc arc: node.getSuccessors()) {
+                if (!rinfos.containsKey(arc.getInfo())) {
+                    rinfos.put(arc.getInfo(), rinfos.size());
                 }
             }
         }
+        return rinfos;
+    }
+
+    @Override
+    public void writeGraph(Graph graph) throws IOException {
+
+        List<Vertex> nodes = graph.getNodes();
+        Map<RoadInformation, Integer> infos;
+        try (Stage stage = report.start("descriptor-collection")) {
+            infos = getRoadInformations(graph);
+            stage.addItems(infos.size());
+        }
+
+        RoadInformation[] sortedInfos = new RoadInformation[infos.size()];
+        for (Map.Entry<RoadInformation, Integer> entry: infos.entrySet()) {
+            sortedInfos[entry.getValue()] = entry.getKey();
+        }
+
+        long[] arcOffsets = getArcOffsets(nodes);
+        openOutput(graph, sortedInfos, arcOffsets[nodes.size()]);
+
+        writeHeader(graph.getMapId(), graph.getMapName(), infos.size(), nodes.size());
+
+        // Read nodes.
+        writeSection("node-encoding", nodes.size(), null, NODE_SIZE,
+                (out, first, last) -> writeNodes(out, nodes, first, last));
+
+        writeDescriptors(sortedInfos);
+
+        // Read successors and convert to arcs.
+        writeSection("arc-encoding", nodes.size(), arcOffsets, 0,
+                (out, first, last) -> writeArcs(out, nodes, infos, first, last));
 
         // Check format.
         dos.writeByte(253);
 
-        dos.flush();
-        dos.close();
+        ((Closeable) dos).close();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The header and the descriptors are written immediately, and the nodes
+     * section is written by {@link #writeVertices} with placeholder degrees that
+     * are patched by {@link #endGraph}. Arcs are encoded as they are received into
+     * a spill file, and moved to their final position in the successors section by
+     * {@link #endGraph}. The output must be a readable file channel.
+     */
+    @Override
+    public void beginGraph(String mapId, String mapName, int numberOfVertices,
+            List<RoadInformation> roadInformations) throws IOException {
+        if (!(channel instanceof FileChannel)) {
+            throw new IOException("streaming output requires a file channel.");
+        }
+        this.file = (FileChannel) channel;
+        this.numberOfVertices = numberOfVertices;
+        this.nodesStart = getHeaderSize(mapName);
+        this.degrees = new AtomicIntegerArray(numberOfVertices);
+        this.arcSizes = new AtomicIntegerArray(numberOfVertices);
+
+        ChannelDataOutput output = new ChannelDataOutput(file);
+        output.setCounter(counter);
+        dos = output;
+
+        file.position(0);
+        writeHeader(mapId, mapName, roadInformations.size(), numberOfVertices);
+        output.flush();
+
+        file.position(nodesStart + (long) NODE_SIZE * numberOfVertices);
+        writeDescriptors(roadInformations.toArray(new RoadInformation[0]));
+        output.flush();
+        this.arcsStart = file.position();
+
+        this.spill = new SpillFile();
+        spill.setCounter(counter);
+    }
+
+    @Override
+    public void writeVertices(double[] longitudes, double[] latitudes) throws IOException {
+        file.position(nodesStart);
+        writeSection("node-encoding", numberOfVertices, null, NODE_SIZE, (out, first, last) -> {
+            for (int i = first; i < last; ++i) {
+                out.writeInt((int) (longitudes[i] * 1e6));
+                out.writeInt((int) (latitudes[i] * 1e6));
+                out.writeByte(0);
+            }
+        });
+        ((ChannelDataOutput) dos).flush();
+    }
+
+    @Override
+    public void writeArc(long arc, int origin, int destination, double length, int info,
+            double[] longitudes, double[] latitudes, int from, int to) {
+        int size = 3 + 3 + 4 + 2 + 4 * (to - from);
+        ByteBuffer buffer = spill.startRecord(origin, 8 + size);
+
+        // Index of the arc, used by endGraph to order the arcs of each vertex.
+        buffer.putLong(arc);
+
+        // Target node number and information number.
+        buffer.putShort((short) (destination >> 8));
+        buffer.put((byte) destination);
+        buffer.putShort((short) (info >> 8));
+        buffer.put((byte) info);
+
+        // Length of the arc and number of segments.
+        buffer.putInt((int) (length * 1000));
+        buffer.putShort((short) getNumberOfSegments(to - from + 2));
+
+        for (int i = from; i < to; ++i) {
+            buffer.putShort((short) getPointDelta(longitudes[i - 1], longitudes[i]));
+            buffer.putShort((short) getPointDelta(latitudes[i - 1], latitudes[i]));
+        }
+
+        degrees.incrementAndGet(origin);
+        arcSizes.addAndGet(origin, size);
+    }
+
+    @Override
+    public void endGraph() throws IOException {
+
+        // Position of the successors of each vertex, and index of their first arc.
+        long[] starts = new long[numberOfVertices + 1];
+        int[] firstArcs = new int[numberOfVertices + 1];
+        long arcsSize = 0, nArcs = 0;
+        for (int i = 0; i < numberOfVertices; ++i) {
+            starts[i] = arcsSize;
+            firstArcs[i] = (int) nArcs;
+            arcsSize += arcSizes.get(i);
+            nArcs += degrees.get(i);
+            if (nArcs > Integer.MAX_VALUE) {
+                throw new IOException("too many arcs for streaming output: " + nArcs + ".");
+            }
+        }
+        starts[numberOfVertices] = arcsSize;
+        firstArcs[numberOfVertices] = (int) nArcs;
+        this.arcSizes = null;
+
+        // Check format.
+        long end = arcsStart + arcsSize;
+        file.truncate(end + 1);
+        file.write(ByteBuffer.wrap(new byte[] { (byte) 253 }), end);
+
+        // Patch degrees.
+        if (numberOfVertices > 0) {
+            MappedRegion nodes = new MappedRegion(file, nodesStart,
+                    (long) NODE_SIZE * numberOfVertices);
+            for (int i = 0; i < numberOfVertices; ++i) {
+                nodes.put((long) NODE_SIZE * i + 8, (byte) degrees.get(i));
+            }
+        }
+        this.degrees = null;
+
+        // Gather the arcs of each vertex, with their index, in a staging region of
+        // the spill file (in the order they were spilled), then move them to their
+        // final position in the order of their index.
+        try {
+            if (arcsSize > 0) {
+                MappedRegion staging = spill.map(arcsSize + 8 * nArcs);
+                long[] cursors = new long[numberOfVertices];
+                for (int i = 0; i < numberOfVertices; ++i) {
+                    cursors[i] = starts[i] + 8L * firstArcs[i];
+                }
+                spill.forEach((origin, record) -> {
+                    staging.put(cursors[origin], record);
+                    cursors[origin] += record.remaining();
+                });
+                MappedRegion arcs = new MappedRegion(file, arcsStart, arcsSize);
+                ParallelExecutor.RangeTask task = (first, last) -> {
+                    for (int i = first; i < last; ++i) {
+                        moveArcs(staging, starts[i] + 8L * firstArcs[i], arcs, starts[i],
+                                starts[i + 1] - starts[i], firstArcs[i + 1] - firstArcs[i]);
+                    }
+                };
+                if (executor != null) {
+                    executor.forEach("arc-ordering", numberOfVertices, starts, task);
+                }
+                else {
+                    task.run(0, numberOfVertices);
+                }
+            }
+        }
+        finally {
+            spill.close();
+            this.spill = null;
+        }
+
+        file.close();
+    }
+
+    /**
+     * Move the successors of a vertex from the staging region to the successors
+     * section, in the order of their index in the conversion order.
+     * 
+     * @param staging Staging region, where each successor is preceded by its index.
+     * @param position Position of the successors of the vertex in the staging
+     *        region.
+     * @param arcs Successors section.
+     * @param start Position of the successors of the vertex in the successors
+     *        section.
+     * @param size Size of the successors of the vertex in the successors section.
+     * @param degree Number of successors of the vertex.
+     */
+    protected static void moveArcs(MappedRegion staging, long position, MappedRegion arcs,
+            long start, long size, int degree) {
+        if (degree == 0) {
+            return;
+        }
+
+        // Position of each successor in the staged bytes of the vertex.
+        ByteBuffer bytes = ByteBuffer.allocate((int) (size + 8L * degree));
+        staging.get(position, bytes.array());
+        int[] positions = new int[degree + 1], order = new int[degree];
+        for (int k = 0; k < degree; ++k) {
+            int nPoints = bytes.getShort(positions[k] + 8 + 10) & 0xffff;
+            positions[k + 1] = positions[k] + 8 + 3 + 3 + 4 + 2 + 4 * nPoints;
+        }
+
+        // Insertion sort, the number of successors being small.
+        for (int k = 0; k < degree; ++k) {
+            long rank = bytes.getLong(positions[k]);
+            int j = k;
+            for (; j > 0 && bytes.getLong(positions[order[j - 1]]) > rank; --j) {
+                order[j] = order[j - 1];
+            }
+            order[j] = k;
+        }
+
+        for (int k: order) {
+            int length = positions[k + 1] - positions[k] - 8;
+            arcs.put(start, ByteBuffer.wrap(bytes.array(), positions[k] + 8, length));
+            start += length;
+        }
     }
 
     public String getDefaultExtension() {
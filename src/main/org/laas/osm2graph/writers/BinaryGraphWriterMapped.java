@@ -0,0 +1,446 @@
+package org.laas.osm2graph.writers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.laas.osm2graph.graph.Arc;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.graph.MappedGraph;
+import org.laas.osm2graph.graph.Point;
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.graph.Vertex;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
+
+/**
+ * This writer generates files that can be memory-mapped and queried directly
+ * with {@link MappedGraph}, see this class for the layout.
+ *
+ * Arcs leaving each vertex and their intermediate points are counted first, so
+ * that the offset of every value in the file is known, and each section is then
+ * encoded by batches (in parallel if an executor is set) and written in order.
+ */
+public class BinaryGraphWriterMapped implements GraphWriter {
+
+    /**
+     * Encoder of a range of vertices of a section.
+     */
+    protected interface SectionEncoder {
+
+        /**
+         * Encode the values of the vertices from first to last (not included).
+         *
+         * @param out Little-endian buffer to write to.
+         * @param first
+         * @param last
+         */
+        public void encode(ByteBuffer out, int first, int last);
+
+    }
+
+    private static final String DEFAULT_EXTENSION = "mapgm";
+
+    // Maximum number of bytes encoded in memory before being written.
+    private static final int BATCH_SIZE = 16 << 20;
+
+    // Output.
+    ChannelDataOutput output;
+
+    // Executor used to encode sections in parallel (if set).
+    ParallelExecutor executor;
+
+    // Report where the stages of the writer are recorded.
+    RunReport report = new RunReport();
+
+    // Number of bytes written so far.
+    private long position;
+
+    // Counter of the bytes written, or null.
+    LongAdder counter;
+
+    @Override
+    public void setOutputStream(OutputStream stream) {
+        this.output = new ChannelDataOutput(Channels.newChannel(stream));
+        this.output.setCounter(counter);
+    }
+
+    @Override
+    public void setOutputChannel(WritableByteChannel channel) {
+        this.output = new ChannelDataOutput(channel);
+        this.output.setCounter(counter);
+    }
+
+    @Override
+    public void setExecutor(ParallelExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void setRunReport(RunReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public void setOutputCounter(LongAdder counter) {
+        this.counter = counter;
+        if (this.output != null) {
+            this.output.setCounter(counter);
+        }
+    }
+
+    /**
+     * Index the road informations of the given graph, using the road informations
+     * known by the graph if any, or the ones of its arcs otherwise.
+     *
+     * @param graph
+     *
+     * @return Map from road information to its index in the file.
+     */
+    protected Map<RoadInformation, Integer> getRoadInformations(Graph graph) {
+        List<RoadInformation> known = graph.getRoadInformations();
+        Map<RoadInformation, Integer> rinfos = new HashMap<>();
+        if (known != null) {
+            for (RoadInformation info: known) {
+                rinfos.put(info, rinfos.size());
+            }
+            return rinfos;
+        }
+        for (Vertex node: graph.getNodes()) {
+            for (Arc arc: node.getSuccessors()) {
+                if (!rinfos.containsKey(arc.getInfo())) {
+                    rinfos.put(arc.getInfo(), rinfos.size());
+                }
+            }
+        }
+        return rinfos;
+    }
+
+    /**
+     * @param degrees Coordinate, in degrees.
+     *
+     * @return Coordinate in 1e-7 degrees.
+     */
+    protected static int toFixed(double degrees) {
+        return (int) Math.round(degrees * 1e7);
+    }
+
+    /**
+     * Run the given task on the range [0, size), in parallel if an executor is set.
+     *
+     * @param phase Name of the phase (for reporting).
+     * @param size
+     * @param task
+     */
+    protected void forEach(String phase, int size, ParallelExecutor.RangeTask task) {
+        if (executor != null) {
+            executor.forEach(phase, size, task);
+        }
+        else {
+            task.run(0, size);
+        }
+    }
+
+    /**
+     * Write the given little-endian buffer, from its position to its limit.
+     *
+     * @param buffer
+     *
+     * @throws IOException
+     */
+    protected void write(ByteBuffer buffer) throws IOException {
+        position += buffer.remaining();
+        output.write(buffer);
+    }
+
+    /**
+     * Write zeros until the position is aligned on 8 bytes, and check that the
+     * next section starts at the expected offset.
+     *
+     * @param expected Expected offset of the next section.
+     *
+     * @throws IOException
+     */
+    protected void align(long expected) throws IOException {
+        write(ByteBuffer.allocate((int) (MappedGraph.align(position) - position)));
+        if (position != expected) {
+            throw new IllegalStateException(
+                    "section written at " + position + " instead of " + expected + ".");
+        }
+    }
+
+    /**
+     * Write a section of the file. Ranges of vertices are encoded into memory by
+     * batches of limited size, in parallel if an executor is set, and then written
+     * in order.
+     *
+     * @param phase Name of the phase (for reporting).
+     * @param size Number of vertices.
+     * @param counts Prefix sums of the number of values of each vertex, or null
+     *        if each vertex has a single value.
+     * @param valueSize Size of each value, in bytes.
+     * @param encoder Encoder for the section.
+     *
+     * @throws IOException
+     */
+    protected void writeSection(String phase, int size, long[] counts, int valueSize,
+            SectionEncoder encoder) throws IOException {
+        int first = 0;
+        while (first < size) {
+
+            // Find the largest range of vertices that fits in a batch.
+            final int from = first;
+            final long base = counts == null ? from : counts[from];
+            int last;
+            if (counts == null) {
+                last = from + Math.min(size - from, Math.max(1, BATCH_SIZE / valueSize));
+            }
+            else {
+                int lo = from + 1, hi = size;
+                while (lo < hi) {
+                    int mid = (lo + hi + 1) >>> 1;
+                    if ((counts[mid] - base) * valueSize <= BATCH_SIZE) {
+                        lo = mid;
+                    }
+                    else {
+                        hi = mid - 1;
+                    }
+                }
+                last = lo;
+            }
+
+            ByteBuffer batch = ByteBuffer.allocate(
+                    (int) (((counts == null ? last : counts[last]) - base) * valueSize));
+            forEach(phase, last - from, (start, end) -> {
+                ByteBuffer out = batch.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                out.position((int) (((counts == null ? from + start : counts[from + start])
+                        - base) * valueSize));
+                out.limit((int) (((counts == null ? from + end : counts[from + end]) - base)
+                        * valueSize));
+                encoder.encode(out, from + start, from + end);
+                if (out.hasRemaining()) {
+                    throw new IllegalStateException("encoded " + out.remaining()
+                            + " bytes less than expected during " + phase + ".");
+                }
+            });
+            write(batch);
+            first = last;
+        }
+    }
+
+    /**
+     * @param values
+     *
+     * @return Little-endian buffer containing the given values.
+     */
+    protected static ByteBuffer toBuffer(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int value: values) {
+            buffer.putInt(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Add the given string to the string pool if it is not already in it.
+     *
+     * @param pool String pool.
+     * @param offsets Offsets of the strings already in the pool.
+     * @param value String to add, or null.
+     *
+     * @return Offset and length of the string in the pool ({0, -1} for null).
+     */
+    protected static int[] addString(VarintBuffer pool, Map<String, Integer> offsets,
+            String value) {
+        if (value == null) {
+            return new int[] { 0, -1 };
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Integer offset = offsets.get(value);
+        if (offset == null) {
+            offset = pool.size();
+            offsets.put(value, offset);
+            pool.write(bytes, 0, bytes.length);
+        }
+        return new int[] { offset, bytes.length };
+    }
+
+    @Override
+    public void writeGraph(Graph graph) throws IOException {
+
+        List<Vertex> nodes = graph.getNodes();
+        Map<RoadInformation, Integer> infos;
+        try (Stage stage = report.start("descriptor-collection")) {
+            infos = getRoadInformations(graph);
+            stage.addItems(infos.size());
+        }
+
+        RoadInformation[] sortedInfos = new RoadInformation[infos.size()];
+        for (Map.Entry<RoadInformation, Integer> entry: infos.entrySet()) {
+            sortedInfos[entry.getValue()] = entry.getKey();
+        }
+
+        // Number of arcs and intermediate points of each vertex.
+        int nVertices = nodes.size();
+        int[] degrees = new int[nVertices], sizes = new int[nVertices];
+        forEach("arc-counting", nVertices, (start, end) -> {
+            for (int n = start; n < end; ++n) {
+                List<Arc> successors = nodes.get(n).getSuccessors();
+                degrees[n] = successors.size();
+                for (Arc arc: successors) {
+                    sizes[n] += arc.getPoints().size() - 2;
+                }
+            }
+        });
+        long[] arcOffsets = new long[nVertices + 1], pointOffsets = new long[nVertices + 1];
+        for (int n = 0; n < nVertices; ++n) {
+            arcOffsets[n + 1] = arcOffsets[n] + degrees[n];
+            pointOffsets[n + 1] = pointOffsets[n] + sizes[n];
+        }
+        long nArcs = arcOffsets[nVertices], nPoints = pointOffsets[nVertices];
+
+        // String pool and road information records.
+        VarintBuffer strings = new VarintBuffer(1 << 16);
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        int[] mapId = addString(strings, stringOffsets, graph.getMapId());
+        int[] mapName = addString(strings, stringOffsets, graph.getMapName());
+        ByteBuffer descriptors = ByteBuffer
+                .allocate(MappedGraph.DESCRIPTOR_SIZE * sortedInfos.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (RoadInformation info: sortedInfos) {
+            int[] name = addString(strings, stringOffsets, info.getName());
+            int[] type = addString(strings, stringOffsets, info.getType().name());
+            descriptors.putLong(info.getAccess());
+            descriptors.putInt(name[0]).putInt(name[1]);
+            descriptors.putInt(type[0]).putInt(type[1]);
+            descriptors.putInt(info.getMaximumSpeed());
+            descriptors.put((byte) (info.isOneWay() ? 1 : 0));
+            descriptors.put(new byte[3]);
+        }
+        descriptors.flip();
+
+        long[] sections = MappedGraph.getSectionOffsets(nVertices, nArcs, nPoints,
+                sortedInfos.length, strings.size());
+
+        // Header.
+        ByteBuffer header = ByteBuffer.allocate(MappedGraph.HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MappedGraph.MAGIC_NUMBER);
+        header.putInt(MappedGraph.VERSION);
+        header.putInt(nVertices);
+        header.putInt(sortedInfos.length);
+        header.putLong(nArcs);
+        header.putLong(nPoints);
+        header.putInt(mapId[0]).putInt(mapId[1]);
+        header.putInt(mapName[0]).putInt(mapName[1]);
+        for (int i = 0; i < MappedGraph.NUMBER_OF_SECTIONS; ++i) {
+            header.putLong(sections[i]);
+        }
+        header.putLong(strings.size());
+        header.flip();
+        position = 0;
+        write(header);
+
+        // Vertices.
+        align(sections[MappedGraph.SECTION_LONGITUDES]);
+        writeSection("longitude-encoding", nVertices, null, 4, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                out.putInt(toFixed(nodes.get(n).getPoint().getLongitude()));
+            }
+        });
+        align(sections[MappedGraph.SECTION_LATITUDES]);
+        writeSection("latitude-encoding", nVertices, null, 4, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                out.putInt(toFixed(nodes.get(n).getPoint().getLatitude()));
+            }
+        });
+        align(sections[MappedGraph.SECTION_ARC_OFFSETS]);
+        writeSection("offset-encoding", nVertices + 1, null, 4, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                out.putInt((int) arcOffsets[n]);
+            }
+        });
+
+        // Arcs.
+        align(sections[MappedGraph.SECTION_TARGETS]);
+        writeSection("target-encoding", nVertices, arcOffsets, 4, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                for (Arc arc: nodes.get(n).getSuccessors()) {
+                    out.putInt((int) arc.getDestination().getId());
+                }
+            }
+        });
+        align(sections[MappedGraph.SECTION_LENGTHS]);
+        writeSection("length-encoding", nVertices, arcOffsets, 4, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                for (Arc arc: nodes.get(n).getSuccessors()) {
+                    out.putInt((int) Math.round(arc.getLength() * 1000));
+                }
+            }
+        });
+        align(sections[MappedGraph.SECTION_INFOS]);
+        writeSection("info-encoding", nVertices, arcOffsets, 4, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                for (Arc arc: nodes.get(n).getSuccessors()) {
+                    out.putInt(infos.get(arc.getInfo()));
+                }
+            }
+        });
+        align(sections[MappedGraph.SECTION_POLYLINE_OFFSETS]);
+        writeSection("polyline-offset-encoding", nVertices, arcOffsets, 4,
+                (out, first, last) -> {
+                    for (int n = first; n < last; ++n) {
+                        int offset = (int) pointOffsets[n];
+                        for (Arc arc: nodes.get(n).getSuccessors()) {
+                            out.putInt(offset);
+                            offset += arc.getPoints().size() - 2;
+                        }
+                    }
+                });
+        write(toBuffer((int) nPoints));
+
+        // Intermediate points.
+        align(sections[MappedGraph.SECTION_POINTS]);
+        writeSection("point-encoding", nVertices, pointOffsets, 8, (out, first, last) -> {
+            for (int n = first; n < last; ++n) {
+                for (Arc arc: nodes.get(n).getSuccessors()) {
+                    List<Point> points = arc.getPoints();
+                    for (int i = 1; i < points.size() - 1; ++i) {
+                        out.putInt(toFixed(points.get(i).getLongitude()));
+                        out.putInt(toFixed(points.get(i).getLatitude()));
+                    }
+                }
+            }
+        });
+
+        // Road informations and strings.
+        align(sections[MappedGraph.SECTION_DESCRIPTORS]);
+        write(descriptors);
+        align(sections[MappedGraph.SECTION_STRINGS]);
+        write(ByteBuffer.wrap(strings.array(), 0, strings.size()));
+        align(sections[MappedGraph.NUMBER_OF_SECTIONS]);
+
+        output.close();
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return DEFAULT_EXTENSION;
+    }
+
+    @Override
+    public void validate(OSM2GraphConfiguration configuration) throws IllegalArgumentException {
+    }
+
+}
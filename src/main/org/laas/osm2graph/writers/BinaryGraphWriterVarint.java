@@ -0,0 +1,378 @@
+package org.laas.osm2graph.writers;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+import org.laas.osm2graph.graph.Arc;
+import org.laas.osm2graph.graph.Graph;
+import org.laas.osm2graph.graph.Point;
+import org.laas.osm2graph.graph.RoadInformation;
+import org.laas.osm2graph.graph.Vertex;
+import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
+import org.laas.osm2graph.model.RunReport.Stage;
+
+/**
+ * This writer generates compact block-structured files, where most values are
+ * stored as varints (see {@link VarintBuffer}).
+ *
+ * The file contains (fixed-size values are big-endian):
+ * <ul>
+ * <li>A header: magic number and version (int), map ID and map name (UTF),
+ * flags (byte, 1 if blocks are deflated), number of vertices per block, number
+ * of road informations and number of vertices (int).</li>
+ * <li>The descriptors section, between the bytes 255 and 254: size of the
+ * section (int) followed by the number of distinct road names, each name (varint
+ * length and UTF-8 bytes), and for each road information, its type character,
+ * its maximum speed / 5 (with 0x80 if one-way), its access mask and the index
+ * of its name, all as varints.</li>
+ * <li>The blocks, each holding a fixed number of consecutive vertices with the
+ * arcs leaving them: uncompressed and stored sizes (int) followed by the stored
+ * bytes.</li>
+ * <li>The byte 253, the offset of each block in the file (long) and the offset
+ * of these offsets (long), so that blocks can be located and decoded
+ * independently.</li>
+ * </ul>
+ *
+ * In a block, each vertex is stored as the zig-zag deltas of its coordinates (in
+ * 1e-7 degrees) with the previous vertex of the block, and its number of arcs.
+ * Each arc is then stored as the zig-zag delta between its destination and its
+ * origin, the index of its road information, its length (in millimeters), its
+ * number of intermediate points and the zig-zag deltas of the coordinates of
+ * each point with the previous one (starting from the origin). Deltas are small
+ * when vertices close to each other have close indices, e.g. with
+ * vertex-order=hilbert.
+ */
+public class BinaryGraphWriterVarint implements GraphWriter {
+
+    /**
+     * Same writer with deflated blocks.
+     */
+    public static class Deflated extends BinaryGraphWriterVarint {
+
+        public Deflated() {
+            super(true);
+        }
+
+    }
+
+    // Map version and magic number targeted for this reader.
+    private static final int VERSION = 1;
+    private static final int MAGIC_NUMBER = 0x208BC3B5;
+
+    private static final String DEFAULT_EXTENSION = "mapgv";
+
+    // Number of vertices per block.
+    private static final int BLOCK_SIZE = 4096;
+
+    // Number of blocks encoded in memory before being written.
+    private static final int BLOCKS_PER_BATCH = 256;
+
+    // Flag indicating that blocks are deflated.
+    private static final int FLAG_DEFLATED = 1;
+
+    // Output.
+    DataOutputStream dos;
+
+    // Executor used to encode blocks in parallel (if set).
+    ParallelExecutor executor;
+
+    // Report where the stages of the writer are recorded.
+    RunReport report = new RunReport();
+
+    // True if blocks are deflated.
+    private final boolean deflated;
+
+    // Counter of the bytes written, or null.
+    LongAdder counter;
+
+    /**
+     * Create a new writer with uncompressed blocks.
+     */
+    public BinaryGraphWriterVarint() {
+        this(false);
+    }
+
+    /**
+     * @param deflated true to deflate blocks.
+     */
+    protected BinaryGraphWriterVarint(boolean deflated) {
+        this.deflated = deflated;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream stream) {
+        this.dos = new DataOutputStream(stream);
+    }
+
+    @Override
+    public void setExecutor(ParallelExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void setRunReport(RunReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public void setOutputCounter(LongAdder counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * Record bytes written to the output.
+     * 
+     * @param bytes Number of bytes written.
+     */
+    protected void count(long bytes) {
+        if (counter != null) {
+            counter.add(bytes);
+        }
+    }
+
+    /**
+     * Index the road informations of the given graph, using the road informations
+     * known by the graph if any, or the ones of its arcs otherwise.
+     *
+     * @param graph
+     *
+     * @return Map from road information to its index in the file.
+     */
+    protected Map<RoadInformation, Integer> getRoadInformations(Graph graph) {
+        List<RoadInformation> known = graph.getRoadInformations();
+        Map<RoadInformation, Integer> rinfos = new HashMap<>();
+        if (known != null) {
+            for (RoadInformation info: known) {
+                rinfos.put(info, rinfos.size());
+            }
+            return rinfos;
+        }
+        for (Vertex node: graph.getNodes()) {
+            for (Arc arc: node.getSuccessors()) {
+                if (!rinfos.containsKey(arc.getInfo())) {
+                    rinfos.put(arc.getInfo(), rinfos.size());
+                }
+            }
+        }
+        return rinfos;
+    }
+
+    /**
+     * @param degrees Coordinate, in degrees.
+     *
+     * @return Coordinate in 1e-7 degrees.
+     */
+    protected static long toFixed(double degrees) {
+        return Math.round(degrees * 1e7);
+    }
+
+    /**
+     * Encode the descriptors section (without its size and format checks).
+     *
+     * @param infos Sorted road informations.
+     *
+     * @return Buffer containing the encoded section.
+     */
+    protected VarintBuffer encodeDescriptors(RoadInformation[] infos) {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (RoadInformation info: infos) {
+            names.putIfAbsent(info.getName(), names.size());
+        }
+        VarintBuffer buffer = new VarintBuffer(16 * infos.length);
+        buffer.writeUnsigned(names.size());
+        for (String name: names.keySet()) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.writeUnsigned(bytes.length);
+            buffer.write(bytes, 0, bytes.length);
+        }
+        for (RoadInformation info: infos) {
+            buffer.writeUnsigned(BinaryGraphWriterInsa2018.getCharFromType(info.getType()));
+            int x = info.getMaximumSpeed() / 5;
+            if (info.isOneWay()) {
+                x = x | 0x80;
+            }
+            buffer.writeUnsigned(x & 0xff);
+            buffer.writeUnsigned(info.getAccess());
+            buffer.writeUnsigned(names.get(info.getName()));
+        }
+        return buffer;
+    }
+
+    /**
+     * Encode the vertices from first to last (not included) and the arcs leaving
+     * them.
+     *
+     * @param buffer Buffer to write to.
+     * @param nodes
+     * @param infos Indices of road informations.
+     * @param first
+     * @param last
+     */
+    protected void encodeBlock(VarintBuffer buffer, List<Vertex> nodes,
+            Map<RoadInformation, Integer> infos, int first, int last) {
+        long previousLongitude = 0, previousLatitude = 0;
+        for (int n = first; n < last; ++n) {
+            Vertex vertex = nodes.get(n);
+            long longitude = toFixed(vertex.getPoint().getLongitude()),
+                    latitude = toFixed(vertex.getPoint().getLatitude());
+            buffer.writeSigned(longitude - previousLongitude);
+            buffer.writeSigned(latitude - previousLatitude);
+            previousLongitude = longitude;
+            previousLatitude = latitude;
+
+            List<Arc> successors = vertex.getSuccessors();
+            buffer.writeUnsigned(successors.size());
+            for (Arc arc: successors) {
+                buffer.writeSigned(arc.getDestination().getId() - n);
+                buffer.writeUnsigned(infos.get(arc.getInfo()));
+                buffer.writeUnsigned(Math.round(arc.getLength() * 1000));
+
+                List<Point> points = arc.getPoints();
+                buffer.writeUnsigned(points.size() - 2);
+                long pointLongitude = longitude, pointLatitude = latitude;
+                for (int i = 1; i < points.size() - 1; ++i) {
+                    long x = toFixed(points.get(i).getLongitude()),
+                            y = toFixed(points.get(i).getLatitude());
+                    buffer.writeSigned(x - pointLongitude);
+                    buffer.writeSigned(y - pointLatitude);
+                    pointLongitude = x;
+                    pointLatitude = y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deflate the content of the given buffer.
+     *
+     * @param deflater Deflater to use.
+     * @param buffer
+     *
+     * @return Deflated bytes.
+     */
+    protected static byte[] deflate(Deflater deflater, VarintBuffer buffer) {
+        deflater.reset();
+        deflater.setInput(buffer.array(), 0, buffer.size());
+        deflater.finish();
+        byte[] output = new byte[buffer.size() / 2 + 64];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == output.length) {
+                output = Arrays.copyOf(output, 2 * output.length);
+            }
+            size += deflater.deflate(output, size, output.length - size);
+        }
+        return Arrays.copyOf(output, size);
+    }
+
+    @Override
+    public void writeGraph(Graph graph) throws IOException {
+
+        List<Vertex> nodes = graph.getNodes();
+        Map<RoadInformation, Integer> infos;
+        try (Stage stage = report.start("descriptor-collection")) {
+            infos = getRoadInformations(graph);
+            stage.addItems(infos.size());
+        }
+
+        RoadInformation[] sortedInfos = new RoadInformation[infos.size()];
+        for (Map.Entry<RoadInformation, Integer> entry: infos.entrySet()) {
+            sortedInfos[entry.getValue()] = entry.getKey();
+        }
+
+        // Header.
+        dos.writeInt(MAGIC_NUMBER);
+        dos.writeInt(VERSION);
+        dos.writeUTF(graph.getMapId() == null ? "" : graph.getMapId());
+        dos.writeUTF(graph.getMapName() == null ? "" : graph.getMapName());
+        dos.writeByte(deflated ? FLAG_DEFLATED : 0);
+        dos.writeInt(BLOCK_SIZE);
+        dos.writeInt(sortedInfos.length);
+        dos.writeInt(nodes.size());
+
+        // Descriptors.
+        VarintBuffer descriptors = encodeDescriptors(sortedInfos);
+        dos.writeByte(255);
+        dos.writeInt(descriptors.size());
+        dos.write(descriptors.array(), 0, descriptors.size());
+        dos.writeByte(254);
+
+        // Blocks, encoded in parallel by batches.
+        int nBlocks = (nodes.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long[] offsets = new long[nBlocks];
+        long position = dos.size();
+        count(position);
+        for (int from = 0; from < nBlocks; from += BLOCKS_PER_BATCH) {
+            int batchFrom = from, count = Math.min(BLOCKS_PER_BATCH, nBlocks - from);
+            byte[][] blocks = new byte[count][];
+            int[] rawSizes = new int[count];
+            ParallelExecutor.RangeTask task = (start, end) -> {
+                VarintBuffer buffer = new VarintBuffer(1 << 16);
+                Deflater deflater = deflated ? new Deflater() : null;
+                try {
+                    for (int b = start; b < end; ++b) {
+                        int block = batchFrom + b;
+                        buffer.reset();
+                        encodeBlock(buffer, nodes, infos, block * BLOCK_SIZE,
+                                Math.min(nodes.size(), (block + 1) * BLOCK_SIZE));
+                        rawSizes[b] = buffer.size();
+                        blocks[b] = deflated ? deflate(deflater, buffer)
+                                : Arrays.copyOf(buffer.array(), buffer.size());
+                    }
+                }
+                finally {
+                    if (deflater != null) {
+                        deflater.end();
+                    }
+                }
+            };
+            if (executor != null) {
+                executor.forEach("block-encoding", count, task);
+            }
+            else {
+                task.run(0, count);
+            }
+            for (int b = 0; b < count; ++b) {
+                offsets[batchFrom + b] = position;
+                dos.writeInt(rawSizes[b]);
+                dos.writeInt(blocks[b].length);
+                dos.write(blocks[b]);
+                position += 8 + blocks[b].length;
+                count(8 + blocks[b].length);
+            }
+        }
+
+        // Check format and block index.
+        dos.writeByte(253);
+        position += 1;
+        for (long offset: offsets) {
+            dos.writeLong(offset);
+        }
+        dos.writeLong(position);
+        count(1 + 8L * offsets.length + 8);
+
+        ((Closeable) dos).close();
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return DEFAULT_EXTENSION;
+    }
+
+    @Override
+    public void validate(OSM2GraphConfiguration configuration) throws IllegalArgumentException {
+    }
+
+}
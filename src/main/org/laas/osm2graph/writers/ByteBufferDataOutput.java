@@ -0,0 +1,200 @@
+package org.laas.osm2graph.writers;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementation of DataOutput writing into a ByteBuffer, subclasses being
+ * responsible for making room in the buffer when it is full. The encoding is the
+ * same as the one of DataOutputStream (big-endian, modified UTF-8 for strings).
+ */
+public abstract class ByteBufferDataOutput implements DataOutput, Closeable {
+
+    // Current buffer.
+    protected ByteBuffer buffer;
+
+    // Counter of the bytes written to the target of this output, or null.
+    private LongAdder counter;
+
+    /**
+     * @param counter Counter updated with the number of bytes written to the
+     *        target of this output (when they leave the buffer), or null.
+     */
+    public void setCounter(LongAdder counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * Record bytes written to the target of this output.
+     * 
+     * @param bytes Number of bytes written.
+     */
+    protected void count(long bytes) {
+        if (counter != null) {
+            counter.add(bytes);
+        }
+    }
+
+    /**
+     * Make sure the buffer has at least the given number of bytes remaining.
+     * 
+     * @param size Number of bytes to write, at most the capacity of the buffer.
+     * 
+     * @throws IOException
+     */
+    protected abstract void ensureRemaining(int size) throws IOException;
+
+    /**
+     * Compute the number of bytes used by the given string when written with
+     * {@link DataOutput#writeUTF(String)}, including the two bytes for the length.
+     * 
+     * @param str
+     * 
+     * @return Number of bytes required to write str.
+     */
+    public static int getUTFLength(String str) {
+        int length = 2;
+        for (int i = 0; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f) {
+                length += 1;
+            }
+            else if (c > 0x07ff) {
+                length += 3;
+            }
+            else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            ensureRemaining(1);
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write the remaining content of the given buffer.
+     * 
+     * @param src
+     * 
+     * @throws IOException
+     */
+    public void write(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            ensureRemaining(1);
+            int n = Math.min(src.remaining(), buffer.remaining());
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + n);
+            buffer.put(slice);
+            src.position(src.position() + n);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        ensureRemaining(2);
+        buffer.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        ensureRemaining(2);
+        buffer.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        ensureRemaining(4);
+        buffer.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        ensureRemaining(8);
+        buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        for (int i = 0; i < s.length(); ++i) {
+            write((byte) s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        for (int i = 0; i < s.length(); ++i) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+        int length = getUTFLength(str) - 2;
+        if (length > 65535) {
+            throw new UTFDataFormatException("encoded string too long: " + length + " bytes");
+        }
+        writeShort(length);
+        for (int i = 0; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f) {
+                write(c);
+            }
+            else if (c > 0x07ff) {
+                ensureRemaining(3);
+                buffer.put((byte) (0xe0 | ((c >> 12) & 0x0f)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+            else {
+                ensureRemaining(2);
+                buffer.put((byte) (0xc0 | ((c >> 6) & 0x1f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.laas.osm2graph.writers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * DataOutput writing to a channel through a large direct buffer.
+ */
+public class ChannelDataOutput extends ByteBufferDataOutput {
+
+    // Default size of the buffer.
+    public static final int DEFAULT_BUFFER_SIZE = 8 << 20;
+
+    // Target channel.
+    private final WritableByteChannel channel;
+
+    /**
+     * @param channel Channel to write to.
+     */
+    public ChannelDataOutput(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel Channel to write to.
+     * @param bufferSize Size of the buffer, in bytes.
+     */
+    public ChannelDataOutput(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Write the content of the buffer to the channel.
+     * 
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        count(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    protected void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+}
@@ -1,10 +1,16 @@
 package org.laas.osm2graph.writers;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.laas.osm2graph.graph.Graph;
 import org.laas.osm2graph.model.OSM2GraphConfiguration;
+import org.laas.osm2graph.model.ParallelExecutor;
+import org.laas.osm2graph.model.RunReport;
 
 public interface GraphWriter {
 
@@ -15,6 +21,44 @@ public interface GraphWriter {
      */
     public void setOutputStream(OutputStream stream);
 
+    /**
+     * Set the output channel for this writer, used instead of the output stream.
+     * The default implementation wraps the channel into a buffered stream.
+     * 
+     * @param channel
+     */
+    public default void setOutputChannel(WritableByteChannel channel) {
+        setOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Set the executor that the writer may use to encode the graph in parallel.
+     * The default implementation ignores the executor.
+     * 
+     * @param executor
+     */
+    public default void setExecutor(ParallelExecutor executor) {
+    }
+
+    /**
+     * Set the report where the writer records its stages. The default
+     * implementation ignores the report.
+     * 
+     * @param report
+     */
+    public default void setRunReport(RunReport report) {
+    }
+
+    /**
+     * Set the counter that the writer updates with the number of bytes it writes,
+     * including temporary files, to monitor its progress. The default
+     * implementation ignores the counter.
+     * 
+     * @param counter
+     */
+    public default void setOutputCounter(LongAdder counter) {
+    }
+
     /**
      * Write a graph using this writer.
      * 
@@ -30,6 +30,9 @@ public class GraphWriterFactory {
     static {
         ALLOWED_WRITERS.put("insa2016", BinaryGraphWriterInsa2016.class);
         ALLOWED_WRITERS.put("insa2018", BinaryGraphWriterInsa2018.class);
+        ALLOWED_WRITERS.put("varint", BinaryGraphWriterVarint.class);
+        ALLOWED_WRITERS.put("varint-deflate", BinaryGraphWriterVarint.Deflated.class);
+        ALLOWED_WRITERS.put("mapped", BinaryGraphWriterMapped.class);
     }
 
 }
@@ -0,0 +1,112 @@
+package org.laas.osm2graph.writers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * DataOutput writing to a file whose final size is known in advance, through
+ * memory-mapped windows of the file.
+ */
+public class MappedDataOutput extends ByteBufferDataOutput {
+
+    // Default size of a mapped window.
+    public static final int DEFAULT_WINDOW_SIZE = 256 << 20;
+
+    // Target channel.
+    private final FileChannel channel;
+
+    // Final size of the file, and size of the windows.
+    private final long size;
+    private final int windowSize;
+
+    // Position of the current window in the file.
+    private long windowStart;
+
+    // Number of bytes already counted (see ByteBufferDataOutput#count(long)).
+    private long counted;
+
+    /**
+     * @param channel Channel to write to, must be opened for reading and writing.
+     * @param size Exact number of bytes that will be written.
+     * 
+     * @throws IOException
+     */
+    public MappedDataOutput(FileChannel channel, long size) throws IOException {
+        this(channel, size, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param channel Channel to write to, must be opened for reading and writing.
+     * @param size Exact number of bytes that will be written.
+     * @param windowSize Size of the mapped windows.
+     * 
+     * @throws IOException
+     */
+    public MappedDataOutput(FileChannel channel, long size, int windowSize) throws IOException {
+        this.channel = channel;
+        this.size = size;
+        this.windowSize = windowSize;
+        this.windowStart = 0;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(windowSize, size));
+    }
+
+    /**
+     * @return Number of bytes written so far.
+     */
+    public long getPosition() {
+        return windowStart + buffer.position();
+    }
+
+    /**
+     * Count the bytes written since the last call. Bytes are counted after bulk
+     * writes and when the window moves rather than after each value, to keep small
+     * writes cheap.
+     */
+    private void countWritten() {
+        long position = getPosition();
+        count(position - counted);
+        counted = position;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        countWritten();
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        super.write(src);
+        countWritten();
+    }
+
+    @Override
+    protected void ensureRemaining(int n) throws IOException {
+        if (buffer.remaining() < n) {
+            long position = getPosition();
+            if (position + n > size) {
+                throw new IOException("trying to write more than the " + size
+                        + " bytes announced for this output.");
+            }
+            countWritten();
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                    Math.min(windowSize, size - position));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        countWritten();
+        long position = getPosition();
+        if (position != size) {
+            channel.truncate(position);
+            channel.close();
+            throw new IOException(
+                    "only " + position + " bytes written out of the " + size + " announced.");
+        }
+        channel.close();
+    }
+
+}
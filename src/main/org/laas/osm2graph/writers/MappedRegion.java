@@ -0,0 +1,86 @@
+package org.laas.osm2graph.writers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Region of a file mapped in memory through windows of limited size, allowing
+ * random reads and writes at any offset of the region.
+ */
+public class MappedRegion {
+
+    // Size of the windows (1GB).
+    private static final int WINDOW_BITS = 30;
+    private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+
+    // Windows.
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * @param channel Channel of the file, must be readable and writable.
+     * @param position Position of the region in the file.
+     * @param size Size of the region.
+     * 
+     * @throws IOException
+     */
+    public MappedRegion(FileChannel channel, long position, long size) throws IOException {
+        this.windows = new MappedByteBuffer[(int) ((size + WINDOW_MASK) >>> WINDOW_BITS)];
+        for (int i = 0; i < windows.length; ++i) {
+            long offset = (long) i << WINDOW_BITS;
+            windows[i] = channel.map(FileChannel.MapMode.READ_WRITE, position + offset,
+                    Math.min(size - offset, 1L << WINDOW_BITS));
+        }
+    }
+
+    /**
+     * Read bytes from the region.
+     * 
+     * @param offset Offset in the region.
+     * @param dst Array filled with the bytes read.
+     */
+    public void get(long offset, byte[] dst) {
+        int position = 0;
+        while (position < dst.length) {
+            ByteBuffer window = windows[(int) (offset >>> WINDOW_BITS)].duplicate();
+            window.position((int) (offset & WINDOW_MASK));
+            int n = Math.min(dst.length - position, window.remaining());
+            window.get(dst, position, n);
+            position += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * Write a byte.
+     * 
+     * @param offset Offset in the region.
+     * @param value
+     */
+    public void put(long offset, byte value) {
+        windows[(int) (offset >>> WINDOW_BITS)].put((int) (offset & WINDOW_MASK), value);
+    }
+
+    /**
+     * Write the remaining content of the given buffer, leaving its position
+     * unchanged.
+     * 
+     * @param offset Offset in the region.
+     * @param src
+     */
+    public void put(long offset, ByteBuffer src) {
+        ByteBuffer source = src.duplicate();
+        while (source.hasRemaining()) {
+            ByteBuffer window = windows[(int) (offset >>> WINDOW_BITS)].duplicate();
+            window.position((int) (offset & WINDOW_MASK));
+            int n = Math.min(source.remaining(), window.remaining());
+            int limit = source.limit();
+            source.limit(source.position() + n);
+            window.put(source);
+            source.limit(limit);
+            offset += n;
+        }
+    }
+
+}
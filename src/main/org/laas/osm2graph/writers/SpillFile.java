@@ -0,0 +1,255 @@
+package org.laas.osm2graph.writers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Temporary file where records produced concurrently are appended, in no
+ * particular order, before being read back sequentially.
+ * 
+ * Each thread fills its own buffer, which is appended to the file when full, so
+ * threads only contend when reserving space in the file. Each record is made of
+ * an integer key, the length of the record and its content.
+ */
+public class SpillFile implements Closeable {
+
+    /**
+     * Consumer of the records of a spill file.
+     */
+    public interface RecordConsumer {
+
+        /**
+         * @param key Key of the record.
+         * @param record Buffer containing the record, from its position to its
+         *        limit.
+         * 
+         * @throws IOException
+         */
+        public void accept(int key, ByteBuffer record) throws IOException;
+
+    }
+
+    // Default size of the buffer of each thread.
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // Size of the buffer used to read the file.
+    private static final int READ_BUFFER_SIZE = 8 << 20;
+
+    // Size of the key and length of each record.
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // Temporary file and its channel.
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    // Size of the file.
+    private final AtomicLong size;
+
+    // Counter of the bytes written to the file, or null.
+    private LongAdder counter;
+
+    // Buffer of each thread, and list of all the buffers for the final flush. The
+    // buffers are kept in holders that are emptied when the file is closed, since
+    // the threads (e.g. those of a shared pool) may outlive this file.
+    private final ThreadLocal<ByteBuffer[]> buffers;
+    private final List<ByteBuffer[]> allBuffers;
+
+    /**
+     * Create a new spill file in the default temporary directory.
+     * 
+     * @throws IOException
+     */
+    public SpillFile() throws IOException {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new spill file in the default temporary directory.
+     * 
+     * @param bufferSize Size of the buffer of each thread, records cannot be larger
+     *        than this.
+     * 
+     * @throws IOException
+     */
+    public SpillFile(int bufferSize) throws IOException {
+        this.file = File.createTempFile("osm2graph-spill", ".bin");
+        this.file.deleteOnExit();
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.size = new AtomicLong(0);
+        this.allBuffers = new ArrayList<>();
+        this.buffers = ThreadLocal.withInitial(() -> {
+            ByteBuffer[] holder = new ByteBuffer[] { ByteBuffer.allocate(bufferSize) };
+            synchronized (allBuffers) {
+                allBuffers.add(holder);
+            }
+            return holder;
+        });
+    }
+
+    /**
+     * @param counter Counter updated with the number of bytes written to the file
+     *        (when the buffers of the threads are appended), or null.
+     */
+    public void setCounter(LongAdder counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * Append the content of the given buffer to the file and clear it.
+     * 
+     * @param buffer
+     * 
+     * @throws IOException
+     */
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        if (counter != null) {
+            counter.add(buffer.remaining());
+        }
+        long position = size.getAndAdd(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Start a new record for the current thread. The caller must then put exactly
+     * length bytes in the returned buffer.
+     * 
+     * @param key Key of the record.
+     * @param length Length of the record, in bytes.
+     * 
+     * @return Buffer of the current thread, where the content of the record must
+     *         be put.
+     * 
+     * @throws UncheckedIOException if the buffer of the thread cannot be appended
+     *         to the file.
+     */
+    public ByteBuffer startRecord(int key, int length) {
+        ByteBuffer buffer = buffers.get()[0];
+        if (buffer == null) {
+            throw new IllegalStateException("spill file is closed.");
+        }
+        if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+            if (buffer.capacity() < RECORD_HEADER_SIZE + length) {
+                throw new IllegalArgumentException(
+                        "record too large for spill buffer: " + length + " bytes.");
+            }
+            try {
+                flush(buffer);
+            }
+            catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        buffer.putInt(key);
+        buffer.putInt(length);
+        return buffer;
+    }
+
+    /**
+     * Append the buffers of all the threads to the file.
+     * 
+     * @throws IOException
+     */
+    private void flushAll() throws IOException {
+        synchronized (allBuffers) {
+            for (ByteBuffer[] holder: allBuffers) {
+                flush(holder[0]);
+            }
+        }
+    }
+
+    /**
+     * Map a region of the given size located after all the records of this file,
+     * e.g. to gather data read from the records. The buffers of all the threads
+     * are appended first, so no record must be started after this method is
+     * called.
+     * 
+     * @param length Size of the region.
+     * 
+     * @return The mapped region, removed when this file is closed.
+     * 
+     * @throws IOException
+     */
+    public MappedRegion map(long length) throws IOException {
+        flushAll();
+        return new MappedRegion(channel, size.get(), length);
+    }
+
+    /**
+     * Read all the records of this file, in the order they were written to the
+     * file. The buffers of all the threads are appended first, so no record must be
+     * started while this method runs.
+     * 
+     * @param consumer
+     * 
+     * @throws IOException
+     */
+    public void forEach(RecordConsumer consumer) throws IOException {
+        flushAll();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        long position = 0, end = size.get();
+        buffer.limit(0);
+        while (position < end || buffer.hasRemaining()) {
+            if (buffer.remaining() < RECORD_HEADER_SIZE
+                    || buffer.remaining() < RECORD_HEADER_SIZE
+                            + buffer.getInt(buffer.position() + 4)) {
+                buffer.compact();
+                if (buffer.remaining() > end - position) {
+                    // Do not read a region mapped after the records.
+                    buffer.limit(buffer.position() + (int) (end - position));
+                }
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    throw new IOException("truncated spill file at " + position + ".");
+                }
+                position += read;
+                buffer.flip();
+                continue;
+            }
+            int key = buffer.getInt(), length = buffer.getInt(), limit = buffer.limit();
+            buffer.limit(buffer.position() + length);
+            consumer.accept(key, buffer);
+            buffer.position(buffer.limit());
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The buffers of all the threads are appended to the file and released.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushAll();
+        }
+        finally {
+            synchronized (allBuffers) {
+                for (ByteBuffer[] holder: allBuffers) {
+                    holder[0] = null;
+                }
+                allBuffers.clear();
+            }
+            buffers.remove();
+        }
+        channel.close();
+        raf.close();
+        file.delete();
+    }
+
+}
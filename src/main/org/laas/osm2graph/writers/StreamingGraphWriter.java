@@ -0,0 +1,73 @@
+package org.laas.osm2graph.writers;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.laas.osm2graph.graph.RoadInformation;
+
+/**
+ * Writer able to write a graph while it is being created, so that the whole
+ * graph never has to be built in memory.
+ * 
+ * Methods are called in the following order: {@link #beginGraph}, then
+ * {@link #writeVertices} and {@link #writeArc} for each arc (concurrently, and in
+ * no particular order, the vertices being written either before or after all the
+ * arcs), and finally {@link #endGraph}. The output is set
+ * before through {@link #setOutputChannel}. Each arc comes with its index in the
+ * conversion order, and the arcs leaving a vertex must be written in the order
+ * of their index, so that the output does not depend on the order in which arcs
+ * are received.
+ */
+public interface StreamingGraphWriter extends GraphWriter {
+
+    /**
+     * Start writing a graph.
+     * 
+     * @param mapId ID of the graph.
+     * @param mapName Name of the graph.
+     * @param numberOfVertices Number of vertices of the graph.
+     * @param roadInformations Road informations, arcs refer to them by index.
+     * 
+     * @throws IOException
+     */
+    public void beginGraph(String mapId, String mapName, int numberOfVertices,
+            List<RoadInformation> roadInformations) throws IOException;
+
+    /**
+     * Write the vertices of the graph.
+     * 
+     * @param longitudes Longitudes of the vertices.
+     * @param latitudes Latitudes of the vertices.
+     * 
+     * @throws IOException
+     */
+    public void writeVertices(double[] longitudes, double[] latitudes) throws IOException;
+
+    /**
+     * Write an arc. This method can be called concurrently.
+     * 
+     * @param arc Index of the arc in the conversion order.
+     * @param origin Index of the origin vertex.
+     * @param destination Index of the destination vertex.
+     * @param length Length of the arc, in meters.
+     * @param info Index of the road information of the arc.
+     * @param longitudes Longitudes of the points of the arc.
+     * @param latitudes Latitudes of the points of the arc.
+     * @param from Index of the first intermediate point in longitudes and
+     *        latitudes (the origin being at from - 1).
+     * @param to Index after the last intermediate point (the destination being
+     *        at to).
+     * 
+     * @throws java.io.UncheckedIOException if the arc cannot be written.
+     */
+    public void writeArc(long arc, int origin, int destination, double length, int info,
+            double[] longitudes, double[] latitudes, int from, int to);
+
+    /**
+     * Finish writing the graph and close the output.
+     * 
+     * @throws IOException
+     */
+    public void endGraph() throws IOException;
+
+}
@@ -0,0 +1,102 @@
+package org.laas.osm2graph.writers;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with variable-length encodings of integers: unsigned
+ * LEB128 varints (7 bits per byte, least significant group first) and zig-zag
+ * varints for signed values, so that small deltas of any sign use few bytes.
+ */
+public class VarintBuffer {
+
+    // Encoded bytes.
+    private byte[] bytes;
+
+    // Number of bytes used.
+    private int size;
+
+    /**
+     * @param capacity Initial capacity, in bytes.
+     */
+    public VarintBuffer(int capacity) {
+        this.bytes = new byte[Math.max(16, capacity)];
+        this.size = 0;
+    }
+
+    /**
+     * @param value Value to zig-zag encode.
+     * 
+     * @return Zig-zag encoding of the given value (0, -1, 1, -2, ... are mapped to
+     *         0, 1, 2, 3, ...).
+     */
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Write an unsigned varint.
+     * 
+     * @param value Value to write, treated as unsigned.
+     */
+    public void writeUnsigned(long value) {
+        ensureCapacity(size + 10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Write a signed value as a zig-zag varint.
+     * 
+     * @param value Value to write.
+     */
+    public void writeSigned(long value) {
+        writeUnsigned(zigZag(value));
+    }
+
+    /**
+     * Write the given bytes.
+     * 
+     * @param data
+     * @param offset
+     * @param length
+     */
+    public void write(byte[] data, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(data, offset, bytes, size, length);
+        size += length;
+    }
+
+    /**
+     * @return Underlying array, whose first {@link #size()} bytes are used.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of bytes written.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Discard the bytes written, keeping the capacity.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * @param capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, 2 * bytes.length));
+        }
+    }
+
+}